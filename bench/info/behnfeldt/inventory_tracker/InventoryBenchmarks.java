@@ -0,0 +1,233 @@
+package info.behnfeldt.inventory_tracker;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Name:   InventoryBenchmarks.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * JMH benchmarks for the load, save and item list paths. Every benchmark runs
+ * on generated inventories of 1000, 100000 and 1000000 items, in forked JVMs.
+ * The embedded backend is used by default, so no database server is needed.
+ *
+ * Benchmarks:
+ * -bulkLoad: load every department with its items from the storage
+ * -saveDirty: modify 1% of the items and save them the way the Save button does
+ * -itemListRebuild: show one department in the item list and format a screen of rows
+ * -describeItem: build the description text of an item
+ * -searchText: search the item index for two words, the last one typed partly
+ * -searchQuantity: search the item index for a quantity range
+ *
+ * saveDirty goes through PendingChanges, the save of the main form: the save
+ * lists are collected from the dirty departments and written in one
+ * transaction, with the batched statements of MySqlRepository on MySQL.
+ *
+ * Run from the project root:
+ *   mvn test-compile exec:exec
+ *   mvn test-compile exec:exec -Djmh.args="InventoryBenchmarks.saveDirty -p itemCount=1000 -p backend=mysql"
+ *
+ * backend=mysql uses the database of the config file, which must select the
+ * MySQL backend. Use a scratch database: the generated departments and items
+ * are inserted into it and deleted again afterwards, and bulkLoad loads
+ * everything in it. Results are written to bench-results.csv.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+public class InventoryBenchmarks {
+
+    private static final int ITEMS_PER_DEPARTMENT = 1000;   //Department size of the generated inventories
+    private static final int VISIBLE_ROWS = 40;             //Rows of the item list painted on one screen
+
+    @Param({"1000", "100000", "1000000"})
+    public int itemCount;                                   //Items in the generated inventory
+
+    @Param({"embedded"})
+    public String backend;                                  //Storage the inventory is kept in: embedded or mysql
+
+    private Path directory;                                 //Holds the embedded database file
+    private Path file;                                      //The embedded database file
+    private ArrayList<Department> generated;                //Departments written by setUp(), deleted again by tearDown()
+    private ArrayList<Department> departments;              //The inventory as loaded from the storage
+    private HashMap<Item, Department> dirty;                //Items saveDirty modifies, with their departments
+    private HashSet<Department> dirtyDepartments;           //Departments holding the modified items
+    private PendingChanges pending;                         //Save lists of saveDirty
+    private Department whole;                               //One department holding the whole inventory
+    private ItemListModel itemData;                         //Item list model shown by itemListRebuild
+    private Item described;                                 //Item described by describeItem
+    private ItemSearchIndex searchIndex;                    //Index searched by the search benchmarks
+    private String wanted;                                  //Text searched by searchText
+
+    /**
+     * Writes an inventory of the item count into the storage and loads it.
+     *
+     * @throws Exception
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if (backend.equals("embedded")) {
+            directory = Files.createTempDirectory("inventory-bench");
+            file = directory.resolve("inventory.db");
+            Repositories.useEmbedded(new EmbeddedRepository(file.toString()));
+        } else if (Repositories.isEmbedded()) {
+            throw new IllegalStateException("backend=mysql needs 'backend mysql' in the config file");
+        } else {
+            new SchemaMigrator().migrate();
+        }
+        generate();
+        departments = Repositories.departments().findAll(true);
+
+        //Save 1% of the inventory as modified items, at least one
+        dirty = new HashMap<>();
+        dirtyDepartments = new HashSet<>();
+        int dirtyCount = Math.max(1, itemCount / 100);
+        outer:
+        for (Department department : departments) {
+            for (Item item : department.getAllItems()) {
+                dirty.put(item, department);
+                dirtyDepartments.add(department);
+                if (dirty.size() == dirtyCount) {
+                    break outer;
+                }
+            }
+        }
+        pending = new PendingChanges(0, Integer.MAX_VALUE);
+
+        //One department holding the whole inventory, the worst case for the item list
+        ArrayList<Item> allItems = new ArrayList<>();
+        whole = new Department(0, "Whole inventory", "", false);
+        for (Department department : departments) {
+            for (Item item : department.getAllItems()) {
+                allItems.add(item);
+                whole.addLoadedItem(item);
+            }
+        }
+        whole.markItemsLoaded();
+        itemData = new ItemListModel();
+        described = allItems.get(allItems.size() / 2);
+
+        searchIndex = new ItemSearchIndex();
+        searchIndex.addDepartments(departments);
+        wanted = "item " + (itemCount / 30);                //The item number with its last digit not typed yet
+    }
+
+    /**
+     * Removes the generated inventory again.
+     *
+     * @throws Exception
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (directory != null) {
+            //The database file and its log
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path stored : files) {
+                    Files.delete(stored);
+                }
+            }
+            Files.delete(directory);
+        } else {
+            Repositories.inTransaction(() -> Repositories.departments().deleteDepartments(generated), () -> {});
+        }
+    }
+
+    /**
+     * @return the loaded departments
+     * @throws Exception
+     */
+    @Benchmark
+    public ArrayList<Department> bulkLoad() throws Exception {
+        if (file != null) {
+            //Opening the file reads it, as on the first load of the application
+            return new EmbeddedRepository(file.toString()).findAll(true);
+        }
+        return Repositories.departments().findAll(true);
+    }
+
+    /**
+     * @return whether every change was saved
+     */
+    @Benchmark
+    public boolean saveDirty(){
+        for (Item item : dirty.keySet()) {
+            item.setQuantity(item.getQuantity() + 1);
+        }
+        pending.collect(departments, dirtyDepartments);
+        pending.save();
+        return pending.isEverythingSaved();
+    }
+
+    /**
+     * Shows the department, then formats one screen of rows like the renderer does.
+     *
+     * @param blackhole
+     */
+    @Benchmark
+    public void itemListRebuild(Blackhole blackhole){
+        itemData.setDepartment(null);
+        itemData.setDepartment(whole);
+        for (int i = 0; i < Math.min(VISIBLE_ROWS, itemData.getSize()); i++) {
+            blackhole.consume(Form_Main.formatItemRow(itemData.getElementAt(i)));
+        }
+    }
+
+    /**
+     * @return String
+     */
+    @Benchmark
+    public String describeItem(){
+        return Form_Main.describeItem(described);
+    }
+
+    /**
+     * @return the results found
+     */
+    @Benchmark
+    public ArrayList<Item> searchText(){
+        return searchIndex.search(wanted, 200);
+    }
+
+    /**
+     * @return the results found
+     */
+    @Benchmark
+    public ArrayList<Item> searchQuantity(){
+        return searchIndex.search("qty:100-120", 200);
+    }
+
+    /**
+     * Writes an inventory of the item count into the storage in one transaction.
+     *
+     * @throws Exception
+     */
+    private void generate() throws Exception {
+        generated = new ArrayList<>();
+        int departmentCount = Math.max(1, (itemCount + ITEMS_PER_DEPARTMENT - 1) / ITEMS_PER_DEPARTMENT);
+        for (int i = 0; i < departmentCount; i++) {
+            generated.add(new Department("Benchmark department " + i));
+        }
+        HashMap<Item, Department> items = new HashMap<>();
+        for (int i = 0; i < itemCount; i++) {
+            items.put(new Item(i % 500, "Item " + i, "Generated item number " + i + " used for benchmarking."),
+                    generated.get(i / ITEMS_PER_DEPARTMENT));
+        }
+        Repositories.inTransaction(() -> {
+            Repositories.departments().insertDepartments(generated);
+            Repositories.items().insertItems(items);
+        }, () -> {});
+    }
+}
@@ -0,0 +1,309 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Name:   BulkItemWriter.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Writes a large number of modified items to MySQL on several pooled
+ * connections at once, for mass edits such as a stock take. The items are
+ * split into partitions by the department they are saved in, and departments
+ * larger than the partition size are split again in ID order. Each partition
+ * is written in a transaction of its own on one of the writer threads, and is
+ * run again after a deadlock. No two partitions hold the same row, so they do
+ * not wait on each other's locks.
+ *
+ * The writer threads only read the items. The versions and quantities a
+ * partition wrote are set on its items by the calling thread once the
+ * partition was committed, so the items, their departments and the search
+ * index are never changed from more than one thread. The calling thread waits
+ * for a partition to finish before more than two per thread are handed out,
+ * which keeps the results waiting to be applied small.
+ *
+ * A partition that fails is rolled back on its own, the others are still
+ * saved. Its items are reported as failed along with the error. Rows
+ * another client changed are left for updateItems() afterwards, which
+ * resolves them the same way as a normal save.
+ *
+ * Must run on the database thread.
+ */
+public class BulkItemWriter {
+
+    private static final int IN_FLIGHT_PER_THREAD = 2;      //Partitions queued or running per thread before the caller waits
+    private static final int MAX_ERRORS = 5;                //Partition errors kept in the report
+    private final MySqlRepository repository;               //Writes the partitions
+    private final int threads;                              //Connections written on at once
+    private final int partitionSize;                        //Most items in one partition
+
+    /**
+     * Main initializer for the BulkItemWriter class. Never uses more threads
+     * than the connection pool has connections.
+     *
+     * @param repository
+     * @param threads
+     * @param partitionSize
+     */
+    public BulkItemWriter(MySqlRepository repository, int threads, int partitionSize){
+        this.repository = repository;
+        this.threads = Math.max(1, Math.min(threads, SQLHandler.getPool().getMaxSize()));
+        this.partitionSize = Math.max(1, partitionSize);
+    }
+
+    /**
+     * Writes the changed columns of the items, see ItemRepository.updateItems().
+     * Items written without a conflict are given their new version here, but
+     * are not marked as saved.
+     *
+     * @param items the department of each item
+     * @return what was written and what is still unsaved
+     */
+    public Report write(HashMap<Item, Department> items){
+        long start = System.currentTimeMillis();
+        ArrayList<Partition> partitions = partition(items);
+        Report report = new Report(partitions.size(), threads);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "Bulk-writer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);                                 //Never keeps the application alive on its own
+            return thread;
+        });
+        CompletionService<Partition> done = new ExecutorCompletionService<>(pool);
+        int submitted = 0;
+        int finished = 0;
+        try {
+            for (Partition partition : partitions) {
+                //Once cancelled no more partitions are started, the ones handed out are still finished below
+                if (Thread.currentThread().isInterrupted()) {
+                    report.failed.addAll(partition.items);
+                    continue;
+                }
+                //Back-pressure: apply a finished partition before handing out more
+                if (submitted - finished == threads * IN_FLIGHT_PER_THREAD) {
+                    finish(next(done), report);
+                    finished++;
+                }
+                done.submit(partition::write, partition);
+                submitted++;
+            }
+            while (finished < submitted) {
+                finish(next(done), report);
+                finished++;
+            }
+        } finally {
+            pool.shutdown();
+        }
+        if (submitted < partitions.size()) {
+            report.addError("Bulk write cancelled after " + submitted + " of " + partitions.size() + " partitions");
+        }
+
+        //Conflicts are few, they are read again and resolved on this thread like in a normal save
+        if (!report.conflicts.isEmpty() && !Thread.currentThread().isInterrupted()) {
+            HashMap<Item, Department> conflicting = new HashMap<>();
+            for (Item item : report.conflicts) {
+                conflicting.put(item, items.get(item));
+            }
+            try {
+                report.unsaved.addAll(repository.updateItems(conflicting));
+            } catch (SQLException e) {
+                e.printStackTrace();
+                report.failed.addAll(report.conflicts);
+                report.addError("Conflicting items: " + e.getMessage());
+            }
+        } else {
+            report.unsaved.addAll(report.conflicts);
+        }
+        report.millis = System.currentTimeMillis() - start;
+        return report;
+    }
+
+    /**
+     * Splits the items by the ID of the department they are saved in, then
+     * into parts of at most partitionSize items in ID order.
+     *
+     * @param items
+     * @return ArrayList<Partition>
+     */
+    private ArrayList<Partition> partition(HashMap<Item, Department> items){
+        TreeMap<Integer, ArrayList<Item>> byDepartment = new TreeMap<>();
+        for (Map.Entry<Item, Department> entry : items.entrySet()) {
+            byDepartment.computeIfAbsent(entry.getValue().getID(), k -> new ArrayList<>()).add(entry.getKey());
+        }
+        ArrayList<Partition> partitions = new ArrayList<>();
+        for (ArrayList<Item> departmentItems : byDepartment.values()) {
+            departmentItems.sort(Comparator.comparingInt(Item::getID));
+            for (int from = 0; from < departmentItems.size(); from += partitionSize) {
+                int to = Math.min(from + partitionSize, departmentItems.size());
+                partitions.add(new Partition(new ArrayList<>(departmentItems.subList(from, to)), items));
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * Waits for the next partition to finish. A partition that was handed out
+     * may already be committed, so its result is waited for even when the
+     * thread is interrupted, otherwise an adjusted quantity that was saved
+     * would be added again by the next save.
+     *
+     * @param done
+     * @return Partition
+     */
+    private static Partition next(CompletionService<Partition> done){
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return done.take().get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    //Partition.write() catches its own errors, so this is a bug in the writer itself
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Adds a finished partition to the report. Runs on the calling thread, so
+     * this is where the items are changed.
+     *
+     * @param partition
+     * @param report
+     */
+    private void finish(Partition partition, Report report){
+        if (partition.error != null) {
+            report.failedPartitions++;
+            report.failed.addAll(partition.items);
+            report.addError(partition.error.getMessage());
+            return;
+        }
+        partition.saved.apply();
+        report.rowsWritten += partition.saved.size();
+        report.conflicts.addAll(partition.conflicts);
+    }
+
+    /**
+     * Items written together in one transaction, and what happened to them.
+     */
+    private class Partition {
+        private final ArrayList<Item> items;                        //Items of the partition, in ID order
+        private final HashMap<Item, Department> departments;        //The department of each item
+        private MySqlRepository.SavedItems saved;                   //Versions and quantities to set once committed
+        private ArrayList<Item> conflicts;                          //Items another client changed
+        private Exception error;                                    //Why the partition was rolled back, null if committed
+
+        /**
+         * @param items
+         * @param departments
+         */
+        private Partition(ArrayList<Item> items, HashMap<Item, Department> departments){
+            this.items = items;
+            this.departments = departments;
+        }
+
+        /**
+         * Runs on a writer thread. The transaction is bound to that thread, so
+         * every statement of the partition uses its connection.
+         */
+        private void write(){
+            try {
+                Repositories.inTransaction(() -> {
+                    saved = new MySqlRepository.SavedItems();
+                    conflicts = repository.writePartition(items, departments, saved);
+                }, () -> {});
+            } catch (SQLException | RuntimeException e) {
+                e.printStackTrace();
+                error = e;
+            }
+        }
+    }
+
+    /**
+     * The result of a bulk write.
+     */
+    public static class Report {
+        private final int partitions;                               //Partitions the items were split into
+        private final int threads;                                  //Connections written on at once
+        private int failedPartitions = 0;                           //Partitions that were rolled back
+        private long rowsWritten = 0;                               //Items written without a conflict
+        private long millis = 0;                                    //How long the write took
+        private final HashSet<Item> unsaved = new HashSet<>();      //Items a conflict left unsaved
+        private final HashSet<Item> failed = new HashSet<>();       //Items of partitions that failed or were not started
+        private final ArrayList<Item> conflicts = new ArrayList<>();    //Items another client changed
+        private final ArrayList<String> errors = new ArrayList<>(); //First errors of the failed partitions
+
+        /**
+         * @param partitions
+         * @param threads
+         */
+        private Report(int partitions, int threads){
+            this.partitions = partitions;
+            this.threads = threads;
+        }
+
+        /**
+         * @param message
+         */
+        private void addError(String message){
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(message);
+            }
+        }
+
+        /**
+         * @return number of partitions that were rolled back
+         */
+        public int getFailedPartitions(){
+            return failedPartitions;
+        }
+
+        /**
+         * @return items another client deleted or changed that are still unsaved, see updateItems()
+         */
+        public HashSet<Item> getUnsaved(){
+            return unsaved;
+        }
+
+        /**
+         * @return items that were not written because their partition failed or the write was cancelled
+         */
+        public HashSet<Item> getFailed(){
+            return failed;
+        }
+
+        /**
+         * @return the first errors, for the error message
+         */
+        public ArrayList<String> getErrors(){
+            return errors;
+        }
+
+        @Override
+        public String toString(){
+            return "Bulk write: " + rowsWritten + " items in " + partitions + " partitions on " + threads
+                    + " connections, " + failedPartitions + " partitions failed, " + failed.size()
+                    + " items not written, " + unsaved.size() + " items left by conflicts, " + millis + " ms";
+        }
+    }
+}
@@ -0,0 +1,575 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Name:   ChangeJournal.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Local backup of the changes that have not been saved yet. Every time the
+ * user adds, edits or deletes a department or an item, its new state is
+ * appended to the journal file. When the application starts after a crash or
+ * a failed save, the journal is replayed onto the departments loaded from the
+ * database so the changes can still be saved. After every save the journal is
+ * rewritten with only the changes that are still unsaved, which leaves it
+ * empty when the save went through.
+ *
+ * Each record is written to the file as soon as it is made, so a crash of the
+ * application loses nothing. Forcing the file to the disk is slow, so that is
+ * done on a separate thread at most once every sync interval for all records
+ * written in the meantime. A power failure can lose the changes of that last
+ * interval.
+ *
+ * Records are binary: the payload length, a CRC32 of the payload and the
+ * payload. A record cut off by a crash fails its check and is dropped, along
+ * with anything after it. Departments and items that are in the database are
+ * keyed by their ID, new ones by a negative key handed out by the journal.
+ * Records are encoded into one reused buffer, so recording a change does not
+ * allocate more than a few small objects.
+ */
+public class ChangeJournal {
+
+    private static final int MAGIC = 0x494A524E;            //Marks a journal file, "IJRN"
+    private static final int HEADER_SIZE = 4;               //Bytes before the first record
+    private static final byte DEPARTMENT = 1;               //New or renamed department
+    private static final byte DEPARTMENT_DELETED = 2;       //Deleted department
+    private static final byte ITEM = 3;                     //New, edited or moved item
+    private static final byte ITEM_DELETED = 4;             //Deleted item
+    private static final byte ITEM_ADJUSTED = 5;            //Quantity of an item adjusted by a delta
+    private final FileChannel channel;                      //The journal file
+    private final long syncInterval;                        //Most milliseconds between a write and forcing it to the disk
+    private final ScheduledExecutorService syncer;          //Forces written records to the disk
+    private final CRC32 crc = new CRC32();                  //Checksum of each record, reused
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();    //Encodes names and descriptions, reused
+    private final HashMap<Object, Integer> newKeys = new HashMap<>();   //Keys of departments and items without an ID
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(4096);        //Record being written, reused
+    private int nextKey = 0;                                //Last key handed out to a new department or item
+    private boolean syncScheduled = false;                  //A sync will force the written records to the disk
+    private boolean failed = false;                         //Writing failed, nothing more is recorded
+    private boolean closed = false;                         //Closed when the application exits, nothing more is recorded
+
+    /**
+     * Opens the journal file, creating it when it does not exist.
+     *
+     * @param file
+     * @param syncInterval milliseconds between a write and forcing it to the disk
+     * @throws IOException
+     */
+    public ChangeJournal(Path file, long syncInterval) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.syncInterval = syncInterval;
+        this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Journal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (channel.size() < HEADER_SIZE) {
+            reset();
+        }
+    }
+
+    /**
+     * Records a department that was added or renamed.
+     *
+     * @param department
+     */
+    public synchronized void department(Department department){
+        begin(DEPARTMENT, keyOf(department), department.getID());
+        putString(department.getName());
+        end();
+    }
+
+    /**
+     * Records a department that was deleted.
+     *
+     * @param department
+     */
+    public synchronized void departmentDeleted(Department department){
+        begin(DEPARTMENT_DELETED, keyOf(department), department.getID());
+        end();
+    }
+
+    /**
+     * Records an item that was added, edited or moved, with the department it
+     * is in now.
+     *
+     * @param item
+     * @param department
+     */
+    public synchronized void item(Item item, Department department){
+        begin(ITEM, keyOf(item), item.getID());
+        buffer.putInt(keyOf(department));
+        buffer.putInt(item.getQuantity());
+        putString(item.getName());
+        putString(item.getDescription());
+        end();
+    }
+
+    /**
+     * Records a quantity adjustment. Replaying it adds the delta to whatever
+     * quantity the item has then, so a saved item stays adjusted only.
+     *
+     * @param item
+     * @param delta
+     */
+    public synchronized void itemAdjusted(Item item, int delta){
+        begin(ITEM_ADJUSTED, keyOf(item), item.getID());
+        buffer.putInt(delta);
+        end();
+    }
+
+    /**
+     * Records an item that was deleted.
+     *
+     * @param item
+     */
+    public synchronized void itemDeleted(Item item){
+        begin(ITEM_DELETED, keyOf(item), item.getID());
+        end();
+    }
+
+    /**
+     * @return true when there is nothing to replay
+     */
+    public synchronized boolean isEmpty(){
+        try {
+            return channel.size() <= HEADER_SIZE;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Empties the journal, once its changes have been saved or discarded.
+     * Records made afterwards start from the current state.
+     */
+    public synchronized void reset(){
+        if (closed) {
+            return;
+        }
+        newKeys.clear();
+        nextKey = 0;
+        try {
+            channel.truncate(0);
+            buffer.clear();
+            buffer.putInt(MAGIC);
+            buffer.flip();
+            writeBuffer(0);
+            channel.force(false);
+            failed = false;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Applies the recorded changes to departments that were just loaded from
+     * the database. Must be called on the database thread before any new
+     * change is recorded, since items of departments loaded on demand may
+     * need to be read. Changes to departments or items that no longer exist
+     * are skipped. The journal file itself is left alone.
+     *
+     * @param departments loaded departments, changed in place
+     * @return what was recovered
+     * @throws IOException
+     * @throws SQLException
+     */
+    public synchronized Recovery replay(ArrayList<Department> departments) throws IOException, SQLException {
+        Recovery recovery = new Recovery();
+        ArrayList<ByteBuffer> records = readRecords();
+        if (records.isEmpty()) {
+            return recovery;
+        }
+
+        //Items keep their department in the database, so look up the saved ones the journal refers to
+        HashSet<Integer> savedItemIds = new HashSet<>();
+        for (ByteBuffer record : records) {
+            byte type = record.get(0);
+            int id = record.getInt(5);
+            if ((type == ITEM || type == ITEM_DELETED || type == ITEM_ADJUSTED) && id != 0) {
+                savedItemIds.add(id);
+            }
+        }
+        HashMap<Integer, Integer> savedDepartmentOf = savedItemIds.isEmpty()
+                ? new HashMap<>() : Repositories.items().findDepartmentIds(savedItemIds);
+
+        HashMap<Integer, Department> departmentsByKey = new HashMap<>();
+        for (Department department : departments) {
+            departmentsByKey.put(department.getID(), department);
+        }
+        HashMap<Integer, Item> itemsByKey = new HashMap<>();
+        HashMap<Integer, Department> itemDepartments = new HashMap<>();
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+
+        for (ByteBuffer record : records) {
+            byte type = record.get();
+            int key = record.getInt();
+            int id = record.getInt();
+            switch (type) {
+                case DEPARTMENT: {
+                    String name = getString(record, decoder);
+                    Department department = departmentsByKey.get(key);
+                    if (department == null && id == 0) {
+                        department = new Department(name);
+                        departmentsByKey.put(key, department);
+                        departments.add(department);
+                    } else if (department != null) {
+                        //A department deleted earlier in the journal comes back when the delete was undone
+                        if (!departments.contains(department)) {
+                            departments.add(department);
+                            recovery.deletedDepartments.remove(department);
+                        }
+                        if (!department.getName().equals(name)) {
+                            department.setName(name);
+                        }
+                    }
+                    break;
+                }
+                case DEPARTMENT_DELETED: {
+                    //The department stays known by its key, so a later record can bring it back
+                    Department department = departmentsByKey.get(key);
+                    if (department != null && departments.remove(department) && id != 0) {
+                        recovery.deletedDepartments.add(department);
+                    }
+                    break;
+                }
+                case ITEM: {
+                    Department target = departmentsByKey.get(record.getInt());
+                    int quantity = record.getInt();
+                    String name = getString(record, decoder);
+                    String description = getString(record, decoder);
+                    Item item = findItem(key, id, itemsByKey, itemDepartments, departmentsByKey, savedDepartmentOf);
+                    if (target == null) {
+                        break;
+                    }
+                    if (item == null && id == 0) {
+                        target.addItem(new Item(quantity, name, description));
+                        item = target.getItem(target.getAllItems().size() - 1);     //The stored item, a copy in compact mode
+                        itemsByKey.put(key, item);
+                        itemDepartments.put(key, target);
+                    } else if (item != null) {
+                        item.setName(name);
+                        item.setQuantity(quantity);
+                        item.setDescription(description);
+                        Department current = itemDepartments.get(key);
+                        if (current != target) {
+                            target.addItem(item);
+                            //An item without a department was deleted earlier in the journal and the delete was undone
+                            if (current != null) {
+                                current.removeItem(item);
+                            } else {
+                                recovery.deletedItems.remove(item);
+                            }
+                            itemDepartments.put(key, target);
+                        }
+                    }
+                    recovery.changedDepartments.add(target);
+                    break;
+                }
+                case ITEM_ADJUSTED: {
+                    int delta = record.getInt();
+                    Item item = findItem(key, id, itemsByKey, itemDepartments, departmentsByKey, savedDepartmentOf);
+                    Department current = itemDepartments.get(key);
+                    if (item != null && current != null) {
+                        item.adjust(delta);
+                        recovery.changedDepartments.add(current);
+                    }
+                    break;
+                }
+                case ITEM_DELETED: {
+                    //The item stays known by its key, so a later record can bring it back
+                    Item item = findItem(key, id, itemsByKey, itemDepartments, departmentsByKey, savedDepartmentOf);
+                    Department current = itemDepartments.remove(key);
+                    if (item != null && current != null) {
+                        current.removeItem(item);
+                        recovery.changedDepartments.add(current);
+                        if (id != 0) {
+                            recovery.deletedItems.add(item);
+                        }
+                    }
+                    break;
+                }
+            }
+            recovery.changes++;
+        }
+        return recovery;
+    }
+
+    /**
+     * Finds the item a record refers to, in the department the journal moved
+     * it to or, the first time a saved item comes up, in its department in
+     * the database.
+     *
+     * @param key
+     * @param id
+     * @param itemsByKey
+     * @param itemDepartments
+     * @param departmentsByKey
+     * @param savedDepartmentOf
+     * @return the item, or null when it no longer exists
+     */
+    private static Item findItem(int key, int id, HashMap<Integer, Item> itemsByKey, HashMap<Integer, Department> itemDepartments,
+                                 HashMap<Integer, Department> departmentsByKey, HashMap<Integer, Integer> savedDepartmentOf){
+        Item item = itemsByKey.get(key);
+        if (item != null || id == 0 || !savedDepartmentOf.containsKey(id)) {
+            return item;
+        }
+        Department department = departmentsByKey.get(savedDepartmentOf.get(id));
+        if (department == null) {
+            return null;
+        }
+        for (Item candidate : department.getAllItems()) {
+            if (candidate.getID() == id) {
+                itemsByKey.put(key, candidate);
+                itemDepartments.put(key, department);
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Forces everything written so far to the disk and stops the sync thread.
+     * Changes recorded afterwards are ignored.
+     */
+    public synchronized void close(){
+        if (closed) {
+            return;
+        }
+        closed = true;
+        syncer.shutdown();
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @param object department or item
+     * @return the ID, or the key handed out to a new department or item
+     */
+    private int keyOf(Object object){
+        int id = object instanceof Department ? ((Department) object).getID() : ((Item) object).getID();
+        if (id != 0) {
+            return id;
+        }
+        Integer key = newKeys.get(object);
+        if (key == null) {
+            key = --nextKey;
+            newKeys.put(object, key);
+        }
+        return key;
+    }
+
+    /**
+     * Starts a record, leaving room for its length and checksum.
+     *
+     * @param type
+     * @param key
+     * @param id
+     */
+    private void begin(byte type, int key, int id){
+        buffer.clear();
+        buffer.position(8);
+        buffer.put(type);
+        buffer.putInt(key);
+        buffer.putInt(id);
+    }
+
+    /**
+     * Fills in the length and checksum, appends the record to the file and
+     * schedules a sync.
+     */
+    private void end(){
+        if (failed || closed) {
+            return;
+        }
+        int length = buffer.position() - 8;
+        buffer.flip();
+        buffer.position(8);
+        crc.reset();
+        crc.update(buffer);
+        buffer.putInt(0, length);
+        buffer.putInt(4, (int) crc.getValue());
+        buffer.position(0);
+        try {
+            writeBuffer(channel.size());
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+        if (!syncScheduled) {
+            syncScheduled = true;
+            syncer.schedule(this::sync, syncInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Forces the records written since the last sync to the disk. Runs on the
+     * sync thread without holding the journal, so recording is never held up
+     * by the disk.
+     */
+    private void sync(){
+        synchronized (this) {
+            syncScheduled = false;
+            //close() already forced everything
+            if (closed) {
+                return;
+            }
+        }
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            System.out.println("Journal sync failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a string as its byte length followed by its UTF-8 bytes, growing
+     * the buffer when it does not fit.
+     *
+     * @param value
+     */
+    private void putString(String value){
+        if (value == null) {
+            value = "";
+        }
+        int lengthAt = buffer.position();
+        buffer.position(lengthAt + 4);
+        encoder.reset();
+        CharBuffer chars = CharBuffer.wrap(value);
+        while (encoder.encode(chars, buffer, true).isOverflow()) {
+            grow();
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            grow();
+        }
+        buffer.putInt(lengthAt, buffer.position() - lengthAt - 4);
+    }
+
+    /**
+     * Doubles the record buffer, keeping what has been written to it.
+     */
+    private void grow(){
+        ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+    }
+
+    /**
+     * @param record
+     * @param decoder
+     * @return String
+     * @throws IOException
+     */
+    private static String getString(ByteBuffer record, CharsetDecoder decoder) throws IOException {
+        int length = record.getInt();
+        ByteBuffer bytes = record.slice();
+        bytes.limit(length);
+        record.position(record.position() + length);
+        return decoder.decode(bytes).toString();
+    }
+
+    /**
+     * Reads every complete record. A damaged or cut off record ends the
+     * journal, it and anything after it are cut from the file.
+     *
+     * @return the payload of each record
+     * @throws IOException
+     */
+    private ArrayList<ByteBuffer> readRecords() throws IOException {
+        ArrayList<ByteBuffer> records = new ArrayList<>();
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            return records;
+        }
+        ByteBuffer file = ByteBuffer.allocate((int) size);
+        while (file.hasRemaining() && channel.read(file, file.position()) != -1) {
+            //Keep reading until the whole file is in memory
+        }
+        file.flip();
+        if (file.getInt() != MAGIC) {
+            throw new IOException("Not a journal file");
+        }
+        while (file.remaining() >= 8) {
+            int start = file.position();
+            int length = file.getInt();
+            int checksum = file.getInt();
+            if (length < 9 || length > file.remaining()) {
+                file.position(start);
+                break;
+            }
+            ByteBuffer payload = file.slice();
+            payload.limit(length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                file.position(start);
+                break;
+            }
+            records.add(payload);
+            file.position(start + 8 + length);
+        }
+        if (file.position() < size) {
+            System.out.println("Journal damaged after " + records.size() + " records, the rest is dropped");
+            channel.truncate(file.position());
+        }
+        return records;
+    }
+
+    /**
+     * @param position
+     * @throws IOException
+     */
+    private void writeBuffer(long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Stops recording after the journal could not be written, telling the
+     * user their changes are no longer backed up.
+     *
+     * @param e
+     */
+    private void fail(IOException e){
+        e.printStackTrace();
+        failed = true;
+        DatabaseExecutor.showError("Warning: unsaved changes can not be backed up to the journal file.");
+    }
+
+    /**
+     * What replay() brought back. The deleted departments and items still have
+     * to be deleted from the database on the next save.
+     */
+    public static class Recovery {
+        public final List<Department> deletedDepartments = new ArrayList<>();  //Saved departments deleted in the journal
+        public final List<Item> deletedItems = new ArrayList<>();               //Saved items deleted in the journal
+        public final Set<Department> changedDepartments = new HashSet<>();     //Departments whose items were changed
+        public int changes = 0;                                                 //Records that were replayed
+    }
+}
@@ -0,0 +1,65 @@
+package info.behnfeldt.inventory_tracker;
+
+/**
+ * Name:   ConflictResolver.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Decides what a save does with a row that another client changed or deleted
+ * since it was read. Every update is checked against the row version the
+ * department or item was read with, and only the rows that fail the check are
+ * read again and passed here, so a save never locks or re-reads anything
+ * else. Set with 'save_conflicts' in the config:
+ * -merge (default): the local changes are kept. Columns changed locally keep
+ *  their value, the others take the value from the database, an adjusted
+ *  quantity is added to the quantity in the database, and the row is written
+ *  again. A deleted row is inserted again on the next save.
+ * -reload: the row from the database replaces the local changes.
+ */
+public interface ConflictResolver {
+
+    /**
+     * Keeps the local changes of every conflicting row.
+     */
+    ConflictResolver MERGE = new ConflictResolver() {
+        @Override
+        public boolean keepLocal(Item item, Item current){
+            return true;
+        }
+
+        @Override
+        public boolean keepLocal(Department department, Department current){
+            return true;
+        }
+    };
+
+    /**
+     * Takes the database row for every conflicting row.
+     */
+    ConflictResolver RELOAD = new ConflictResolver() {
+        @Override
+        public boolean keepLocal(Item item, Item current){
+            return false;
+        }
+
+        @Override
+        public boolean keepLocal(Department department, Department current){
+            return false;
+        }
+    };
+
+    /**
+     * @param item the item with its unsaved changes
+     * @param current the row as it is in the database now, or null if it was deleted
+     * @return true to write the local changes over the row, false to take the row
+     */
+    boolean keepLocal(Item item, Item current);
+
+    /**
+     * @param department the department with its unsaved changes
+     * @param current the row as it is in the database now, without items, or null if it was deleted
+     * @return true to write the local changes over the row, false to take the row
+     */
+    boolean keepLocal(Department department, Department current);
+}
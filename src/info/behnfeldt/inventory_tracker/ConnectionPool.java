@@ -0,0 +1,444 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Name:   ConnectionPool.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * A small bounded pool of database connections so the application does not
+ * pay for a new TCP and authentication handshake on every query. Connections
+ * handed out by borrow() are wrappers; calling close() on them returns the
+ * real connection to the pool instead of closing it, so existing code that
+ * closes its connections through SQLHandler.closeConnections() keeps working.
+ *
+ * The pool will:
+ * -Validate idle connections before handing them out
+ * -Close connections that sat idle longer than the idle timeout
+ * -Retire connections older than the max lifetime
+ * -Block borrowers up to the borrow timeout when the pool is exhausted
+ * -Report connections held longer than the leak threshold
+ */
+public class ConnectionPool {
+
+    private final String url;                                           //JDBC url of the database
+    private final String username;                                      //Database username
+    private final String password;                                      //Database password
+    private final int maxSize;                                          //Most connections that may be open at once
+    private final long borrowTimeout;                                   //Milliseconds to wait for a free connection
+    private final long idleTimeout;                                     //Milliseconds a connection may sit unused
+    private final long maxLifetime;                                     //Milliseconds a connection may live in total
+    private final long leakThreshold;                                   //Milliseconds a borrower may hold a connection
+    private final ArrayDeque<PooledConnection> idle = new ArrayDeque<>();   //Connections ready to be borrowed
+    private final ArrayList<PooledConnection> borrowed = new ArrayList<>(); //Connections currently in use
+    private int pendingCreates = 0;                                     //Slots reserved while connections are opened, validated or reset
+    private int totalCreated = 0;                                       //Stats: physical connections opened
+    private int totalClosed = 0;                                        //Stats: physical connections closed
+    private long totalBorrows = 0;                                      //Stats: successful borrow() calls
+    private long totalTimeouts = 0;                                     //Stats: borrow() calls that timed out
+    private long totalLeaks = 0;                                        //Stats: connections reported as leaked
+    private boolean shutdown = false;                                   //Set when the pool has been closed
+    private final ScheduledExecutorService housekeeper;                 //Runs idle eviction and leak detection
+
+    /**
+     * Main initializer for the ConnectionPool class. Times are in milliseconds,
+     * a leak threshold of 0 turns leak detection off.
+     *
+     * @param url
+     * @param username
+     * @param password
+     * @param maxSize
+     * @param borrowTimeout
+     * @param idleTimeout
+     * @param maxLifetime
+     * @param leakThreshold
+     */
+    public ConnectionPool(String url, String username, String password, int maxSize, long borrowTimeout,
+                          long idleTimeout, long maxLifetime, long leakThreshold){
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.maxSize = Math.max(1, maxSize);
+        this.borrowTimeout = borrowTimeout;
+        this.idleTimeout = idleTimeout;
+        this.maxLifetime = maxLifetime;
+        this.leakThreshold = leakThreshold;
+
+        //The housekeeper is a daemon so it never keeps the application alive on its own
+        housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ConnectionPool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::houseKeep, 30, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if the pool is not
+     * full yet. Waits up to the borrow timeout when every connection is in use.
+     *
+     * @return Connection
+     * @throws SQLException
+     */
+    public Connection borrow() throws SQLException {
+        long deadline = System.currentTimeMillis() + borrowTimeout;
+
+        while (true) {
+            PooledConnection pooled = reserve(deadline);
+            if (pooled == null) {
+                return open();
+            }
+
+            //Check the idle connection without holding the lock, isValid() may be a round trip to the server
+            boolean usable = !isExpired(pooled, System.currentTimeMillis()) && validate(pooled);
+            if (!usable) {
+                try { pooled.physical.close(); } catch (SQLException e) {}
+            }
+            synchronized (this) {
+                pendingCreates--;
+                if (usable && !shutdown) {
+                    return lend(pooled);
+                }
+                if (usable) {
+                    try { pooled.physical.close(); } catch (SQLException e) {}
+                }
+                totalClosed++;
+                notifyAll();
+            }
+            //The idle connection was broken or the pool shut down, the next pass reports the shutdown or tries again
+        }
+    }
+
+    /**
+     * Reserves a slot for the caller: either the newest idle connection, which
+     * still has to be validated, or room to open a new connection. Both count
+     * in pendingCreates until the caller has borrowed or given up the slot, so
+     * the pool never goes over its size while the lock is not held.
+     *
+     * @param deadline
+     * @return the idle connection, or null when a new connection should be opened
+     * @throws SQLException
+     */
+    private synchronized PooledConnection reserve(long deadline) throws SQLException {
+        while (true) {
+            if (shutdown) {
+                throw new SQLException("Connection pool has been shut down.");
+            }
+            PooledConnection pooled = idle.pollFirst();
+            if (pooled != null) {
+                pendingCreates++;
+                return pooled;
+            }
+            if (idle.size() + borrowed.size() + pendingCreates < maxSize) {
+                pendingCreates++;
+                return null;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                totalTimeouts++;
+                throw new SQLException("Timed out after " + borrowTimeout + "ms waiting for a database connection. " + getStats());
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection.", e);
+            }
+        }
+    }
+
+    /**
+     * Opens a new physical connection in a slot reserved by reserve(), without
+     * holding the lock so other borrowers are not blocked by the handshake.
+     *
+     * @return Connection
+     * @throws SQLException
+     */
+    private Connection open() throws SQLException {
+        Connection physical;
+        try {
+            physical = DriverManager.getConnection(url, username, password);
+        } catch (SQLException e) {
+            synchronized (this) {
+                pendingCreates--;
+                notifyAll();
+            }
+            throw e;
+        }
+        synchronized (this) {
+            pendingCreates--;
+            totalCreated++;
+            return lend(new PooledConnection(physical));
+        }
+    }
+
+    /**
+     * Called by the connection wrapper when the borrower closes it. Broken or
+     * expired connections are closed, everything else goes back to the idle list.
+     * The connection is reset and closed without holding the lock, rollback()
+     * is a round trip to the server; its slot stays reserved meanwhile so the
+     * pool never goes over its size.
+     *
+     * @param pooled
+     */
+    private void release(PooledConnection pooled){
+        boolean reusable;
+        synchronized (this) {
+            if (!borrowed.remove(pooled)) {
+                return;
+            }
+            pendingCreates++;
+            reusable = !shutdown && !isExpired(pooled, System.currentTimeMillis());
+        }
+        try {
+            //Leave the connection the way we found it for the next borrower
+            if (reusable && !pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            reusable = false;
+        }
+        if (!reusable) {
+            try { pooled.physical.close(); } catch (SQLException e) {}
+        }
+        synchronized (this) {
+            pendingCreates--;
+            if (reusable && !shutdown) {
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.addFirst(pooled);
+            } else {
+                //The pool may have shut down while the connection was reset
+                if (reusable) {
+                    try { pooled.physical.close(); } catch (SQLException e) {}
+                }
+                totalClosed++;
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Marks a connection as borrowed and wraps it for the caller.
+     *
+     * @param pooled
+     * @return Connection
+     */
+    private Connection lend(PooledConnection pooled){
+        pooled.borrowedAt = System.currentTimeMillis();
+        pooled.borrowSite = leakThreshold > 0 ? new Exception("Connection borrowed here") : null;
+        pooled.leakReported = false;
+        borrowed.add(pooled);
+        totalBorrows++;
+        return pooled.newHandle();
+    }
+
+    /**
+     * Only connections that have been idle for a while are checked with the
+     * driver, recently returned connections are trusted to save a round trip.
+     *
+     * @param pooled
+     * @return boolean
+     */
+    private boolean validate(PooledConnection pooled){
+        try {
+            if (System.currentTimeMillis() - pooled.lastUsed < 500) {
+                return !pooled.physical.isClosed();
+            }
+            return pooled.physical.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param pooled
+     * @param now
+     * @return boolean
+     */
+    private boolean isExpired(PooledConnection pooled, long now){
+        return maxLifetime > 0 && now - pooled.createdAt > maxLifetime;
+    }
+
+    /**
+     * @param pooled
+     */
+    private void closePhysical(PooledConnection pooled){
+        try { pooled.physical.close(); } catch (SQLException e) {}
+        totalClosed++;
+    }
+
+    /**
+     * Runs periodically to evict idle and expired connections and to report
+     * connections that have been borrowed for longer than the leak threshold.
+     */
+    private synchronized void houseKeep(){
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> iterator = idle.iterator();
+        while (iterator.hasNext()) {
+            PooledConnection pooled = iterator.next();
+            if ((idleTimeout > 0 && now - pooled.lastUsed > idleTimeout) || isExpired(pooled, now)) {
+                iterator.remove();
+                closePhysical(pooled);
+            }
+        }
+        if (leakThreshold > 0) {
+            for (PooledConnection pooled : borrowed) {
+                if (!pooled.leakReported && now - pooled.borrowedAt > leakThreshold) {
+                    pooled.leakReported = true;
+                    totalLeaks++;
+                    System.out.println("Possible connection leak: held for " + (now - pooled.borrowedAt) + "ms");
+                    if (pooled.borrowSite != null) {
+                        pooled.borrowSite.printStackTrace();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes every idle connection and stops the pool from lending new ones.
+     * Borrowed connections are closed as they are returned.
+     */
+    public synchronized void shutdown(){
+        shutdown = true;
+        housekeeper.shutdownNow();
+        for (PooledConnection pooled : idle) {
+            closePhysical(pooled);
+        }
+        idle.clear();
+        notifyAll();
+    }
+
+    /**
+     * @return int
+     */
+    public synchronized int getActiveCount(){
+        return borrowed.size();
+    }
+
+    /**
+     * @return int
+     */
+    public synchronized int getIdleCount(){
+        return idle.size();
+    }
+
+    /**
+     * @return int
+     */
+    public int getMaxSize(){
+        return maxSize;
+    }
+
+    /**
+     * @return long
+     */
+    public synchronized long getTotalBorrows(){
+        return totalBorrows;
+    }
+
+    /**
+     * @return long
+     */
+    public synchronized long getTotalTimeouts(){
+        return totalTimeouts;
+    }
+
+    /**
+     * @return long
+     */
+    public synchronized long getTotalLeaks(){
+        return totalLeaks;
+    }
+
+    /**
+     * Summary of the pool's state, used in error messages and the console.
+     *
+     * @return String
+     */
+    public synchronized String getStats(){
+        return "[pool active=" + borrowed.size() + " idle=" + idle.size() + " max=" + maxSize +
+                " created=" + totalCreated + " closed=" + totalClosed + " borrows=" + totalBorrows +
+                " timeouts=" + totalTimeouts + " leaks=" + totalLeaks + "]";
+    }
+
+    /**
+     * Bookkeeping for a single physical connection owned by the pool.
+     */
+    private class PooledConnection {
+        private final Connection physical;                  //The real driver connection
+        private final long createdAt = System.currentTimeMillis();
+        private long lastUsed = createdAt;                  //When the connection was last returned
+        private long borrowedAt;                            //When the connection was last borrowed
+        private Exception borrowSite;                       //Stack trace of the current borrower for leak reports
+        private boolean leakReported;                       //Only report each leak once
+
+        private PooledConnection(Connection physical){
+            this.physical = physical;
+        }
+
+        /**
+         * Creates the Connection handed to a borrower. Closing it returns the
+         * physical connection to the pool, and using it afterwards fails.
+         *
+         * @return Connection
+         */
+        private Connection newHandle(){
+            InvocationHandler handler = new InvocationHandler() {
+                private boolean closed = false;
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    switch (method.getName()) {
+                        case "close":
+                            if (!closed) {
+                                closed = true;
+                                release(PooledConnection.this);
+                            }
+                            return null;
+                        case "isClosed":
+                            return closed || physical.isClosed();
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "Pooled" + physical;
+                    }
+                    if (closed) {
+                        throw new SQLException("Connection has already been returned to the pool.");
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    //Lets File > Cancel stop the query the database thread is running
+                    if (result instanceof Statement) {
+                        DatabaseExecutor.track((Statement) result);
+                    }
+                    return result;
+                }
+            };
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, handler);
+        }
+    }
+}
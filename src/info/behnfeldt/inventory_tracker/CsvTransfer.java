@@ -0,0 +1,338 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Name:   CsvTransfer.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Exports the saved inventory to a CSV file and imports CSV files into it.
+ * Both directions stream: the export writes items as they are read from the
+ * database and the import inserts them a batch at a time, so memory use does
+ * not depend on the size of the file.
+ *
+ * The file has a header line and the columns department, quantity, name and
+ * description. Every department is written first on a line of its own with the
+ * other columns empty, so departments without items are kept, followed by one
+ * line per item. Fields holding commas, quotes or line breaks are quoted.
+ *
+ * The import adds to the inventory. Departments are matched by name and
+ * created when missing, items are always inserted as new rows, in batches that
+ * use the generated keys of the storage. With the parallel option the file is
+ * read and parsed on a separate thread while the previous batch is inserted.
+ *
+ * Both directions must run on the database thread and can be cancelled
+ * through the DatabaseExecutor.
+ */
+public class CsvTransfer {
+
+    private static final String HEADER = "department,quantity,name,description";   //First line of every file
+    private static final int PROGRESS_INTERVAL = 10000;                             //Rows between progress reports
+    private final int batchSize;                                                    //Items inserted per batch
+    private final ProgressListener listener;                                        //Told how many rows are done
+
+    /**
+     * Main initializer for the CsvTransfer class.
+     *
+     * @param batchSize
+     * @param listener
+     */
+    public CsvTransfer(int batchSize, ProgressListener listener){
+        this.batchSize = Math.max(1, batchSize);
+        this.listener = listener;
+    }
+
+    /**
+     * Writes every department and item in the storage to the file. Unsaved
+     * changes are not included.
+     *
+     * @param file
+     * @return number of rows written
+     * @throws IOException
+     * @throws SQLException
+     */
+    public long export(Path file) throws IOException, SQLException {
+        ArrayList<Department> departments = Repositories.departments().findAll(false);
+        HashMap<Integer, String> names = new HashMap<>();
+        long[] rows = {0};
+
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(HEADER + "\r\n");
+            for (Department department : departments) {
+                names.put(department.getID(), department.getName());
+                writeRow(out, department.getName(), "", "", "");
+                rows[0]++;
+            }
+
+            //Items are written as they stream in, none of them are kept
+            Repositories.items().streamAll((departmentId, item) -> {
+                String department = names.get(departmentId);
+                if (department == null) {
+                    return;
+                }
+                try {
+                    writeRow(out, department, String.valueOf(item.getQuantity()), item.getName(), item.getDescription());
+                } catch (IOException e) {
+                    throw new SQLException("Could not write to " + file, e);
+                }
+                if (++rows[0] % PROGRESS_INTERVAL == 0) {
+                    listener.progress("Exported", rows[0]);
+                }
+            });
+        }
+        listener.progress("Exported", rows[0]);
+        return rows[0];
+    }
+
+    /**
+     * Adds the departments and items of a file to the storage.
+     *
+     * @param file
+     * @param parallel true to parse the file on its own thread
+     * @return number of items imported
+     * @throws IOException
+     * @throws SQLException
+     */
+    public long importFile(Path file, boolean parallel) throws IOException, SQLException {
+        HashMap<String, Department> departments = new HashMap<>();
+        for (Department department : Repositories.departments().findAll(false)) {
+            departments.putIfAbsent(department.getName(), department);
+        }
+
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String[] header = readRow(in);
+            if (header == null || !String.join(",", header).equalsIgnoreCase(HEADER)) {
+                throw new IOException("Not an inventory CSV file, the first line must be: " + HEADER);
+            }
+            return parallel ? importParallel(in, departments) : importSequential(in, departments);
+        }
+    }
+
+    /**
+     * Parses and inserts one batch after the other on the calling thread.
+     *
+     * @param in
+     * @param departments
+     * @return number of items imported
+     * @throws IOException
+     * @throws SQLException
+     */
+    private long importSequential(BufferedReader in, HashMap<String, Department> departments) throws IOException, SQLException {
+        long imported = 0;
+        ArrayList<String[]> batch;
+        while (!(batch = readBatch(in)).isEmpty()) {
+            imported += insertBatch(batch, departments, imported);
+        }
+        return imported;
+    }
+
+    /**
+     * Parses the file on a separate thread that stays a few batches ahead of
+     * the inserts.
+     *
+     * @param in
+     * @param departments
+     * @return number of items imported
+     * @throws IOException
+     * @throws SQLException
+     */
+    private long importParallel(BufferedReader in, HashMap<String, Department> departments) throws IOException, SQLException {
+        BlockingQueue<ArrayList<String[]>> batches = new ArrayBlockingQueue<>(4);
+        IOException[] parseError = {null};
+        Thread parser = new Thread(() -> {
+            try {
+                ArrayList<String[]> batch;
+                do {
+                    batch = readBatch(in);
+                    batches.put(batch);             //The empty batch at the end tells the inserts to stop
+                } while (!batch.isEmpty());
+            } catch (IOException e) {
+                parseError[0] = e;
+                batches.offer(new ArrayList<>());
+            } catch (InterruptedException e) {
+                //The import stopped, nothing is waiting for more batches
+            }
+        }, "CSV-parser");
+        parser.setDaemon(true);
+        parser.start();
+
+        long imported = 0;
+        try {
+            while (true) {
+                ArrayList<String[]> batch = batches.take();
+                if (batch.isEmpty()) {
+                    break;
+                }
+                imported += insertBatch(batch, departments, imported);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Import was cancelled.");
+        } finally {
+            parser.interrupt();
+        }
+        if (parseError[0] != null) {
+            throw parseError[0];
+        }
+        return imported;
+    }
+
+    /**
+     * @param in
+     * @return the next rows of the file, empty at the end of the file
+     * @throws IOException
+     */
+    private ArrayList<String[]> readBatch(BufferedReader in) throws IOException {
+        ArrayList<String[]> batch = new ArrayList<>(batchSize);
+        String[] row;
+        while (batch.size() < batchSize && (row = readRow(in)) != null) {
+            batch.add(row);
+        }
+        return batch;
+    }
+
+    /**
+     * Inserts the departments a batch needs, then its items with one batched
+     * insert. The storage sets the generated ID on each department and item.
+     *
+     * @param batch
+     * @param departments
+     * @param importedBefore
+     * @return number of items inserted
+     * @throws SQLException
+     */
+    private long insertBatch(ArrayList<String[]> batch, HashMap<String, Department> departments, long importedBefore) throws SQLException {
+        InventoryLoader.checkCancelled();
+        ArrayList<Department> newDepartments = new ArrayList<>();
+        for (String[] row : batch) {
+            if (row.length > 0 && !row[0].isBlank() && !departments.containsKey(row[0])) {
+                Department department = new Department(row[0]);
+                departments.put(row[0], department);
+                newDepartments.add(department);
+            }
+        }
+        if (!newDepartments.isEmpty()) {
+            Repositories.departments().insertDepartments(newDepartments);
+        }
+
+        HashMap<Item, Department> items = new HashMap<>();
+        for (String[] row : batch) {
+            //Department lines and lines without a department have no item to insert
+            if (row.length < 3 || row[0].isBlank() || row[2].isEmpty()) {
+                continue;
+            }
+            int quantity;
+            try {
+                quantity = row[1].isBlank() ? 0 : Integer.parseInt(row[1].trim());
+            } catch (NumberFormatException e) {
+                throw new SQLException("Not a quantity: " + row[1]);
+            }
+            items.put(new Item(quantity, row[2], row.length > 3 ? row[3] : ""), departments.get(row[0]));
+        }
+        if (!items.isEmpty()) {
+            Repositories.items().insertItems(items);
+        }
+        listener.progress("Imported", importedBefore + items.size());
+        return items.size();
+    }
+
+    /**
+     * @param out
+     * @param fields
+     * @throws IOException
+     */
+    private static void writeRow(Writer out, String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            String field = fields[i] == null ? "" : fields[i];
+            if (field.indexOf(',') != -1 || field.indexOf('"') != -1 || field.indexOf('\n') != -1 || field.indexOf('\r') != -1) {
+                out.write('"');
+                out.write(field.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(field);
+            }
+        }
+        out.write("\r\n");
+    }
+
+    /**
+     * Reads one row, which may span several lines when a quoted field holds
+     * line breaks.
+     *
+     * @param in
+     * @return the fields of the row, or null at the end of the file
+     * @throws IOException
+     */
+    static String[] readRow(Reader in) throws IOException {
+        ArrayList<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int c = in.read();
+        if (c == -1) {
+            return null;
+        }
+        while (c != -1) {
+            if (quoted) {
+                if (c == '"') {
+                    in.mark(1);
+                    int next = in.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        in.reset();
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n') {
+                if (c == '\r') {
+                    in.mark(1);
+                    if (in.read() != '\n') {
+                        in.reset();
+                    }
+                }
+                break;
+            } else {
+                field.append((char) c);
+            }
+            c = in.read();
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    /**
+     * Told how many rows an export or import has done so far. Called on the
+     * thread running the transfer.
+     */
+    public interface ProgressListener {
+        /**
+         * @param stage
+         * @param rows
+         */
+        void progress(String stage, long rows);
+    }
+}
@@ -0,0 +1,199 @@
+package info.behnfeldt.inventory_tracker;
+
+import javax.swing.*;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Name:   DatabaseExecutor.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Runs database work away from the Swing event dispatch thread so the window
+ * stays responsive while loading or saving. Tasks run one at a time in the
+ * order they were submitted, which keeps a save and the reload that follows it
+ * from overlapping. Results are returned as CompletableFutures; use edt() as
+ * the executor of a follow up stage to apply the result to the GUI.
+ *
+ * Cancelling a returned future interrupts the worker thread and cancels the
+ * JDBC statement the task is running, so the server stops the query instead
+ * of finishing it. Long running tasks should still check
+ * Thread.currentThread().isInterrupted() between rows. A task that already
+ * started only completes as cancelled once it has returned, so stages that
+ * re-enable the GUI never run while the worker is still busy with it. A task
+ * cancelled while waiting in the queue completes right away and never runs.
+ */
+public class DatabaseExecutor {
+
+    private static volatile Thread workerThread;                //The thread tasks run on, once it has started
+    private static final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Database-worker");
+        thread.setDaemon(true);                                 //Never keeps the application alive on its own
+        workerThread = thread;
+        return thread;
+    });
+    private static final Executor edt = SwingUtilities::invokeLater;   //Runs follow up stages on the Swing thread
+    private static volatile Statement statement;                //The statement last created by the running task
+
+    /**
+     * Queues a task on the database thread.
+     *
+     * @param task
+     * @param <T>
+     * @return CompletableFuture<T>
+     */
+    public static <T> CompletableFuture<T> submit(Callable<T> task){
+        Task<T> result = new Task<>();
+        worker.submit(() -> {
+            //Skip tasks that were cancelled while waiting in the queue
+            if (!result.start()) {
+                return;
+            }
+            T value = null;
+            Throwable error = null;
+            try {
+                value = task.call();
+            } catch (Throwable t) {
+                error = t;
+            } finally {
+                statement = null;
+            }
+            result.finish(value, error);
+        });
+        return result;
+    }
+
+    /**
+     * Queues a task without a result on the database thread.
+     *
+     * @param task
+     * @return CompletableFuture<Void>
+     */
+    public static CompletableFuture<Void> run(Runnable task){
+        return submit(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Remembers a statement the running task created, so cancelling the task
+     * can cancel it. Called by the pooled connections for every statement;
+     * statements created on other threads are ignored.
+     *
+     * @param created
+     */
+    static void track(Statement created){
+        if (isDatabaseThread()) {
+            statement = created;
+        }
+    }
+
+    /**
+     * @return true when called from a task running on the database thread
+     */
+    public static boolean isDatabaseThread(){
+        return Thread.currentThread() == workerThread;
+    }
+
+    /**
+     * Executor that runs stages on the Swing event dispatch thread.
+     *
+     * @return Executor
+     */
+    public static Executor edt(){
+        return edt;
+    }
+
+    /**
+     * The future of a submitted task. Cancelling it while the task runs stops
+     * the task, and the future completes as cancelled when the task returns.
+     *
+     * @param <T>
+     */
+    private static class Task<T> extends CompletableFuture<T> {
+        private boolean started = false;                        //Set while the task runs on the worker thread
+        private boolean cancelled = false;                      //Set when cancel() was called before the task returned
+
+        /**
+         * @return false when the task was cancelled before it started
+         */
+        private synchronized boolean start(){
+            if (cancelled || isDone()) {
+                return false;
+            }
+            started = true;
+            return true;
+        }
+
+        /**
+         * @param value
+         * @param error
+         */
+        private void finish(T value, Throwable error){
+            boolean stopped;
+            synchronized (this) {
+                started = false;
+                stopped = cancelled;
+            }
+            //Clear an interrupt that came after the task returned, it is not meant for the next one
+            Thread.interrupted();
+            if (stopped) {
+                super.cancel(false);
+            } else if (error != null) {
+                completeExceptionally(error);
+            } else {
+                complete(value);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning){
+            Statement running;
+            synchronized (this) {
+                if (cancelled || isDone()) {
+                    return false;
+                }
+                cancelled = true;
+                if (!started) {
+                    return super.cancel(mayInterruptIfRunning);
+                }
+                //Interrupting under the lock, the task can not have returned and the next one started
+                workerThread.interrupt();
+                running = statement;
+            }
+            if (running != null) {
+                //The driver opens a connection of its own to stop the query, so this is not done on the calling thread
+                Thread stopper = new Thread(() -> {
+                    try {
+                        running.cancel();
+                    } catch (SQLException e) {
+                        System.out.println("Could not cancel the running query: " + e.getMessage());
+                    }
+                }, "Database-cancel");
+                stopper.setDaemon(true);
+                stopper.start();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Shows an error dialog from any thread.
+     *
+     * @param message
+     */
+    public static void showError(String message){
+        if (SwingUtilities.isEventDispatchThread()) {
+            JOptionPane.showMessageDialog(null, message);
+        } else {
+            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, message));
+        }
+    }
+}
@@ -0,0 +1,667 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Name:   DeltaSync.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Picks up changes other clients made to the database without reloading the
+ * whole inventory. Triggers in the database (see SchemaMigrator) add an entry
+ * to the change_log table for every department and item that is inserted,
+ * updated or deleted, so every client's saves are picked up the same way. A
+ * poll only reads the entries after the watermark and the rows they name, so
+ * its cost depends on how much changed rather than on how big the inventory is.
+ * At most PAGE entries are read at once. When more are waiting, the change set
+ * says so and the caller fetches again once it has been merged, so a client
+ * that was away for a long time catches up page by page.
+ *
+ * Entry IDs are handed out when a row is written, not when it is committed, so
+ * a transaction that is still open can commit an entry below IDs that were
+ * already read. Missing IDs are kept as ranges of gaps and read again on each
+ * poll until they show up, or until they are older than the longest a
+ * transaction may stay open (sync_max_transaction), which means they were
+ * rolled back. Only IDs the server can hand out under its
+ * auto_increment_increment and auto_increment_offset count as missing. At
+ * most MAX_GAPS ranges are kept, the oldest are given up first. The watermark
+ * only moves up to the first open gap. Entries older than
+ * sync_log_days are pruned; a client whose watermark is older than that can
+ * no longer catch up and has to reload.
+ *
+ * fetchChanges() runs on the database thread, merge() runs on the Swing
+ * thread. Local edits win over remote ones: a remote change to an item or
+ * department that is modified locally is skipped and counted as a conflict,
+ * and a locally modified row that was deleted remotely is kept and will be
+ * inserted again on the next save. Items of departments that are not loaded
+ * are never read by merge(): a remotely deleted department whose items were
+ * not loaded yet is kept empty, the database deleted its items with it.
+ */
+public class DeltaSync {
+
+    private static final int CHUNK = 500;                   //Most IDs in one query
+    private static final int PRUNE_BATCH = 10000;           //Most change log entries deleted by one statement
+    private static final int MAX_GAPS = 1000;               //Most gap ranges kept, the oldest are given up first
+    private static final int PAGE = 5000;                   //Most new change log entries read by one fetch
+    private SQLHandler sqlhandler = new SQLHandler();       //Used to borrow a database connection
+    private long watermark = -1;                            //Every change log entry up to this ID was merged, -1 when not started
+    private long highest = -1;                              //Highest change log entry merged so far
+    private TreeMap<Long, Gap> gaps = new TreeMap<>();      //Ranges of entry IDs below highest not read yet, by their first ID
+    private long increment = 0;                             //auto_increment_increment of the server, 0 until it was read
+    private long offset = 1;                                //auto_increment_offset of the server
+    private long conflicts = 0;                             //Stats: remote changes skipped because of local edits
+
+    /**
+     * Prunes old change log entries and sets the starting watermark. Called
+     * right before the inventory is loaded so no change falls in between.
+     * Entries younger than the longest transaction may still have gaps below
+     * them, so the watermark starts before them and the first poll reads
+     * them again.
+     *
+     * @throws SQLException
+     */
+    public void start() throws SQLException {
+        Connection connector = null;
+        PreparedStatement statement = null;
+        ResultSet rs = null;
+        try {
+            connector = sqlhandler.getConnection();
+            prune(connector);
+            statement = connector.prepareStatement("SELECT id FROM change_log WHERE changed_at < CURRENT_TIMESTAMP(3) - INTERVAL ? SECOND " +
+                    "ORDER BY changed_at DESC LIMIT 1");
+            statement.setInt(1, sqlhandler.getSyncMaxTransaction());
+            rs = statement.executeQuery();
+            resume(rs.next() ? rs.getLong(1) : 0);
+        } finally {
+            sqlhandler.closeConnections(connector, statement, rs);
+        }
+    }
+
+    /**
+     * Deletes the change log entries older than sync_log_days, a batch at a
+     * time so other clients' triggers are not held up. The highest deleted ID
+     * is recorded, so a client with an older watermark knows it missed them.
+     *
+     * @param connector
+     * @throws SQLException
+     */
+    private void prune(Connection connector) throws SQLException {
+        long prunedTo;
+        try (PreparedStatement statement = connector.prepareStatement("SELECT id FROM change_log " +
+                "WHERE changed_at < CURRENT_TIMESTAMP(3) - INTERVAL ? DAY ORDER BY changed_at DESC LIMIT 1")) {
+            statement.setInt(1, sqlhandler.getSyncLogDays());
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    return;
+                }
+                prunedTo = rs.getLong(1);
+            }
+        }
+        //Recorded first, a client must never find the entries gone without knowing it
+        try (PreparedStatement statement = connector.prepareStatement("UPDATE change_log_pruned SET pruned_to = GREATEST(pruned_to, ?)")) {
+            statement.setLong(1, prunedTo);
+            statement.executeUpdate();
+        }
+        long deleted = 0;
+        try (PreparedStatement statement = connector.prepareStatement("DELETE FROM change_log WHERE id <= ? ORDER BY id LIMIT " + PRUNE_BATCH)) {
+            statement.setLong(1, prunedTo);
+            int count;
+            do {
+                count = statement.executeUpdate();
+                deleted += count;
+            } while (count == PRUNE_BATCH);
+        }
+        if (deleted > 0) {
+            System.out.println("Pruned " + deleted + " change log entries");
+        }
+    }
+
+    /**
+     * Continues from the watermark of a local snapshot, so the next fetch
+     * reads everything that changed since the snapshot was written.
+     *
+     * @param watermark
+     */
+    public synchronized void resume(long watermark){
+        this.watermark = watermark;
+        highest = watermark;
+        gaps.clear();
+    }
+
+    /**
+     * Stops polling until the next load calls start() again.
+     */
+    public synchronized void stop(){
+        watermark = -1;
+        highest = -1;
+        gaps.clear();
+    }
+
+    /**
+     * @return the change log ID every change up to was merged
+     */
+    public synchronized long getWatermark(){
+        return watermark;
+    }
+
+    /**
+     * @return boolean
+     */
+    public synchronized boolean isStarted(){
+        return watermark >= 0;
+    }
+
+    /**
+     * Reads the next page of change log entries after the highest one merged
+     * and those in the gaps below it, then the departments and items they name
+     * as they are now. Merging the same change twice does nothing.
+     *
+     * @return ChangeSet
+     * @throws SQLException
+     */
+    public ChangeSet fetchChanges() throws SQLException {
+        ChangeSet changes = new ChangeSet();
+        long from;
+        long merged;
+        ArrayList<Long> open;
+        synchronized (this) {
+            from = highest;
+            merged = watermark;
+            open = new ArrayList<>();
+            for (Map.Entry<Long, Gap> gap : gaps.entrySet()) {
+                open.add(gap.getKey());
+                open.add(gap.getValue().last);
+            }
+        }
+        LinkedHashSet<Integer> departmentIds = new LinkedHashSet<>();
+        LinkedHashSet<Integer> itemIds = new LinkedHashSet<>();
+        Connection connector = null;
+        PreparedStatement statement = null;
+        ResultSet rs = null;
+
+        try {
+            connector = sqlhandler.getConnection();
+            if (increment == 0) {
+                readIncrement(connector);
+            }
+
+            statement = connector.prepareStatement("SELECT pruned_to FROM change_log_pruned");
+            rs = statement.executeQuery();
+            if (rs.next() && rs.getLong(1) > merged) {
+                changes.expired = true;
+                return changes;
+            }
+            rs.close();
+            statement.close();
+
+            RowReader entry = row -> {
+                changes.entries.add(row.getLong("id"));
+                boolean department = row.getString("table_name").equals("departments");
+                if (row.getBoolean("deleted")) {
+                    (department ? changes.deletedDepartments : changes.deletedItems).add(row.getInt("row_id"));
+                } else {
+                    (department ? departmentIds : itemIds).add(row.getInt("row_id"));
+                }
+            };
+            statement = connector.prepareStatement("SELECT id, table_name, row_id, deleted FROM change_log WHERE id > ? " +
+                    "ORDER BY id LIMIT " + PAGE);
+            statement.setLong(1, from);
+            rs = statement.executeQuery();
+            while (rs.next()) {
+                entry.read(rs);
+            }
+            changes.more = changes.entries.size() == PAGE;
+            //Transactions that were still open last time may have committed the gaps since
+            readRanges(connector, "SELECT id, table_name, row_id, deleted FROM change_log", open, entry);
+            Collections.sort(changes.entries);
+
+            readById(connector, "SELECT id, name, description, version FROM departments", new ArrayList<>(departmentIds), row ->
+                    changes.departments.add(new DepartmentRow(row.getInt("id"), row.getString("name"),
+                            row.getString("description"), row.getLong("version"))));
+            readById(connector, "SELECT id, department_id, quantity, name, description, version FROM items", new ArrayList<>(itemIds), row ->
+                    changes.items.add(new ItemRow(row.getInt("id"), row.getInt("department_id"), row.getInt("quantity"),
+                            row.getString("name"), row.getString("description"), row.getLong("version"))));
+        } finally {
+            sqlhandler.closeConnections(connector, statement, rs);
+        }
+
+        //The watermark only moves once the changes are merged, so a poll that is thrown away is read again next time
+        return changes;
+    }
+
+    /**
+     * Reads the auto_increment_increment and auto_increment_offset the server
+     * hands out change log IDs with.
+     *
+     * @param connector
+     * @throws SQLException
+     */
+    private void readIncrement(Connection connector) throws SQLException {
+        try (Statement statement = connector.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT @@GLOBAL.auto_increment_increment, @@GLOBAL.auto_increment_offset")) {
+            if (rs.next()) {
+                synchronized (this) {
+                    increment = Math.max(1, rs.getLong(1));
+                    //MySQL ignores an offset larger than the increment
+                    offset = rs.getLong(2) > increment ? 1 : rs.getLong(2);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the SELECT for each chunk of ID ranges and hands every row to the
+     * reader.
+     *
+     * @param connector
+     * @param select the SELECT without a WHERE clause
+     * @param bounds the first and last ID of each range, one after the other
+     * @param reader
+     * @throws SQLException
+     */
+    private static void readRanges(Connection connector, String select, List<Long> bounds, RowReader reader) throws SQLException {
+        for (int start = 0; start < bounds.size(); start += CHUNK) {
+            int end = Math.min(start + CHUNK, bounds.size());
+            StringBuilder query = new StringBuilder(select).append(" WHERE");
+            for (int i = start; i < end; i += 2) {
+                query.append(i == start ? " " : " OR ").append("id BETWEEN ? AND ?");
+            }
+            try (PreparedStatement statement = connector.prepareStatement(query.toString())) {
+                for (int i = start; i < end; i++) {
+                    statement.setLong(i - start + 1, bounds.get(i));
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        reader.read(rs);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the SELECT for each chunk of IDs and hands every row to the reader.
+     *
+     * @param connector
+     * @param select the SELECT without a WHERE clause
+     * @param ids
+     * @param reader
+     * @throws SQLException
+     */
+    private static void readById(Connection connector, String select, List<? extends Number> ids, RowReader reader) throws SQLException {
+        for (int start = 0; start < ids.size(); start += CHUNK) {
+            int end = Math.min(start + CHUNK, ids.size());
+            try (PreparedStatement statement = connector.prepareStatement(MySqlRepository.selectById(select, end - start))) {
+                for (int i = start; i < end; i++) {
+                    statement.setLong(i - start + 1, ids.get(i).longValue());
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        reader.read(rs);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the change log entries of a merged change set, and moves the
+     * watermark up to the first gap that may still be committed.
+     *
+     * @param entries entry IDs in ascending order
+     */
+    private synchronized void advance(ArrayList<Long> entries){
+        if (!isStarted()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (long id : entries) {
+            if (id > highest) {
+                long first = nextId(highest);
+                long last = previousId(id);
+                if (first <= last) {
+                    gaps.put(first, new Gap(last, now));
+                }
+                highest = id;
+            } else {
+                fill(id);
+            }
+        }
+        //A gap older than the longest transaction was rolled back and is never filled
+        long expired = now - sqlhandler.getSyncMaxTransaction() * 1000L;
+        gaps.values().removeIf(gap -> gap.firstMissed < expired);
+        if (gaps.size() > MAX_GAPS) {
+            System.out.println("Delta sync gave up on " + (gaps.size() - MAX_GAPS) + " ranges of missing change log entries");
+            while (gaps.size() > MAX_GAPS) {
+                gaps.pollFirstEntry();
+            }
+        }
+        watermark = gaps.isEmpty() ? highest : gaps.firstKey() - 1;
+    }
+
+    /**
+     * Removes an entry that showed up from the gap range holding it, which
+     * splits the range in two when it is in the middle.
+     *
+     * @param id
+     */
+    private void fill(long id){
+        Map.Entry<Long, Gap> entry = gaps.floorEntry(id);
+        if (entry == null || entry.getValue().last < id) {
+            return;
+        }
+        Gap gap = gaps.remove(entry.getKey());
+        if (entry.getKey() < id) {
+            gaps.put(entry.getKey(), new Gap(previousId(id), gap.firstMissed));
+        }
+        if (gap.last > id) {
+            gaps.put(nextId(id), new Gap(gap.last, gap.firstMissed));
+        }
+    }
+
+    /**
+     * @param id
+     * @return the lowest entry ID the server can hand out above id
+     */
+    private long nextId(long id){
+        long step = Math.max(1, increment);
+        long next = id + 1;
+        long off = Math.floorMod(next - offset, step);
+        return off == 0 ? next : next + step - off;
+    }
+
+    /**
+     * @param id
+     * @return the highest entry ID the server can hand out below id
+     */
+    private long previousId(long id){
+        long step = Math.max(1, increment);
+        long previous = id - 1;
+        return previous - Math.floorMod(previous - offset, step);
+    }
+
+    /**
+     * Applies a change set to the in memory departments. Must run on the Swing
+     * thread because it changes the same objects the GUI shows.
+     *
+     * @param changes
+     * @param departments
+     * @return true if anything visible changed
+     */
+    public boolean merge(ChangeSet changes, ArrayList<Department> departments){
+        boolean changed = false;
+        advance(changes.entries);
+        if (changes.isEmpty()) {
+            return false;
+        }
+        HashMap<Integer, Department> departmentsById = new HashMap<>();
+        for (Department department : departments) {
+            if (department.getID() != 0) {
+                departmentsById.put(department.getID(), department);
+            }
+        }
+
+        //Departments first, so items can be attached to departments created remotely
+        for (DepartmentRow row : changes.departments) {
+            Department department = departmentsById.get(row.id);
+            if (department == null) {
+                department = new Department(row.id, row.name, row.info, false);
+                department.setVersion(row.version);
+                //Without lazy loading every department is expected to hold its items, they arrive as item rows below
+                if (!sqlhandler.isLazyLoading()) {
+                    department.markItemsLoaded();
+                }
+                departments.add(department);
+                departmentsById.put(row.id, department);
+                changed = true;
+            } else if (department.getChangedColumns() != 0) {
+                if (!department.getName().equals(row.name)) {
+                    conflicts++;
+                }
+            } else {
+                changed |= department.applyRemote(row.name, row.info, row.version);
+            }
+        }
+
+        for (ItemRow row : changes.items) {
+            Department target = departmentsById.get(row.departmentId);
+            //Items of departments that are not in memory will be read when the department is opened
+            if (target == null || !target.hasLoadedItems()) {
+                //The item may have been moved there out of a department that is in memory
+                if (row.version > 1) {
+                    changed |= dropMovedItem(row.id, departments);
+                }
+                continue;
+            }
+            Department owner = target;
+            Item item = target.findItem(row.id);
+            //A version above 1 means the row existed before this change, so it may have been moved from another department
+            if (item == null && row.version > 1) {
+                for (Department department : departments) {
+                    if (department != target && department.hasLoadedItems()) {
+                        item = department.findItem(row.id);
+                        if (item != null) {
+                            owner = department;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (item == null) {
+                Item added = new Item(row.id, row.quantity, row.name, row.description);
+                added.setVersion(row.version);
+                target.addLoadedItem(added);
+                changed = true;
+            } else if (item.isModified() && !item.isAdjustedOnly()) {
+                if (item.getQuantity() != row.quantity || !item.getName().equals(row.name)) {
+                    conflicts++;
+                }
+            } else {
+                //An unsaved adjustment is only a delta, so it is kept on top of the remote quantity
+                changed |= item.applyRemote(row.quantity + item.getQuantityDelta(), row.name, row.description, row.version);
+                if (owner != target) {
+                    owner.dropItem(item);
+                    target.addLoadedItem(item);
+                    changed = true;
+                }
+            }
+        }
+
+        for (int itemId : changes.deletedItems) {
+            for (Department department : departments) {
+                if (!department.hasLoadedItems()) {
+                    continue;
+                }
+                Item item = department.findItem(itemId);
+                if (item != null) {
+                    if (item.isModified()) {
+                        //Keep the local edit, it is inserted as a new row on the next save
+                        item.setID(0);
+                        conflicts++;
+                    } else {
+                        department.dropItem(item);
+                        changed = true;
+                    }
+                    break;
+                }
+            }
+        }
+
+        for (int departmentId : changes.deletedDepartments) {
+            Department department = departmentsById.get(departmentId);
+            if (department == null) {
+                continue;
+            }
+            if (hasLocalChanges(department)) {
+                //Keep the department and everything in it, they are inserted again on the next save
+                department.setID(0);
+                if (department.hasLoadedItems()) {
+                    for (Item item : department.getAllItems()) {
+                        item.setID(0);
+                    }
+                } else {
+                    //Its items were never read and went with the department, loading them now would find nothing
+                    department.removeAllItems();
+                }
+                conflicts++;
+            } else {
+                departments.remove(department);
+                department.removeAllItems();                //Also forgets it in the cache and search index
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * Removes an item that was moved into a department that is not in memory.
+     * A locally modified item is left where it is.
+     *
+     * @param itemId
+     * @param departments
+     * @return true if the item was removed
+     */
+    private boolean dropMovedItem(int itemId, ArrayList<Department> departments){
+        for (Department department : departments) {
+            if (!department.hasLoadedItems()) {
+                continue;
+            }
+            Item item = department.findItem(itemId);
+            if (item != null) {
+                if (item.isModified()) {
+                    conflicts++;
+                    return false;
+                }
+                department.dropItem(item);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param department
+     * @return boolean
+     */
+    private boolean hasLocalChanges(Department department){
+        if (department.isModified()) {
+            return true;
+        }
+        if (department.hasLoadedItems()) {
+            for (Item item : department.getAllItems()) {
+                if (item.isModified()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return long
+     */
+    public long getConflicts(){
+        return conflicts;
+    }
+
+    /**
+     * The rows changed since the last poll.
+     */
+    public static class ChangeSet {
+        private final ArrayList<DepartmentRow> departments = new ArrayList<>();
+        private final ArrayList<ItemRow> items = new ArrayList<>();
+        private final ArrayList<Integer> deletedDepartments = new ArrayList<>();
+        private final ArrayList<Integer> deletedItems = new ArrayList<>();
+        private final ArrayList<Long> entries = new ArrayList<>();  //Change log entries read, in ID order
+        private boolean expired = false;                            //Entries after the watermark were pruned
+        private boolean more = false;                               //More entries are waiting after this page
+
+        /**
+         * @return boolean
+         */
+        public boolean isEmpty(){
+            return departments.isEmpty() && items.isEmpty() && deletedDepartments.isEmpty() && deletedItems.isEmpty();
+        }
+
+        /**
+         * @return true when more entries are waiting, to be fetched once this page has been merged
+         */
+        public boolean hasMore(){
+            return more;
+        }
+
+        /**
+         * @return true when the changes since the watermark can no longer be read and a full load is needed
+         */
+        public boolean isExpired(){
+            return expired;
+        }
+    }
+
+    /**
+     * A range of change log IDs that were not read yet.
+     */
+    private static class Gap {
+        private final long last;                            //Last ID of the range, the first is its key
+        private final long firstMissed;                     //When the range was first missed
+
+        private Gap(long last, long firstMissed){
+            this.last = last;
+            this.firstMissed = firstMissed;
+        }
+    }
+
+    /**
+     * Reads one row of a query.
+     */
+    private interface RowReader {
+        void read(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * A department row as it is in the database.
+     */
+    private static class DepartmentRow {
+        private final int id;
+        private final String name;
+        private final String info;
+        private final long version;
+
+        private DepartmentRow(int id, String name, String info, long version){
+            this.id = id;
+            this.name = name;
+            this.info = info;
+            this.version = version;
+        }
+    }
+
+    /**
+     * An item row as it is in the database.
+     */
+    private static class ItemRow {
+        private final int id;
+        private final int departmentId;
+        private final int quantity;
+        private final String name;
+        private final String description;
+        private final long version;
+
+        private ItemRow(int id, int departmentId, int quantity, String name, String description, long version){
+            this.id = id;
+            this.departmentId = departmentId;
+            this.quantity = quantity;
+            this.name = name;
+            this.description = description;
+            this.version = version;
+        }
+    }
+}
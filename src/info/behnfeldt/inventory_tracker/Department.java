@@ -1,7 +1,10 @@
 package info.behnfeldt.inventory_tracker;
 
-import java.sql.*;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
 
 /**
  * Name:   Department.java
@@ -9,20 +12,36 @@ import java.util.ArrayList;
  * Date:   05/01/2019
  *
  * Class used to store Department data. Will load its items automatically from the
- * database when initialized with its ID.
+ * database when initialized with its ID, or the first time they are needed when it
+ * is initialized for lazy loading. Lazily loaded item lists are tracked by a shared
+ * DepartmentCache that may drop them again while they have no unsaved changes.
+ * Departments registered with an ItemSearchIndex keep it up to date as items are
+ * added, removed, loaded and dropped.
+ *
+ * With 'item_storage compact' in the config the items are kept in a shared
+ * ItemStore instead of one object each, and the item list hands out views of it.
+ *
+ * Adding or removing items marks the department as modified so it is kept in
+ * memory until they are saved, but only a changed name or description is
+ * written to its own row. Those are kept as column bits like Item does.
  */
 public class Department {
+    public static final int NAME = 1;                           //Column bit: name
+    public static final int INFO = 2;                           //Column bit: description
 
     private int id;                                             //department ID
     private String name;                                        //department name
     private String info;                                        //department description
-    private String[] connectionInfo;                            //Stores database connection info
-    private ArrayList<Item> items = new ArrayList<>();          //Stores Item objects that are in the department
+    private List<Item> items = newItemList();                   //Stores Item objects that are in the department
     private boolean hasChanged = false;                         //Marks when the object needs to be saved
-    private static SQLHandler sqlhandler = new SQLHandler();    //Used to retrieve the department items from the database
-    private Connection connector;                               //Connector for our database
-    private PreparedStatement statement;                        //Used to store our SQL statements
-    private ResultSet rs;                                       //Used to store query results
+    private int changedColumns = 0;                             //Column bits changed since the last save
+    private long version = 0;                                   //Row version last seen in the database, 0 when unknown
+    private boolean itemsLoaded = true;                         //Marks when the items list holds the department's items
+    private boolean onDemand = false;                           //Marks when the items were loaded lazily and may be evicted
+    private ItemSearchIndex searchIndex;                        //Search index following this department's items, if any
+    private static SQLHandler sqlhandler = new SQLHandler();    //Used to read the configuration
+    private static DepartmentCache cache = new DepartmentCache(sqlhandler.getLazyCacheSize(), 0.8);    //Departments loaded on demand
+    private static ItemStore itemStore = sqlhandler.isCompactItems() ? new ItemStore() : null;   //Shared item storage in compact mode
 
     /**
      * Main initializer for the Department class. Will automatically retrieve
@@ -33,10 +52,29 @@ public class Department {
      * @param info
      */
     public Department(int id, String name, String info){
+        this(id, name, info, true);
+    }
+
+    /**
+     * Initializer used when the caller decides whether the department loads its
+     * own items right away. When loadItems is false the items are read the first
+     * time getAllItems() or getItem() is called, unless the caller fills them in
+     * itself and calls markItemsLoaded() as InventoryLoader does.
+     *
+     * @param id
+     * @param name
+     * @param info
+     * @param loadItems
+     */
+    public Department(int id, String name, String info, boolean loadItems){
         this.id = id;
         this.name = name;
         this.info = info;
-        loadItems();
+        if (loadItems) {
+            loadItems();
+        } else {
+            itemsLoaded = false;
+        }
     }
 
     /**
@@ -48,6 +86,7 @@ public class Department {
     public Department(String name){
         this.name = name;
         hasChanged = true;
+        changedColumns = NAME | INFO;
     }
 
     /**
@@ -55,22 +94,135 @@ public class Department {
      */
     private void loadItems(){
         try {
-            connectionInfo = sqlhandler.getConnectionInfo();
-            connector = DriverManager.getConnection(connectionInfo[0], connectionInfo[1], connectionInfo[2]);
-            statement = connector.prepareStatement("SELECT * FROM items WHERE department_id = ?");
-            statement.setInt(1, id);
-            rs = statement.executeQuery();
-            //While there is results from the database, add a new Item instance to the items array.
-            while (rs.next()) {
-                items.add(new Item(rs.getInt("id"), rs.getInt("quantity"), rs.getString("name"),  rs.getString("description")));
+            items.addAll(Repositories.items().findByDepartment(id));
+            if (searchIndex != null) {
+                searchIndex.addAll(items, this);
             }
         } catch (SQLException e) {
             e.printStackTrace();
-        } finally {
-            sqlhandler.closeConnections(connector, statement, rs);
         }
     }
 
+    /**
+     * @return an empty item list, backed by the shared ItemStore in compact mode
+     */
+    private List<Item> newItemList(){
+        return itemStore != null ? new StoredItemList(itemStore, this) : new ArrayList<>();
+    }
+
+    /**
+     * Frees the storage of items that are no longer referenced anywhere, such
+     * as items deleted from the database. Does nothing unless items are kept
+     * in the compact ItemStore.
+     *
+     * @param removed
+     */
+    static void releaseItems(Collection<Item> removed){
+        for (Item item : removed) {
+            if (item instanceof StoredItem && ((StoredItem) item).getStore() == itemStore) {
+                itemStore.release(((StoredItem) item).getSlot());
+            }
+        }
+    }
+
+    /**
+     * @return the shared item storage, or null when items are plain objects
+     */
+    public static ItemStore getItemStore(){
+        return itemStore;
+    }
+
+    /**
+     * Loads the items from the database if they have not been loaded yet and
+     * marks this department as the most recently used one in the cache.
+     * Loading holds the department's monitor because the database thread may
+     * be loading the items while the Swing thread asks for them.
+     */
+    private void ensureItemsLoaded(){
+        boolean tracked;
+        synchronized (this) {
+            if (!itemsLoaded) {
+                items.clear();
+                loadItems();
+                itemsLoaded = true;
+                onDemand = true;
+            }
+            tracked = onDemand;
+        }
+        //Outside of the monitor, the cache locks itself before the departments it unloads
+        if (tracked) {
+            cache.touch(this);
+        }
+    }
+
+    /**
+     * Marks the items list as complete, used by loaders that fill in the
+     * items themselves with addLoadedItem().
+     */
+    void markItemsLoaded(){
+        itemsLoaded = true;
+    }
+
+    /**
+     * Drops the loaded items so they are read again on the next access. Only
+     * done for departments that were loaded on demand and have no unsaved
+     * changes, in the department or in any of its items. Called by the
+     * DepartmentCache on the database thread.
+     *
+     * @return true if the items were dropped
+     */
+    synchronized boolean unloadItems(){
+        if (!itemsLoaded || id == 0 || hasChanged) {
+            return false;
+        }
+        for (Item item : items) {
+            if (item.isModified()) {
+                return false;
+            }
+        }
+        if (searchIndex != null) {
+            searchIndex.removeAll(items, this);
+        }
+        if (items instanceof StoredItemList) {
+            ((StoredItemList) items).release();
+        }
+        items = newItemList();
+        itemsLoaded = false;
+        onDemand = false;
+        return true;
+    }
+
+    /**
+     * When the items are in memory. Departments that have not been opened
+     * yet in lazy mode can not hold any unsaved items.
+     *
+     * @return
+     */
+    public boolean hasLoadedItems(){
+        return itemsLoaded;
+    }
+
+    /**
+     * @return
+     */
+    public static DepartmentCache getCache(){
+        return cache;
+    }
+
+    /**
+     * @return the search index following this department, or null
+     */
+    ItemSearchIndex getSearchIndex(){
+        return searchIndex;
+    }
+
+    /**
+     * @param searchIndex
+     */
+    void setSearchIndex(ItemSearchIndex searchIndex){
+        this.searchIndex = searchIndex;
+    }
+
     /**
      * @return
      */
@@ -97,16 +249,53 @@ public class Department {
      * @return
      */
     public Item getItem(int index){
+        ensureItemsLoaded();
         return items.get(index);
     }
 
     /**
      * @return
      */
-    public ArrayList<Item> getAllItems(){
+    public List<Item> getAllItems(){
+        ensureItemsLoaded();
         return items;
     }
 
+    /**
+     * Passes every item of the department to the visitor in one pass, for work
+     * such as exports and totals that does not need the whole list at once.
+     * Items in memory are visited as they are, with their unsaved changes.
+     * Otherwise the items are streamed from the database without being kept,
+     * so the department is not loaded and memory use does not grow with its
+     * size. Streaming must run on the database thread.
+     *
+     * @param visitor
+     * @throws SQLException
+     */
+    public void forEachItem(ItemVisitor visitor) throws SQLException {
+        if (itemsLoaded) {
+            //Indexed instead of iterated, so an edit on the Swing thread during the pass can not make it fail
+            for (int i = 0; i < items.size(); i++) {
+                visitor.visit(id, items.get(i));
+            }
+        } else {
+            Repositories.items().streamByDepartment(id, visitor);
+        }
+    }
+
+    /**
+     * Adds up the quantities of every item in the department with a single
+     * pass through forEachItem().
+     *
+     * @return long
+     * @throws SQLException
+     */
+    public long getTotalQuantity() throws SQLException {
+        long[] total = {0};
+        forEachItem((departmentId, item) -> total[0] += item.getQuantity());
+        return total[0];
+    }
+
     /**
      * When the item has changed and needs to be saved
      *
@@ -116,43 +305,202 @@ public class Department {
         return hasChanged;
     }
 
+    /**
+     * @return the column bits changed since the last save, 0 when only the items changed
+     */
+    public int getChangedColumns(){
+        return changedColumns;
+    }
+
+    /**
+     * @return
+     */
+    public long getVersion(){
+        return version;
+    }
+
+    /**
+     * @param version
+     */
+    void setVersion(long version){
+        this.version = version;
+    }
+
+    /**
+     * Applies a change another client made in the database. Unlike the
+     * setters this does not mark the department as modified.
+     *
+     * @param name
+     * @param info
+     * @param version
+     * @return true if anything was different
+     */
+    boolean applyRemote(String name, String info, long version){
+        this.version = version;
+        if (Objects.equals(this.name, name) && Objects.equals(this.info, info)) {
+            return false;
+        }
+        this.name = name;
+        this.info = info;
+        return true;
+    }
+
+    /**
+     * Puts the unsaved changes on top of a row another client changed since
+     * it was read. Columns changed here keep their value, the others take the
+     * value from the database. The department stays modified.
+     *
+     * @param name
+     * @param info
+     * @param version
+     */
+    void rebase(String name, String info, long version){
+        this.version = version;
+        if ((changedColumns & NAME) == 0) {
+            this.name = name;
+        }
+        if ((changedColumns & INFO) == 0) {
+            this.info = info;
+        }
+    }
+
+    /**
+     * Copies everything a save can change, see Repositories.remember().
+     *
+     * @return State
+     */
+    State saveState(){
+        return new State(id, name, info, hasChanged, changedColumns, version);
+    }
+
+    /**
+     * Puts back a copy made by saveState(), after the transaction that changed
+     * the department was rolled back.
+     *
+     * @param state
+     */
+    void restore(State state){
+        boolean moved = id != state.id;
+        id = state.id;
+        name = state.name;
+        info = state.info;
+        hasChanged = state.modified;
+        changedColumns = state.changedColumns;
+        version = state.version;
+        if (moved && items instanceof StoredItemList) {
+            ((StoredItemList) items).updateDepartmentId();
+        }
+    }
+
+    /**
+     * Finds a loaded item by its database ID.
+     *
+     * @param itemId
+     * @return the item, or null when it is not in this department
+     */
+    Item findItem(int itemId){
+        for (Item item : items) {
+            if (item.getID() == itemId) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes an item that was deleted or moved by another client. Unlike
+     * removeItem() the department is not marked as modified.
+     *
+     * @param item
+     */
+    void dropItem(Item item){
+        items.remove(item);
+        if (searchIndex != null) {
+            searchIndex.remove(item, this);
+        }
+    }
+
+    /**
+     * Clears the modified mark once the department has been written to the
+     * database, without touching any of its data.
+     */
+    void markSaved(){
+        hasChanged = false;
+        changedColumns = 0;
+    }
+
     /**
      * @param id
      */
     public void setID(int id){
         this.id = id;
         hasChanged = true;
+        changedColumns = NAME | INFO;
+        if (items instanceof StoredItemList) {
+            ((StoredItemList) items).updateDepartmentId();
+        }
     }
 
     /**
      * @param name
      */
     public void setName(String name){
+        if (Objects.equals(this.name, name)) {
+            return;
+        }
         this.name = name;
         hasChanged = true;
+        changedColumns |= NAME;
     }
 
     /**
      * @param info
      */
     public void setInfo(String info){
+        if (Objects.equals(this.info, info)) {
+            return;
+        }
         this.info = info;
         hasChanged = true;
+        changedColumns |= INFO;
     }
 
     /**
      * @param item
      */
     public void addItem(Item item){
+        ensureItemsLoaded();
         items.add(item);
+        Item stored = items.get(items.size() - 1);      //The stored item, a copy in compact mode
+        stored.markMoved();
+        if (searchIndex != null) {
+            searchIndex.add(stored, this);
+        }
         hasChanged = true;
     }
 
+    /**
+     * Adds an item that was read from the database. Unlike addItem() the
+     * department is not marked as modified.
+     *
+     * @param item
+     */
+    void addLoadedItem(Item item){
+        items.add(item);
+        if (searchIndex != null) {
+            searchIndex.add(items.get(items.size() - 1), this);
+        }
+    }
+
     /**
      * @param index
      */
     public void removeItem(int index){
-        items.remove(index);
+        ensureItemsLoaded();
+        Item removed = items.remove(index);
+        if (searchIndex != null) {
+            searchIndex.remove(removed, this);
+        }
         hasChanged = true;
     }
 
@@ -160,14 +508,50 @@ public class Department {
      * @param item
      */
     public void removeItem(Item item){
+        ensureItemsLoaded();
         items.remove(item);
+        if (searchIndex != null) {
+            searchIndex.remove(item, this);
+        }
         hasChanged = true;
     }
 
     /**
-     * Removes all items from the departments item list
+     * Removes all items from the departments item list. Only used when the
+     * department and its items are gone from the database, so in compact
+     * mode their storage is freed as well.
      */
     public void removeAllItems(){
+        if (searchIndex != null) {
+            searchIndex.removeAll(items, this);
+        }
+        if (items instanceof StoredItemList) {
+            ((StoredItemList) items).release();
+        }
         items.clear();
+        itemsLoaded = true;
+        onDemand = false;
+        cache.remove(this);
+    }
+
+    /**
+     * The data and marks of a department at one point in time.
+     */
+    static class State {
+        final int id;
+        final String name;
+        final String info;
+        final boolean modified;
+        final int changedColumns;
+        final long version;
+
+        private State(int id, String name, String info, boolean modified, int changedColumns, long version){
+            this.id = id;
+            this.name = name;
+            this.info = info;
+            this.modified = modified;
+            this.changedColumns = changedColumns;
+            this.version = version;
+        }
     }
 }
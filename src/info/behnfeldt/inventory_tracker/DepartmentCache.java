@@ -0,0 +1,149 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Name:   DepartmentCache.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Keeps track of the departments whose items were loaded on demand, in least
+ * recently used order. When more departments are loaded than the cache allows,
+ * or when the heap is getting full, the item lists of the oldest departments
+ * are dropped so they are read from the database again the next time they are
+ * opened. Departments with unsaved changes are never evicted, and neither is
+ * the department the item list is showing.
+ *
+ * Departments are only evicted on the database thread, where items are also
+ * loaded. A touch from any other thread only records that the department was
+ * used, and the next load on the database thread evicts what is over the
+ * limits. The listener is told about every department that was evicted so a
+ * list showing its items can load them again.
+ */
+public class DepartmentCache {
+
+    private final int capacity;                                             //Most departments that may hold their items
+    private final double memoryThreshold;                                   //Fraction of the max heap that counts as pressure
+    private final LinkedHashMap<Department, Boolean> loaded =
+            new LinkedHashMap<>(16, 0.75f, true);                           //Loaded departments, least recently used first
+    private long evictions = 0;                                             //Stats: item lists dropped from memory
+    private Department shown;                                               //Department the item list shows, never evicted
+    private Listener listener;                                              //Told when a department was evicted, may be null
+
+    /**
+     * Main initializer for the DepartmentCache class.
+     *
+     * @param capacity
+     * @param memoryThreshold
+     */
+    public DepartmentCache(int capacity, double memoryThreshold){
+        this.capacity = Math.max(1, capacity);
+        this.memoryThreshold = memoryThreshold;
+    }
+
+    /**
+     * Marks the department as the most recently used one, then evicts older
+     * departments if the cache is over capacity or memory is running low.
+     *
+     * @param department
+     */
+    public synchronized void touch(Department department){
+        loaded.put(department, Boolean.TRUE);
+        if (DatabaseExecutor.isDatabaseThread()) {
+            evict(department);
+        }
+    }
+
+    /**
+     * Sets the department the item list is showing, which is kept in memory
+     * until another one is shown.
+     *
+     * @param department the department, or null when none is shown
+     */
+    public synchronized void setShown(Department department){
+        shown = department;
+    }
+
+    /**
+     * @param listener
+     */
+    public synchronized void setListener(Listener listener){
+        this.listener = listener;
+    }
+
+    /**
+     * Forgets a department, used when it is deleted or reloaded.
+     *
+     * @param department
+     */
+    public synchronized void remove(Department department){
+        loaded.remove(department);
+    }
+
+    /**
+     * Forgets every department, used when all content is reloaded.
+     */
+    public synchronized void clear(){
+        loaded.clear();
+    }
+
+    /**
+     * Walks the departments from least to most recently used, dropping the
+     * items of clean departments until the cache is within its limits. Freed
+     * memory only shows up after garbage collection, so memory pressure drops
+     * at most half of the cache at a time. The department that was just used
+     * is always kept.
+     *
+     * @param keep
+     */
+    private void evict(Department keep){
+        int pressureBudget = underMemoryPressure() ? loaded.size() / 2 : 0;
+        Iterator<Department> iterator = loaded.keySet().iterator();
+        while (iterator.hasNext() && (loaded.size() > capacity || pressureBudget > 0)) {
+            Department department = iterator.next();
+            if (department != keep && department != shown && department.unloadItems()) {
+                iterator.remove();
+                evictions++;
+                pressureBudget--;
+                if (listener != null) {
+                    listener.evicted(department);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return boolean
+     */
+    private boolean underMemoryPressure(){
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return used > runtime.maxMemory() * memoryThreshold;
+    }
+
+    /**
+     * @return int
+     */
+    public synchronized int size(){
+        return loaded.size();
+    }
+
+    /**
+     * @return long
+     */
+    public synchronized long getEvictions(){
+        return evictions;
+    }
+
+    /**
+     * Told on the database thread when the items of a department were dropped.
+     */
+    public interface Listener {
+        /**
+         * @param department
+         */
+        void evicted(Department department);
+    }
+}
@@ -0,0 +1,170 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Name:   DepartmentCommand.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Undoable add, rename or delete of a department. Holds the department itself
+ * and, for a rename, the old and new name. Every undo and redo is also written
+ * to the journal so a crash afterwards recovers the right state.
+ */
+public class DepartmentCommand implements UndoHistory.Command {
+
+    private static final long BASE_SIZE = 64;                   //Estimated bytes of a command without its text
+    private final String name;                                  //Shown in the Undo and Redo menu buttons
+    private final Department department;                        //The department that was changed
+    private final ArrayList<Department> departments;            //The departments shown in the main form
+    private final ArrayList<Department> deletedDepartments;     //Departments that need deleted from the database
+    private final ChangeJournal journal;                        //Backup of unsaved changes, may be null
+    private final int index;                                    //Position of the department in the list
+    private final String oldName;                               //Name before a rename
+    private final String newName;                               //Name after a rename
+
+    /**
+     * @param name
+     * @param department
+     * @param departments
+     * @param deletedDepartments
+     * @param journal
+     * @param index
+     * @param oldName
+     * @param newName
+     */
+    private DepartmentCommand(String name, Department department, ArrayList<Department> departments,
+                              ArrayList<Department> deletedDepartments, ChangeJournal journal, int index,
+                              String oldName, String newName){
+        this.name = name;
+        this.department = department;
+        this.departments = departments;
+        this.deletedDepartments = deletedDepartments;
+        this.journal = journal;
+        this.index = index;
+        this.oldName = oldName;
+        this.newName = newName;
+    }
+
+    /**
+     * A department that was just added at the end of the list.
+     *
+     * @param department
+     * @param departments
+     * @param journal
+     * @return DepartmentCommand
+     */
+    public static DepartmentCommand added(Department department, ArrayList<Department> departments, ChangeJournal journal){
+        return new DepartmentCommand("Add Department", department, departments, null, journal,
+                departments.size() - 1, null, null);
+    }
+
+    /**
+     * A department that was just renamed.
+     *
+     * @param department
+     * @param oldName
+     * @param journal
+     * @return DepartmentCommand
+     */
+    public static DepartmentCommand renamed(Department department, String oldName, ChangeJournal journal){
+        return new DepartmentCommand("Edit Department", department, null, null, journal, -1,
+                oldName, department.getName());
+    }
+
+    /**
+     * A department that was just removed from the given position and added
+     * to the deleted departments.
+     *
+     * @param department
+     * @param index
+     * @param departments
+     * @param deletedDepartments
+     * @param journal
+     * @return DepartmentCommand
+     */
+    public static DepartmentCommand deleted(Department department, int index, ArrayList<Department> departments,
+                                            ArrayList<Department> deletedDepartments, ChangeJournal journal){
+        return new DepartmentCommand("Delete Department", department, departments, deletedDepartments, journal,
+                index, null, null);
+    }
+
+    @Override
+    public void undo(){
+        if (oldName != null) {
+            rename(oldName);
+        } else if (deletedDepartments == null) {
+            remove();
+        } else {
+            deletedDepartments.remove(department);
+            insert();
+        }
+    }
+
+    @Override
+    public void redo(){
+        if (oldName != null) {
+            rename(newName);
+        } else if (deletedDepartments == null) {
+            insert();
+        } else {
+            deletedDepartments.add(department);
+            remove();
+        }
+    }
+
+    /**
+     * @param value
+     */
+    private void rename(String value){
+        department.setName(value);
+        if (journal != null) {
+            journal.department(department);
+        }
+    }
+
+    /**
+     * Puts the department back at its position in the list.
+     */
+    private void insert(){
+        departments.add(Math.min(index, departments.size()), department);
+        if (journal != null) {
+            journal.department(department);
+        }
+    }
+
+    /**
+     * Takes the department out of the list.
+     */
+    private void remove(){
+        departments.remove(department);
+        if (journal != null) {
+            journal.departmentDeleted(department);
+        }
+    }
+
+    @Override
+    public String getName(){
+        return name;
+    }
+
+    @Override
+    public long getSize(){
+        return BASE_SIZE + 2L * (length(oldName) + length(newName));
+    }
+
+    @Override
+    public void addDepartments(Collection<Department> departments){
+        departments.add(department);
+    }
+
+    /**
+     * @param value
+     * @return int
+     */
+    private static int length(String value){
+        return value == null ? 0 : value.length();
+    }
+}
@@ -0,0 +1,55 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+/**
+ * Name:   DepartmentRepository.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Storage of departments, independent of where they are kept. The backend is
+ * chosen in the config file and handed out by Repositories.
+ */
+public interface DepartmentRepository {
+
+    /**
+     * Reads every department in id order. With withItems the departments hold
+     * all of their items, otherwise each department loads its items on demand.
+     *
+     * @param withItems
+     * @return ArrayList<Department>
+     * @throws SQLException
+     */
+    ArrayList<Department> findAll(boolean withItems) throws SQLException;
+
+    /**
+     * Inserts new departments and sets the generated ID on each of them.
+     *
+     * @param departments
+     * @throws SQLException
+     */
+    void insertDepartments(ArrayList<Department> departments) throws SQLException;
+
+    /**
+     * Writes the columns each department changed, see
+     * Department.getChangedColumns(). Departments whose only change was to
+     * their items have nothing to write. Rows another client changed or deleted
+     * since they were read are handed to the ConflictResolver where the backend
+     * can detect them.
+     *
+     * @param departments
+     * @return the departments that are still unsaved because of such a conflict
+     * @throws SQLException
+     */
+    ArrayList<Department> updateDepartments(ArrayList<Department> departments) throws SQLException;
+
+    /**
+     * Deletes departments along with every item stored in them.
+     *
+     * @param departments
+     * @throws SQLException
+     */
+    void deleteDepartments(ArrayList<Department> departments) throws SQLException;
+}
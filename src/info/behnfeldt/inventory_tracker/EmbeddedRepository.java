@@ -0,0 +1,703 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Name:   EmbeddedRepository.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Department and item storage kept inside the application process, for small
+ * sites and for testing without a MySQL server. All rows are held in memory,
+ * indexed by ID and by department. Only this process writes the files, so
+ * saves never conflict with another client and rows carry no version.
+ *
+ * The rows are stored in two files. The database file holds a copy of every
+ * row, and the log file next to it ('.log' added to the name) holds the rows
+ * changed since that copy was written. Every change only appends the rows it
+ * touched to the log, so a save costs what it changed and not the size of the
+ * inventory. Once the log has grown larger than the database file it is
+ * compacted: the whole database is written to a temporary file, moved over
+ * the old one in one step, and the log is emptied. Opening the database reads
+ * the copy, then applies the log to it.
+ *
+ * Inside a transaction the changes are only made in memory, and the log is
+ * appended to once when it is committed. A rollback reads the files back,
+ * which drops everything changed since the transaction began.
+ *
+ * The database file holds, in order: a format marker, the next department and
+ * item IDs, the department rows and the item rows. The log holds one frame per
+ * commit: its length, the changed rows and deleted IDs, and an end marker. A
+ * frame cut short by a crash is dropped when the log is read.
+ */
+public class EmbeddedRepository implements DepartmentRepository, ItemRepository {
+
+    private static final int FORMAT = 0x49544442;                                   //"ITDB", marks the file format
+    private static final int FRAME_END = 0x4954454E;                                //"ITEN", ends a commit in the log
+    private static final byte DEPARTMENT_PUT = 1;                                   //Log record: department row written
+    private static final byte DEPARTMENT_DELETE = 2;                                //Log record: department deleted with its items
+    private static final byte ITEM_PUT = 3;                                         //Log record: item row written
+    private static final byte ITEM_DELETE = 4;                                      //Log record: item deleted
+    private static final long COMPACT_MIN = 1 << 20;                                //Smallest log in bytes that is compacted
+    private final Path file;                                                        //Where the copy of every row is stored
+    private final Path log;                                                         //Where the changes since the copy are stored
+    private final ByteArrayOutputStream changes = new ByteArrayOutputStream();      //Log records not appended yet
+    private final DataOutputStream pending = new DataOutputStream(changes);         //Writes the log records not appended yet
+    private long fileSize = 0;                                                      //Size of the database file
+    private long logSize = 0;                                                       //Size of the log file
+    private final TreeMap<Integer, DepartmentRow> departments = new TreeMap<>();    //Department rows by ID
+    private final HashMap<Integer, ItemRow> items = new HashMap<>();                //Item rows by ID
+    private final HashMap<Integer, TreeMap<Integer, ItemRow>> itemsByDepartment = new HashMap<>();   //Item rows by department, then ID
+    private int nextDepartmentId = 1;                                               //ID given to the next department inserted
+    private int nextItemId = 1;                                                     //ID given to the next item inserted
+    private boolean inTransaction = false;                                          //Set while changes wait for commit()
+
+    /**
+     * Main initializer for the EmbeddedRepository class. Reads the database
+     * file and its log if they exist, otherwise starts with an empty inventory.
+     *
+     * @param fileName
+     */
+    public EmbeddedRepository(String fileName){
+        file = Paths.get(fileName);
+        log = file.resolveSibling(file.getFileName() + ".log");
+        try {
+            read();
+        } catch (IOException e) {
+            System.out.println("An error occurred trying to read the embedded database " + file);
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public synchronized ArrayList<Department> findAll(boolean withItems){
+        ArrayList<Department> result = new ArrayList<>();
+        for (DepartmentRow row : departments.values()) {
+            Department department = new Department(row.id, row.name, row.description, false);
+            if (withItems) {
+                TreeMap<Integer, ItemRow> departmentItems = itemsByDepartment.get(row.id);
+                if (departmentItems != null) {
+                    for (ItemRow item : departmentItems.values()) {
+                        department.addLoadedItem(item.toItem());
+                    }
+                }
+                department.markItemsLoaded();
+            }
+            result.add(department);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void insertDepartments(ArrayList<Department> newDepartments) throws SQLException {
+        for (Department department : newDepartments) {
+            DepartmentRow row = new DepartmentRow(nextDepartmentId++, department.getName(), "");
+            departments.put(row.id, row);
+            logDepartment(row);
+            Repositories.remember(department);
+            department.setID(row.id);
+        }
+        write();
+    }
+
+    @Override
+    public synchronized ArrayList<Department> updateDepartments(ArrayList<Department> modifiedDepartments) throws SQLException {
+        for (Department department : modifiedDepartments) {
+            DepartmentRow row = departments.get(department.getID());
+            if (row == null) {
+                continue;
+            }
+            if ((department.getChangedColumns() & Department.NAME) != 0) {
+                row.name = department.getName() == null ? "" : department.getName();
+            }
+            if ((department.getChangedColumns() & Department.INFO) != 0) {
+                row.description = department.getInfo() == null ? "" : department.getInfo();
+            }
+            logDepartment(row);
+        }
+        write();
+        return new ArrayList<>();
+    }
+
+    @Override
+    public synchronized void deleteDepartments(ArrayList<Department> deletedDepartments) throws SQLException {
+        for (Department department : deletedDepartments) {
+            removeDepartment(department.getID());
+            logDelete(DEPARTMENT_DELETE, department.getID());
+        }
+        write();
+    }
+
+    @Override
+    public synchronized ArrayList<Item> findByDepartment(int departmentId){
+        ArrayList<Item> result = new ArrayList<>();
+        TreeMap<Integer, ItemRow> departmentItems = itemsByDepartment.get(departmentId);
+        if (departmentItems != null) {
+            for (ItemRow row : departmentItems.values()) {
+                result.add(row.toItem());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void streamByDepartment(int departmentId, ItemVisitor visitor) throws SQLException {
+        TreeMap<Integer, ItemRow> departmentItems = itemsByDepartment.get(departmentId);
+        if (departmentItems != null) {
+            for (ItemRow row : departmentItems.values()) {
+                InventoryLoader.checkCancelled();
+                visitor.visit(departmentId, row.toItem());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void streamAll(ItemVisitor visitor) throws SQLException {
+        for (Integer departmentId : new TreeMap<>(itemsByDepartment).keySet()) {
+            streamByDepartment(departmentId, visitor);
+        }
+    }
+
+    @Override
+    public synchronized ArrayList<Item> findPage(int departmentId, int afterId, int limit){
+        ArrayList<Item> result = new ArrayList<>();
+        TreeMap<Integer, ItemRow> departmentItems = itemsByDepartment.get(departmentId);
+        if (departmentItems != null) {
+            for (ItemRow row : departmentItems.tailMap(afterId, false).values()) {
+                if (result.size() == limit) {
+                    break;
+                }
+                result.add(row.toItem());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized int countByDepartment(int departmentId){
+        TreeMap<Integer, ItemRow> departmentItems = itemsByDepartment.get(departmentId);
+        return departmentItems != null ? departmentItems.size() : 0;
+    }
+
+    @Override
+    public synchronized int findIdAt(int departmentId, int offset){
+        if (offset < 0) {
+            return 0;
+        }
+        TreeMap<Integer, ItemRow> departmentItems = itemsByDepartment.get(departmentId);
+        if (departmentItems == null || offset >= departmentItems.size()) {
+            return Integer.MAX_VALUE;
+        }
+        int position = 0;
+        for (Integer id : departmentItems.keySet()) {
+            if (position++ == offset) {
+                return id;
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public synchronized HashMap<Integer, Integer> findDepartmentIds(Collection<Integer> itemIds){
+        HashMap<Integer, Integer> departmentIds = new HashMap<>();
+        for (Integer id : itemIds) {
+            ItemRow row = items.get(id);
+            if (row != null) {
+                departmentIds.put(id, row.departmentId);
+            }
+        }
+        return departmentIds;
+    }
+
+    /**
+     * Checks every item against the search. The embedded backend
+     * keeps all rows in memory anyway, so there is no separate index to keep.
+     */
+    @Override
+    public synchronized LinkedHashMap<Item, Integer> searchItems(SearchQuery query, int offset, int limit){
+        LinkedHashMap<Item, Integer> result = new LinkedHashMap<>();
+        if (query.isEmpty()) {
+            return result;
+        }
+        int skipped = 0;
+        for (ItemRow row : items.values()) {
+            if (result.size() == limit) {
+                break;
+            }
+            if (query.matchesQuantity(row.quantity) && matchesWords(query, row) && skipped++ >= offset) {
+                result.put(row.toItem(), row.departmentId);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param query
+     * @param row
+     * @return true if every word of the search starts a word of the row
+     */
+    private static boolean matchesWords(SearchQuery query, ItemRow row){
+        ArrayList<String> words = SearchQuery.tokenize(row.name, row.description);
+        for (String prefix : query.getWords()) {
+            boolean found = false;
+            for (String word : words) {
+                if (word.startsWith(prefix)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void insertItems(HashMap<Item, Department> newItems) throws SQLException {
+        for (Map.Entry<Item, Department> entry : newItems.entrySet()) {
+            Item item = entry.getKey();
+            ItemRow row = new ItemRow(nextItemId++, entry.getValue().getID(), item.getQuantity(), item.getName(), item.getDescription());
+            put(row);
+            logItem(row);
+            Repositories.remember(item);
+            item.setID(row.id);
+        }
+        write();
+    }
+
+    @Override
+    public synchronized ArrayList<Item> updateItems(HashMap<Item, Department> modifiedItems) throws SQLException {
+        for (Map.Entry<Item, Department> entry : modifiedItems.entrySet()) {
+            Item item = entry.getKey();
+            ItemRow old = items.get(item.getID());
+            if (old == null) {
+                continue;
+            }
+            //Only the changed columns are taken from the item, the same as the MySQL backend
+            int columns = item.getChangedColumns();
+            int quantity = old.quantity;
+            if ((columns & Item.ADJUSTED) != 0) {
+                quantity += item.getQuantityDelta();
+            } else if ((columns & Item.QUANTITY) != 0) {
+                quantity = item.getQuantity();
+            }
+            ItemRow row = new ItemRow(item.getID(),
+                    (columns & Item.DEPARTMENT) != 0 ? entry.getValue().getID() : old.departmentId,
+                    quantity,
+                    (columns & Item.NAME) != 0 ? item.getName() : old.name,
+                    (columns & Item.DESCRIPTION) != 0 ? item.getDescription() : old.description);
+            remove(old);
+            put(row);
+            logItem(row);
+            if ((columns & Item.ADJUSTED) != 0) {
+                Repositories.remember(item);
+                item.setSavedQuantity(quantity);
+            }
+        }
+        write();
+        return new ArrayList<>();
+    }
+
+    @Override
+    public synchronized void deleteItems(ArrayList<Item> deletedItems) throws SQLException {
+        for (Item item : deletedItems) {
+            ItemRow row = items.get(item.getID());
+            if (row != null) {
+                remove(row);
+                logDelete(ITEM_DELETE, row.id);
+            }
+        }
+        write();
+    }
+
+    /**
+     * Starts a transaction, changes are no longer appended to the log until
+     * commit().
+     *
+     * @throws SQLException
+     */
+    public synchronized void beginTransaction() throws SQLException {
+        if (inTransaction) {
+            throw new SQLException("A transaction is already open on the embedded database.");
+        }
+        inTransaction = true;
+    }
+
+    /**
+     * Appends every change made since beginTransaction() to the log at once.
+     * When the log can not be written the transaction stays open so it can be
+     * rolled back.
+     *
+     * @throws SQLException
+     */
+    public synchronized void commitTransaction() throws SQLException {
+        inTransaction = false;
+        try {
+            write();
+        } catch (SQLException e) {
+            inTransaction = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Drops every change made since beginTransaction() by reading the files
+     * again.
+     */
+    public synchronized void rollbackTransaction(){
+        if (!inTransaction) {
+            return;
+        }
+        inTransaction = false;
+        changes.reset();
+        departments.clear();
+        items.clear();
+        itemsByDepartment.clear();
+        nextDepartmentId = 1;
+        nextItemId = 1;
+        try {
+            read();
+        } catch (IOException e) {
+            System.out.println("An error occurred trying to read the embedded database " + file);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @param row
+     */
+    private void put(ItemRow row){
+        items.put(row.id, row);
+        itemsByDepartment.computeIfAbsent(row.departmentId, k -> new TreeMap<>()).put(row.id, row);
+    }
+
+    /**
+     * Removes a department and its items, the same as the cascading foreign
+     * key of the MySQL schema.
+     *
+     * @param id
+     */
+    private void removeDepartment(int id){
+        departments.remove(id);
+        TreeMap<Integer, ItemRow> departmentItems = itemsByDepartment.remove(id);
+        if (departmentItems != null) {
+            for (Integer itemId : departmentItems.keySet()) {
+                items.remove(itemId);
+            }
+        }
+    }
+
+    /**
+     * @param row
+     */
+    private void remove(ItemRow row){
+        items.remove(row.id);
+        TreeMap<Integer, ItemRow> departmentItems = itemsByDepartment.get(row.departmentId);
+        if (departmentItems != null) {
+            departmentItems.remove(row.id);
+        }
+    }
+
+    /**
+     * Reads the database file into memory, then applies the log to it. A
+     * frame at the end of the log that a crash cut short is cut off the file.
+     *
+     * @throws IOException
+     */
+    private void read() throws IOException {
+        fileSize = 0;
+        logSize = 0;
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != FORMAT) {
+                    throw new IOException("Not an embedded inventory database: " + file);
+                }
+                nextDepartmentId = in.readInt();
+                nextItemId = in.readInt();
+                int departmentCount = in.readInt();
+                for (int i = 0; i < departmentCount; i++) {
+                    DepartmentRow row = new DepartmentRow(in.readInt(), readString(in), readString(in));
+                    departments.put(row.id, row);
+                }
+                int itemCount = in.readInt();
+                for (int i = 0; i < itemCount; i++) {
+                    put(new ItemRow(in.readInt(), in.readInt(), in.readInt(), readString(in), readString(in)));
+                }
+            }
+            fileSize = Files.size(file);
+        }
+        if (!Files.exists(log)) {
+            return;
+        }
+
+        long size = Files.size(log);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(log)))) {
+            while (logSize < size) {
+                byte[] frame;
+                try {
+                    int length = in.readInt();
+                    if (length < 0 || logSize + 8 + length > size) {
+                        break;
+                    }
+                    frame = new byte[length];
+                    in.readFully(frame);
+                    if (in.readInt() != FRAME_END) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                replay(frame);
+                logSize += 8 + frame.length;
+            }
+        }
+        if (logSize < size) {
+            System.out.println("Dropped an unfinished commit at the end of " + log);
+            try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+                channel.truncate(logSize);
+            }
+        }
+    }
+
+    /**
+     * Applies the records of one log frame to the rows in memory.
+     *
+     * @param frame
+     * @throws IOException
+     */
+    private void replay(byte[] frame) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+        while (in.available() > 0) {
+            byte type = in.readByte();
+            switch (type) {
+                case DEPARTMENT_PUT : {
+                    DepartmentRow row = new DepartmentRow(in.readInt(), readString(in), readString(in));
+                    departments.put(row.id, row);
+                    nextDepartmentId = Math.max(nextDepartmentId, row.id + 1);
+                    break;
+                }
+                case DEPARTMENT_DELETE : removeDepartment(in.readInt()); break;
+                case ITEM_PUT : {
+                    ItemRow row = new ItemRow(in.readInt(), in.readInt(), in.readInt(), readString(in), readString(in));
+                    ItemRow old = items.get(row.id);
+                    if (old != null) {
+                        remove(old);
+                    }
+                    put(row);
+                    nextItemId = Math.max(nextItemId, row.id + 1);
+                    break;
+                }
+                case ITEM_DELETE : {
+                    ItemRow old = items.get(in.readInt());
+                    if (old != null) {
+                        remove(old);
+                    }
+                    break;
+                }
+                default : throw new IOException("Unknown record " + type + " in " + log);
+            }
+        }
+    }
+
+    /**
+     * Adds a department row to the changes not appended to the log yet.
+     *
+     * @param row
+     */
+    private void logDepartment(DepartmentRow row){
+        try {
+            pending.writeByte(DEPARTMENT_PUT);
+            pending.writeInt(row.id);
+            writeString(pending, row.name);
+            writeString(pending, row.description);
+        } catch (IOException e) {
+            //Writes to memory, never thrown
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Adds an item row to the changes not appended to the log yet.
+     *
+     * @param row
+     */
+    private void logItem(ItemRow row){
+        try {
+            pending.writeByte(ITEM_PUT);
+            pending.writeInt(row.id);
+            pending.writeInt(row.departmentId);
+            pending.writeInt(row.quantity);
+            writeString(pending, row.name);
+            writeString(pending, row.description);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Adds a deleted department or item to the changes not appended to the log yet.
+     *
+     * @param type
+     * @param id
+     */
+    private void logDelete(byte type, int id){
+        try {
+            pending.writeByte(type);
+            pending.writeInt(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends the changes made since the last write to the log as one frame,
+     * then compacts the log once it has grown larger than the database file.
+     * Inside a transaction nothing is written until it is committed. When the
+     * append fails the changes are kept and written with the next one.
+     *
+     * @throws SQLException
+     */
+    private void write() throws SQLException {
+        if (inTransaction || changes.size() == 0) {
+            return;
+        }
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(log, StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+                out.writeInt(changes.size());
+                changes.writeTo(out);
+                out.writeInt(FRAME_END);
+            }
+            logSize += 8 + changes.size();
+            changes.reset();
+        } catch (IOException e) {
+            //Frames appended later would not be read after a partly appended one
+            try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+                channel.truncate(logSize);
+            } catch (IOException ignored) {
+                //The unfinished frame is cut off the next time the log is read
+            }
+            throw new SQLException("Could not write the embedded database " + log, e);
+        }
+        if (logSize > COMPACT_MIN && logSize > fileSize) {
+            compact();
+        }
+    }
+
+    /**
+     * Writes the whole database to a temporary file, moves it over the old
+     * database file in one step, then empties the log. The log only repeats
+     * rows the new file already holds, so a crash before it is emptied loses
+     * nothing. The changes are already in the log, so when compacting fails
+     * the log is kept and compacted after a later write.
+     */
+    private void compact(){
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FORMAT);
+                out.writeInt(nextDepartmentId);
+                out.writeInt(nextItemId);
+                out.writeInt(departments.size());
+                for (DepartmentRow row : departments.values()) {
+                    out.writeInt(row.id);
+                    writeString(out, row.name);
+                    writeString(out, row.description);
+                }
+                out.writeInt(items.size());
+                for (ItemRow row : items.values()) {
+                    out.writeInt(row.id);
+                    out.writeInt(row.departmentId);
+                    out.writeInt(row.quantity);
+                    writeString(out, row.name);
+                    writeString(out, row.description);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            fileSize = Files.size(file);
+            Files.deleteIfExists(log);
+            logSize = 0;
+        } catch (IOException e) {
+            System.out.println("An error occurred trying to compact the embedded database " + file);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Strings are stored as their UTF-8 length followed by the bytes, so long
+     * descriptions are not limited to 64KB like writeUTF().
+     *
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * @param in
+     * @return String
+     * @throws IOException
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A department as it is stored.
+     */
+    private static class DepartmentRow {
+        private final int id;
+        private String name;
+        private String description;
+
+        private DepartmentRow(int id, String name, String description){
+            this.id = id;
+            this.name = name == null ? "" : name;
+            this.description = description == null ? "" : description;
+        }
+    }
+
+    /**
+     * An item as it is stored.
+     */
+    private static class ItemRow {
+        private final int id;
+        private final int departmentId;
+        private final int quantity;
+        private final String name;
+        private final String description;
+
+        private ItemRow(int id, int departmentId, int quantity, String name, String description){
+            this.id = id;
+            this.departmentId = departmentId;
+            this.quantity = quantity;
+            this.name = name == null ? "" : name;
+            this.description = description == null ? "" : description;
+        }
+
+        /**
+         * @return Item
+         */
+        private Item toItem(){
+            return new Item(id, quantity, name, description);
+        }
+    }
+}
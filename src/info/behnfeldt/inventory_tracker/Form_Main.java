@@ -3,12 +3,27 @@ package info.behnfeldt.inventory_tracker;
 import javax.swing.*;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
+import java.awt.Cursor;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.sql.Connection;
-import java.sql.*;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Name:   Form_Main.java
@@ -21,48 +36,75 @@ import java.util.HashMap;
  * needed to complete the goal this program set out to
  * complete.
  *
+ * All database work is handed to the DatabaseExecutor so the
+ * window stays responsive. While a load or save is running the
+ * Edit menu and Save are disabled, the title shows what is
+ * running and File > Cancel stops it. A cancelled task keeps the
+ * window busy until the database thread has stopped it.
+ *
+ * The search box in the menu bar searches the names, descriptions
+ * and quantities of the items while the user types, either in the
+ * items in memory or, when configured, in the database.
+ *
  * WIP Features:
  * -Proper log file output.
- * -CSV File Exporting
- * -Emergency local backup in case of failures
- * -Undo button
  *
  * @extends JFrame
 */
 public class Form_Main extends JFrame{
 
+    private static final int SEARCH_RESULTS = 200;                                       //Most results shown by the search box
     private int selectedDepartment;                                                      //Stores the currently selected department
     private int selectedItem;                                                            //Stores the currently selected item
-    private String[] connectionInfo;                                                     //Stores data about our database connection
     private JMenuBar menuBar = new JMenuBar();                                           //The main menu bar
     private JMenu fileMenu = new JMenu("File");                                       //Menu category: File
     private JMenu editMenu = new JMenu("Edit");                                       //Menu category: Edit
     private JMenuItem exitMenuItem = new JMenuItem("Exit");                         //Menu button: Exit
     private JMenuItem saveMenuItem = new JMenuItem("Save");                         //Menu button: Save
+    private JMenuItem cancelMenuItem = new JMenuItem("Cancel");                     //Menu button: Cancel
+    private JMenuItem reloadMenuItem = new JMenuItem("Reload");                     //Menu button: Reload
+    private JMenuItem exportMenuItem = new JMenuItem("Export CSV...");              //Menu button: Export CSV
+    private JMenuItem importMenuItem = new JMenuItem("Import CSV...");              //Menu button: Import CSV
     private JMenuItem undoMenuItem = new JMenuItem("Undo");                         //Menu button: Undo
+    private JMenuItem redoMenuItem = new JMenuItem("Redo");                         //Menu button: Redo
     private JMenuItem addDepartmentButton = new JMenuItem("Add Department");        //Menu button: Add Department
     private JMenuItem editDepartmentButton = new JMenuItem("Edit Department");      //Menu button: Edit Department
     private JMenuItem deleteDepartmentButton = new JMenuItem("Delete Department");  //Menu button: Delete Department
     private JMenuItem addItemButton = new JMenuItem("Add Item");                    //Menu button: Add Item
     private JMenuItem editItemButton = new JMenuItem("Edit Selected Item");         //Menu button: Edit Item
+    private JMenuItem adjustItemButton = new JMenuItem("Adjust Selected Item Quantity");  //Menu button: Adjust Quantity
     private JMenuItem deleteItemButton = new JMenuItem("Delete Selected Item");     //Menu button: Delete Item
     private JPanel mainPanel;                                                            //Main form area that holds all components
     private JList departmentList;                                                        //The main department list GUI
     private DefaultListModel departmentData = new DefaultListModel();                    //Object to manipulate the department list
     private ArrayList<Department> departments = new ArrayList<>();                       //Array to store our departments
-    private ArrayList<Department> modifiedDepartments = new ArrayList<>();               //Departments that need updated in the database
-    private ArrayList<Department> newDepartments = new ArrayList<>();                    //Departments that need inserted in the database
-    private ArrayList<Department> deletedDepartments = new ArrayList<>();                //Array to store deleted departments
-    private HashMap<Item, Department> modifiedItems = new HashMap<>();                   //Items that need updated in the database
-    private HashMap<Item, Department> newItems = new HashMap<>();                        //Items that need inserted in the database
-    private ArrayList<Item> deletedItems = new ArrayList<>();                            //Array to store deleted items
+    private SQLHandler sqlhandler = new SQLHandler();                                    //Used to run MySQL queries
+    private PendingChanges pending = new PendingChanges(sqlhandler.getBulkWriteThreads(),
+            sqlhandler.getBulkPartitionSize());                                          //The save lists and the save that writes them
+    private ArrayList<Department> modifiedDepartments = pending.getModifiedDepartments();  //Departments that need updated in the database
+    private ArrayList<Department> newDepartments = pending.getNewDepartments();          //Departments that need inserted in the database
+    private ArrayList<Department> deletedDepartments = pending.getDeletedDepartments();  //Array to store deleted departments
+    private HashMap<Item, Department> modifiedItems = pending.getModifiedItems();        //Items that need updated in the database
+    private HashMap<Item, Department> newItems = pending.getNewItems();                  //Items that need inserted in the database
+    private ArrayList<Item> deletedItems = pending.getDeletedItems();                    //Array to store deleted items
     private JList itemList;                                                              //The main item list GUI
-    private DefaultListModel itemData = new DefaultListModel();                          //Used to manipulate the item list
+    private ItemListModel itemData = new ItemListModel();                                //Shows the selected department's items in the item list
     private JTextArea descriptionText;                                                   //Area to display an item's information
-    private SQLHandler sqlhandler = new SQLHandler();                                    //Used to run MySQL queries
-    private Connection connector;                                                        //Make the handshake to the database
-    private PreparedStatement statement;                                                 //Stores the query statement
-    private ResultSet rs;                                                                //Stores the results of the query
+    private CompletableFuture<?> currentTask;                                            //The database task currently running, if any
+    private CompletableFuture<?> currentSave;                                            //The save still running, it can not be cancelled
+    private DeltaSync deltaSync = new DeltaSync();                                       //Picks up changes made by other clients
+    private boolean schemaMigrated = false;                                              //Marks when the schema has been brought up to date
+    private Timer syncTimer;                                                             //Starts a delta sync poll every sync interval
+    private ItemSearchIndex searchIndex = new ItemSearchIndex();                         //Indexes the items in memory for the search box
+    private SearchBox searchBox = new SearchBox(20);                                     //Search box in the menu bar
+    private CompletableFuture<?> currentSearch;                                          //The database search currently running, if any
+    private HashMap<Item, Integer> searchDepartments = new HashMap<>();                  //Department IDs of the database search results shown
+    private ChangeJournal journal;                                                       //Backs up unsaved changes, null when turned off
+    private ChangeJournal.Recovery recovered;                                            //Changes replayed from the journal by the first load
+    private boolean journalReplayed = false;                                             //Marks when the journal has been replayed
+    private SnapshotCache snapshot;                                                      //Local copy of the database, null when not used
+    private boolean startedFromSnapshot = false;                                         //Marks when the first load came from the snapshot
+    private UndoHistory history = new UndoHistory(sqlhandler.getUndoMemory() * 1024L);  //Changes that can be undone, and departments to save
 
 
     /**
@@ -80,7 +122,35 @@ public class Form_Main extends JFrame{
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);     //Set the close button to close the form
         departmentList.setModel(departmentData);            //Sets what data the departmentList gets information from
         itemList.setModel(itemData);                        //Sets what data the itemList gets information from
+        itemList.setCellRenderer(new ItemCellRenderer());   //Formats item rows only when they are painted
+        itemList.setPrototypeCellValue(new Item(0, 999999, "Prototype item name", ""));    //Rows are not measured one by one
+        Department.getCache().setListener(this::departmentEvicted);    //Loads the shown items again if they are dropped
+        openJournal();                                      //Opens the backup of unsaved changes before anything is loaded
+        openSnapshot();                                     //Lets the first load start from the local copy of the database
         populateDepartmentList();                           //Gets all the departments in the database and adds it to the list
+        startDeltaSync();                                   //Polls for changes made by other clients when configured
+
+        //Searches the item index as the user types and shows the item the user picks
+        searchBox.setListener(new SearchBox.Listener() {
+            @Override
+            public void searchChanged(String text) {
+                runSearch(text, 0);
+            }
+
+            @Override
+            public void searchMore(String text, int offset) {
+                runSearch(text, offset);
+            }
+
+            @Override
+            public void resultChosen(Item item) {
+                if (sqlhandler.isDatabaseSearch()) {
+                    showSearchResult(searchDepartments.get(item), item.getID());
+                } else {
+                    showItem(searchIndex.getDepartment(item), item);
+                }
+            }
+        });
 
         //Listens for selection changes made in the department list
         departmentList.addListSelectionListener(new ListSelectionListener() {
@@ -108,6 +178,57 @@ public class Form_Main extends JFrame{
             }
         });
 
+        //Listener for the 'Reload' menu item. Discards unsaved changes and reloads everything from the database
+        reloadMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                int response = JOptionPane.showConfirmDialog(null, "Reload all data? Unsaved changes will be lost.");
+                if (response == JOptionPane.YES_OPTION) {
+                    reloadAllContent();
+                }
+            }
+        });
+
+        //Listener for the 'Export CSV' menu item. Writes the saved departments and items to a CSV file
+        exportMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                JFileChooser chooser = new JFileChooser();
+                chooser.setSelectedFile(new File("inventory.csv"));
+                if (chooser.showSaveDialog(Form_Main.this) == JFileChooser.APPROVE_OPTION) {
+                    exportCsv(chooser.getSelectedFile().toPath());
+                }
+            }
+        });
+
+        //Listener for the 'Import CSV' menu item. Adds the departments and items of a CSV file, then reloads
+        importMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                JFileChooser chooser = new JFileChooser();
+                if (chooser.showOpenDialog(Form_Main.this) != JFileChooser.APPROVE_OPTION) {
+                    return;
+                }
+                int response = JOptionPane.showConfirmDialog(null, "Import this file and reload all data? Unsaved changes will be lost.");
+                if (response == JOptionPane.YES_OPTION) {
+                    importCsv(chooser.getSelectedFile().toPath());
+                }
+            }
+        });
+
+        //Listener for the 'Cancel' menu item. Stops the database task that is currently running
+        cancelMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                //A save is never cancelled, the driver would keep writing after the save was reported as done
+                if (currentTask != null && currentTask != currentSave && currentTask.cancel(true)) {
+                    //The window stays busy until the database thread has stopped the task
+                    setTitle("Inventory Tracker - Cancelling...");
+                    cancelMenuItem.setEnabled(false);
+                }
+            }
+        });
+
         //Listener for the 'Exit' menu item. Simply closes the main form
         exitMenuItem.addActionListener(new ActionListener() {
             @Override
@@ -116,6 +237,19 @@ public class Form_Main extends JFrame{
             }
         });
 
+        //The close button exits right after windowClosing, the 'Exit' menu item only disposes the form
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                closeJournal();
+            }
+
+            @Override
+            public void windowClosed(WindowEvent e) {
+                closeJournal();
+            }
+        });
+
         /*
          * Listener for the 'Save' menu item. Parses through the 4 lists: departments, items, deletedItems, and
          * deletedDepartments. When parsing through departments and items, these classes have a boolean set that marks
@@ -131,13 +265,27 @@ public class Form_Main extends JFrame{
             }
         });
 
-        /**
-         * WIP
-         */
+        //Listener for the 'Undo' menu button (in the 'Edit' menu). Reverts the newest change
         undoMenuItem.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                //WIP
+                Department shown = selectedDepartment != -1 ? departments.get(selectedDepartment) : null;
+                //The shortcut still works while a database task has the 'Edit' menu disabled
+                if (currentTask == null && history.undo() != null) {
+                    historyChanged(shown);
+                }
+            }
+        });
+
+        //Listener for the 'Redo' menu button (in the 'Edit' menu). Makes the newest undone change again
+        redoMenuItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                Department shown = selectedDepartment != -1 ? departments.get(selectedDepartment) : null;
+                //The shortcut still works while a database task has the 'Edit' menu disabled
+                if (currentTask == null && history.redo() != null) {
+                    historyChanged(shown);
+                }
             }
         });
 
@@ -151,7 +299,11 @@ public class Form_Main extends JFrame{
                 if (response != null) {
                     //If their response is not blank
                     if (!response.isBlank()) {
-                        departments.add(new Department(response));      //Add the department to the departments list
+                        Department department = new Department(response);
+                        departments.add(department);                    //Add the department to the departments list
+                        searchIndex.addDepartment(department);          //Items added to it will be found by the search box
+                        recordDepartment(department);                   //Back up the new department
+                        addToHistory(DepartmentCommand.added(department, departments, journal));
                         refreshDepartmentList();                        //Refresh the list so the user sees the changes
                     } else {
                         //Show user this error if their input was blank
@@ -175,7 +327,11 @@ public class Form_Main extends JFrame{
                     if (response != null) {
                         //If the users response is not blank
                         if (!response.isEmpty()) {
-                            departments.get(selectedDepartment).setName(response);   //Set the department name
+                            Department department = departments.get(selectedDepartment);
+                            String oldName = department.getName();
+                            department.setName(response);                   //Set the department name
+                            recordDepartment(department);                   //Back up the new name
+                            addToHistory(DepartmentCommand.renamed(department, oldName, journal));
                             refreshDepartmentList();                                                //Refresh the changes for the user
                         } else {
                             JOptionPane.showMessageDialog(null, "Error: name cannot be blank.");
@@ -198,8 +354,13 @@ public class Form_Main extends JFrame{
                     int response = JOptionPane.showConfirmDialog(null, "Delete department " +
                             departmentToDelete.getName() + "? All items within will also be deleted.");
                     if (response == JOptionPane.YES_OPTION) {           //If the user wants to delete the department
+                        int deletedIndex = selectedDepartment;
                         deletedDepartments.add(departmentToDelete);     //Add the department object to the deleted departments list
                         departments.remove(departmentToDelete);         //Remove the department from the main list
+                        if (journal != null) {
+                            journal.departmentDeleted(departmentToDelete);
+                        }
+                        addToHistory(DepartmentCommand.deleted(departmentToDelete, deletedIndex, departments, deletedDepartments, journal));
                         refreshDepartmentList();                        //Refresh the department list for the user
                     }
                 } else {
@@ -215,8 +376,22 @@ public class Form_Main extends JFrame{
                 JDialog jDialog = new New_Item(departments);    //Opens a new form window to add the new item
                 jDialog.setModal(true);                         //Sets the window as active over the main window
                 //jDialog.setResizable(false);                  //Prevent the user from resizing the window
+                int sizeBefore = itemData.getSize();
                 jDialog.setVisible(true);                       //Set the form to be visible
-                refreshItemList();                              //Refresh the item list after the user closes the item form
+                New_Item form = (New_Item) jDialog;
+                recordItem(form);                               //Back up the new item
+                if (form.getSavedItem() != null) {
+                    addToHistory(ItemCommand.added(form.getSavedItem(), form.getSavedDepartment(), journal));
+                }
+                //Adding to a paged department loads it in full, so the list switches to the full item list
+                if (itemData.isPaged()) {
+                    if (itemData.getDepartment().hasLoadedItems()) {
+                        refreshItemList();
+                    }
+                //Only show the new row if the item was added to the department being shown
+                } else if (!itemData.isLoading() && itemData.getSize() > sizeBefore) {
+                    itemData.itemAdded(itemData.getSize() - 1);
+                }
             }
         });
 
@@ -226,31 +401,105 @@ public class Form_Main extends JFrame{
             public void actionPerformed(ActionEvent e) {
                 //Check if the user has selected an item to edit
                 if (selectedItem != -1) {
+                    //Items are edited in the department's full item list, so a paged department is loaded first
+                    if (itemData.isPaged()) {
+                        loadForEditing(editItemButton);
+                        return;
+                    }
                     //Open a new form window and send the item location that needs to be edited.
+                    int editedItem = selectedItem;
+                    int sizeBefore = itemData.getSize();
+                    //Keep what the item was before the edit so it can be undone
+                    Department department = departments.get(selectedDepartment);
+                    Item item = department.getItem(selectedItem);
+                    int oldQuantity = item.getQuantity();
+                    String oldName = item.getName();
+                    String oldDescription = item.getDescription();
                     JDialog jDialog = new New_Item(departments, selectedDepartment, selectedItem);
                     jDialog.setModal(true);             //Sets the window as active over the main window
                     //jDialog.setResizable(false);      //Prevent the user from resizing the window
                     jDialog.setVisible(true);           //Set the form to be visible
-                    refreshItemList();                  //Refresh the item list after the user closes the item form
+                    New_Item form = (New_Item) jDialog;
+                    recordItem(form);                   //Back up the edited item
+                    if (form.getSavedItem() != null) {
+                        addToHistory(ItemCommand.edited(form.getSavedItem(), department, form.getSavedDepartment(),
+                                oldQuantity, oldName, oldDescription, journal));
+                    }
+                    //Repaint only the edited row, or remove it if the item was moved to another department
+                    if (itemData.getSize() < sizeBefore) {
+                        itemData.itemRemoved(editedItem);
+                    } else {
+                        itemData.itemChanged(editedItem);
+                        descriptionText.setText(loadItemDescription(selectedDepartment, editedItem));
+                    }
                 } else {
                     JOptionPane.showMessageDialog(null, "Please select an item to edit.");
                 }
             }
         });
 
+        //Listener for the 'Adjust Quantity' button (in the 'Edit' menu).
+        adjustItemButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (selectedItem != -1) {
+                    if (itemData.isPaged()) {
+                        loadForEditing(adjustItemButton);
+                        return;
+                    }
+                    Department department = departments.get(selectedDepartment);
+                    Item item = department.getItem(selectedItem);
+                    String input = JOptionPane.showInputDialog(null, "Amount to add to " + item.getName()
+                            + " (negative to remove):", "Adjust Quantity", JOptionPane.QUESTION_MESSAGE);
+                    if (input == null || input.trim().isEmpty()) {
+                        return;
+                    }
+                    int delta;
+                    try {
+                        delta = Integer.parseInt(input.trim());
+                    } catch (NumberFormatException ex) {
+                        JOptionPane.showMessageDialog(null, "Please enter a whole number.");
+                        return;
+                    }
+                    if (delta == 0) {
+                        return;
+                    }
+                    //Only the amount is kept, so the save adds it to whatever the database holds by then
+                    item.adjust(delta);
+                    if (journal != null) {
+                        journal.itemAdjusted(item, delta);
+                    }
+                    addToHistory(ItemCommand.adjusted(item, department, delta, journal));
+                    itemData.itemChanged(selectedItem);
+                    descriptionText.setText(loadItemDescription(selectedDepartment, selectedItem));
+                } else {
+                    JOptionPane.showMessageDialog(null, "Please select an item to adjust.");
+                }
+            }
+        });
+
         //Listener for the 'Delete Item' button (in the 'Edit' menu).
         deleteItemButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
                 //Check if the user has selected an item to be deleted. The reference to the item is stored in a variable for later
                 if (selectedItem != -1) {
+                    if (itemData.isPaged()) {
+                        loadForEditing(deleteItemButton);
+                        return;
+                    }
                     Item itemToDelete = departments.get(selectedDepartment).getItem(selectedItem);
                     //Confirm with the user if they wish to delete the selected item then check if they said YES.
                     int response = JOptionPane.showConfirmDialog(null, "Delete item " + itemToDelete.getName() + "?");
                     if (response == JOptionPane.YES_OPTION) {
+                        int deletedIndex = selectedItem;
                         deletedItems.add(itemToDelete);                                //Add the item to the deleted items list
                         departments.get(selectedDepartment).removeItem(itemToDelete);  //Remove the item from the main list
-                        refreshItemList();                                             //Refresh the item list for the user
+                        if (journal != null) {
+                            journal.itemDeleted(itemToDelete);
+                        }
+                        addToHistory(ItemCommand.deleted(itemToDelete, departments.get(selectedDepartment), deletedItems, journal));
+                        itemData.itemRemoved(deletedIndex);                            //Remove only that row from the item list
                     }
                 } else {
                     JOptionPane.showMessageDialog(null, "No item selected.");
@@ -268,49 +517,298 @@ public class Form_Main extends JFrame{
         menuBar.add(fileMenu);                  //Adds the 'File' category
         menuBar.add(editMenu);                  //Adds the 'Edit' category
         fileMenu.add(saveMenuItem);             //Adds the 'Save' button
+        fileMenu.add(reloadMenuItem);           //Adds the 'Reload' button
+        fileMenu.add(exportMenuItem);           //Adds the 'Export CSV' button
+        fileMenu.add(importMenuItem);           //Adds the 'Import CSV' button
+        fileMenu.add(cancelMenuItem);           //Adds the 'Cancel' button
+        cancelMenuItem.setEnabled(false);       //Nothing to cancel until a database task is running
         fileMenu.add(exitMenuItem);             //Adds the 'Exit' button
-        //editMenu.add(undoMenuItem);           //Adds the 'Undo' button
-        //editMenu.add(new JSeparator());       //Adds a separator in the 'Edit' category
+        editMenu.add(undoMenuItem);             //Adds the 'Undo' button
+        editMenu.add(redoMenuItem);             //Adds the 'Redo' button
+        undoMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK));
+        redoMenuItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK));
+        updateUndoMenu();                       //Nothing to undo or redo yet
+        editMenu.add(new JSeparator());         //Adds a separator in the 'Edit' category
         editMenu.add(addDepartmentButton);      //Adds the 'Add Department' button
         editMenu.add(editDepartmentButton);     //Adds the 'Edit Department' button
         editMenu.add(deleteDepartmentButton);   //Adds the 'Delete Department' button
         editMenu.add(new JSeparator());         //Adds a separator in the 'Edit' category
         editMenu.add(addItemButton);            //Adds the 'Add Item' button
         editMenu.add(editItemButton);           //Adds the 'Edit Item' button
+        editMenu.add(adjustItemButton);         //Adds the 'Adjust Quantity' button
         editMenu.add(deleteItemButton);         //Adds the 'Delete Item' button
+        menuBar.add(Box.createHorizontalGlue());    //Pushes the search box to the right side of the menu bar
+        menuBar.add(new JLabel("Search: "));
+        menuBar.add(searchBox);                 //Adds the search box
         setJMenuBar(menuBar);                   //Sets the menu bar onto the main form for use
     }
 
     /**
      * Initializes our departments array and then adds the
      * department choices to our Department Selection List.
+     * All departments and their items are read in one pass
+     * by the InventoryLoader, or only the departments when
+     * items are configured to load on demand. The load runs
+     * on the DatabaseExecutor and the lists are filled in on
+     * the Swing thread when it finishes.
+     *
+     * @return CompletableFuture<Void>
      */
-    private void populateDepartmentList(){
-        try {
-            int i = 0;
-            //This block of code connects to the database then executes a query to select everyithing from the departments table
-            connectionInfo = sqlhandler.getConnectionInfo();
-            connector = DriverManager.getConnection(connectionInfo[0], connectionInfo[1], connectionInfo[2]);
-            statement = connector.prepareStatement("SELECT * FROM departments");
-            rs = statement.executeQuery();
-
-            /*
-            * While there is still rows to read from the query, add a new department instance to the departments array
-            * then add the department to the Department Selection List
-            */
-            while (rs.next()) {
-                departments.add(new Department(rs.getInt("id"), rs.getString("name"), rs.getString("description")));
-                departmentData.addElement(departments.get(i).getName());
-                i++;
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(null, "Error: Cannot load application. Check the connection configuration file.");
-        } finally {
-            sqlhandler.closeConnections(connector, statement, rs);
+    private CompletableFuture<Void> populateDepartmentList(){
+        //Load every department (along with its items unless loading lazily) on the database thread
+        CompletableFuture<ArrayList<Department>> load = DatabaseExecutor.submit(() -> {
+            //The first load shows the local snapshot right away, unless the journal has changes to replay onto fresh data
+            if (snapshot != null && !journalReplayed && (journal == null || journal.isEmpty())) {
+                SnapshotCache.Snapshot local = snapshot.read(!sqlhandler.isLazyLoading());
+                if (local != null) {
+                    deltaSync.resume(local.watermark);
+                    startedFromSnapshot = true;
+                    searchIndex.addDepartments(local.departments);
+                    return local.departments;
+                }
+            }
+            migrateSchema();
+            //The sync watermark is taken before the load so changes made during the load are picked up by the next poll
+            if (isDeltaSyncEnabled() || snapshot != null) {
+                deltaSync.start();
+            }
+            ArrayList<Department> loaded = Repositories.departments().findAll(!sqlhandler.isLazyLoading());
+            //Saved data only, so the snapshot is written before the journal is replayed
+            writeSnapshot(loaded);
+            //Bring back the changes a crash or failed save left unsaved, before the index and the lists see the departments
+            if (journal != null && !journalReplayed) {
+                try {
+                    recovered = journal.replay(loaded);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    journal = null;
+                    DatabaseExecutor.showError("Error: The journal file could not be read, unsaved changes will not be backed up.");
+                }
+            }
+            //Build the search index here as well, so a large inventory does not hold up the Swing thread
+            searchIndex.addDepartments(loaded);
+            return loaded;
+        });
+        beginTask("Loading...", load);
+
+        //Then add each department to the Department Selection List on the Swing thread
+        return load.handleAsync((loaded, error) -> {
+            endTask(load);
+            if (error != null) {
+                if (!isCancellation(error)) {
+                    error.printStackTrace();
+                    JOptionPane.showMessageDialog(null, "Error: Cannot load application. Check the connection configuration file.");
+                }
+                return null;
+            }
+            departments.addAll(loaded);
+            for (Department department : departments) {
+                departmentData.addElement(department.getName());
+            }
+            journalReplayed = true;
+            if (startedFromSnapshot) {
+                startedFromSnapshot = false;
+                reconcileSnapshot();
+            }
+            if (recovered != null && recovered.changes > 0) {
+                deletedDepartments.addAll(recovered.deletedDepartments);
+                deletedItems.addAll(recovered.deletedItems);
+                history.markDirty(recovered.changedDepartments);
+                rewriteJournal();
+                JOptionPane.showMessageDialog(null, recovered.changes + " unsaved changes from the last session were recovered. Save to keep them.");
+            }
+            recovered = null;
+            return null;
+        }, DatabaseExecutor.edt());
+    }
+
+    /**
+     * Creates or upgrades the MySQL tables the first time the database is
+     * used. Must run on the database thread.
+     *
+     * @throws SQLException
+     */
+    private void migrateSchema() throws SQLException {
+        if (!schemaMigrated && !Repositories.isEmbedded()) {
+            new SchemaMigrator().migrate();
+            schemaMigrated = true;
         }
     }
 
+    /**
+     * Brings departments shown from the local snapshot up to date by reading
+     * only the rows changed since the snapshot was written. Editing waits
+     * until this is done, so local edits are not made on stale rows. The
+     * changes are read and merged a page at a time.
+     */
+    private void reconcileSnapshot(){
+        CompletableFuture<DeltaSync.ChangeSet> sync = DatabaseExecutor.submit(() -> {
+            migrateSchema();
+            return deltaSync.fetchChanges();
+        });
+        beginTask("Updating...", sync);
+        sync.whenCompleteAsync((changes, error) -> {
+            endTask(sync);
+            if (error != null) {
+                if (!isCancellation(error)) {
+                    error.printStackTrace();
+                    JOptionPane.showMessageDialog(null, "Error: Cannot reach the database, the data shown is from the last session.");
+                }
+                return;
+            }
+            //Rows deleted since the snapshot can no longer be told apart, so the snapshot is replaced
+            if (changes.isExpired()) {
+                reloadAllContent();
+                return;
+            }
+            if (deltaSync.merge(changes, departments)) {
+                searchIndex.addDepartments(departments);      //Departments created since the snapshot
+                refreshChangedRows();
+            }
+            if (changes.hasMore()) {
+                reconcileSnapshot();
+            }
+        }, DatabaseExecutor.edt());
+    }
+
+    /**
+     * Starts the timer that polls the database for rows other clients changed
+     * since the last poll. Does nothing when sync_interval is not configured.
+     */
+    private void startDeltaSync(){
+        if (!isDeltaSyncEnabled()) {
+            return;
+        }
+        syncTimer = new Timer(sqlhandler.getSyncInterval() * 1000, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                //Skip this poll while a load or save is running, or before the first load finished
+                if (currentTask == null && deltaSync.isStarted()) {
+                    pollChanges();
+                }
+            }
+        });
+        syncTimer.start();
+    }
+
+    /**
+     * Delta sync is only needed when other clients share a MySQL database.
+     *
+     * @return boolean
+     */
+    private boolean isDeltaSyncEnabled(){
+        return sqlhandler.getSyncInterval() > 0 && !Repositories.isEmbedded();
+    }
+
+    /**
+     * Fetches the changed rows on the database thread and merges them into
+     * the departments on the Swing thread. Only the list rows that changed
+     * are refreshed. Polls are not shown as a running task so they never
+     * get in the way of the user. When more changes are waiting than one
+     * fetch reads, the next page is fetched right after this one is merged.
+     */
+    private void pollChanges(){
+        DatabaseExecutor.submit(deltaSync::fetchChanges).whenCompleteAsync((changes, error) -> {
+            if (error != null) {
+                System.out.println("Delta sync failed: " + error.getMessage());
+                return;
+            }
+            //A save or reload started while the poll was running, its result wins
+            if (currentTask != null) {
+                return;
+            }
+            //Polling stops until the user reloads, a reload would throw away their unsaved changes
+            if (changes.isExpired()) {
+                if (deltaSync.isStarted()) {
+                    deltaSync.stop();
+                    JOptionPane.showMessageDialog(null, "Changes other users made while this client was not polling can no longer be read. Save, then reload to see them.");
+                }
+                return;
+            }
+            if (deltaSync.merge(changes, departments)) {
+                searchIndex.addDepartments(departments);      //Departments created by other clients
+                refreshChangedRows();
+            }
+            if (changes.hasMore() && deltaSync.isStarted()) {
+                pollChanges();
+            }
+        }, DatabaseExecutor.edt());
+    }
+
+    /**
+     * Marks the start of a database task. Disables the menus that change or
+     * save data, shows what is running in the title and a busy cursor, and
+     * enables the 'Cancel' menu button.
+     *
+     * @param status
+     * @param task
+     */
+    private void beginTask(String status, CompletableFuture<?> task){
+        beginTask(status, task, true);
+    }
+
+    /**
+     * @param status
+     * @param task
+     * @param cancellable false to leave the 'Cancel' menu button disabled
+     */
+    private void beginTask(String status, CompletableFuture<?> task, boolean cancellable){
+        currentTask = task;
+        setTitle("Inventory Tracker - " + status);
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        editMenu.setEnabled(false);
+        saveMenuItem.setEnabled(false);
+        reloadMenuItem.setEnabled(false);
+        exportMenuItem.setEnabled(false);
+        importMenuItem.setEnabled(false);
+        cancelMenuItem.setEnabled(cancellable);
+    }
+
+    /**
+     * Marks the end of a database task started with beginTask(). A task that
+     * has been replaced by a newer one leaves the window alone. Until a save
+     * has finished, the window stays in the saving state even when a task
+     * queued behind it ends first, which happens when that task is cancelled.
+     *
+     * @param task
+     */
+    private void endTask(CompletableFuture<?> task){
+        if (task == currentSave) {
+            currentSave = null;
+        }
+        if (currentTask == task) {
+            currentTask = null;
+        }
+        if (currentTask != null) {
+            return;
+        }
+        if (currentSave != null) {
+            beginTask("Saving...", currentSave, false);
+            return;
+        }
+        setTitle("Inventory Tracker");
+        setCursor(Cursor.getDefaultCursor());
+        editMenu.setEnabled(true);
+        saveMenuItem.setEnabled(true);
+        reloadMenuItem.setEnabled(true);
+        exportMenuItem.setEnabled(true);
+        importMenuItem.setEnabled(true);
+        cancelMenuItem.setEnabled(false);
+    }
+
+    /**
+     * When a task failed only because the user cancelled it.
+     *
+     * @param error
+     * @return boolean
+     */
+    private boolean isCancellation(Throwable error){
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error instanceof CancellationException || error instanceof InterruptedException;
+    }
+
     /**
      * Refreshes the department list data by presenting the user
      * with the current iteration of the departments array
@@ -325,19 +823,261 @@ public class Form_Main extends JFrame{
     /**
      * Refreshes the item list data by presenting the
      * user with the current iteration of the items list
-     * of the department selected.
+     * of the department selected. The list model reads the
+     * department's items directly, so nothing is copied.
      */
     private void refreshItemList(){
-        //Clear the data in the item list
-        itemData.clear();
-        /*
-        Checks if a department is selected first then loops through the selected departments items and adds the ID
-        and name to the item list
-        */
+        //Checks if a department is selected first, then points the item list at the department's items
         if(selectedDepartment != -1) {
-            for (Item item : departments.get(selectedDepartment).getAllItems()) {
-                itemData.addElement(String.format("%06d", item.getQuantity()) + "   " + item.getName());
+            Department department = departments.get(selectedDepartment);
+            //In lazy mode the department's items are loaded on the database thread the first time it is opened
+            if (!department.hasLoadedItems()) {
+                //In paged mode only the rows scrolled into view are read, until the department is edited
+                if (sqlhandler.isPagedLoading() && department.getID() != 0) {
+                    openPagedItems(department);
+                } else {
+                    loadDepartmentItems(department);
+                }
+                return;
             }
+            itemData.setDepartment(department);
+        } else {
+            itemData.setDepartment(null);
+        }
+    }
+
+    /**
+     * Called on the database thread when the cache dropped the items of a
+     * department. The shown department is never dropped, but another one may
+     * have been selected while the cache was choosing what to drop, so the
+     * item list loads it again on the database thread instead of reading the
+     * list that was dropped.
+     *
+     * @param department
+     */
+    private void departmentEvicted(Department department){
+        SwingUtilities.invokeLater(() -> {
+            if (itemData.getDepartment() == department && !itemData.isLoading() && !itemData.isPaged()) {
+                refreshItemList();
+            }
+        });
+    }
+
+    /**
+     * Loads the items of a lazily loaded department on the database thread,
+     * then refreshes the item list if the department is still selected.
+     *
+     * @param department
+     * @return CompletableFuture<List<Item>> completed after the item list is refreshed
+     */
+    private CompletableFuture<List<Item>> loadDepartmentItems(Department department){
+        itemData.setLoading(department);
+        CompletableFuture<List<Item>> load = DatabaseExecutor.submit(department::getAllItems);
+        beginTask("Loading " + department.getName() + "...", load);
+        return load.whenCompleteAsync((items, error) -> {
+            endTask(load);
+            if (error != null && !isCancellation(error)) {
+                error.printStackTrace();
+            }
+            if (selectedDepartment != -1 && departments.get(selectedDepartment) == department && department.hasLoadedItems()) {
+                refreshItemList();
+            }
+        }, DatabaseExecutor.edt());
+    }
+
+    /**
+     * Counts the items of a department and reads their first page on the
+     * database thread, then shows the department as pages that are read
+     * while the user scrolls.
+     *
+     * @param department
+     */
+    private void openPagedItems(Department department){
+        itemData.setLoading(department);
+        CompletableFuture<PagedItemSource> open = DatabaseExecutor.submit(() ->
+                PagedItemSource.open(department.getID(), sqlhandler.getPageSize(), sqlhandler.getPagePrefetch()));
+        beginTask("Loading " + department.getName() + "...", open);
+        open.whenCompleteAsync((source, error) -> {
+            endTask(open);
+            if (error != null && !isCancellation(error)) {
+                error.printStackTrace();
+            }
+            if (selectedDepartment == -1 || departments.get(selectedDepartment) != department) {
+                return;
+            }
+            if (department.hasLoadedItems()) {
+                refreshItemList();
+            } else if (source != null) {
+                itemData.setPaged(department, source);
+            }
+        }, DatabaseExecutor.edt());
+    }
+
+    /**
+     * Loads the department shown in pages in full, then selects the same
+     * item again and repeats the action the user picked.
+     *
+     * @param action
+     */
+    private void loadForEditing(JMenuItem action){
+        Department department = itemData.getDepartment();
+        int item = selectedItem;
+        loadDepartmentItems(department).thenRunAsync(() -> {
+            if (department.hasLoadedItems() && itemData.getDepartment() == department && item < itemData.getSize()) {
+                itemList.setSelectedIndex(item);
+                action.doClick();
+            }
+        }, DatabaseExecutor.edt());
+    }
+
+    /**
+     * Runs a search for the search box and shows a page of its results. The
+     * in memory index answers right away; database searches run on the
+     * database thread and their results are dropped if the user has typed
+     * something else by the time they arrive.
+     *
+     * @param text
+     * @param offset number of results already shown
+     */
+    private void runSearch(String text, int offset){
+        if (!sqlhandler.isDatabaseSearch()) {
+            List<Item> found = searchIndex.search(text, offset + SEARCH_RESULTS + 1);
+            List<Item> page = found.subList(Math.min(offset, found.size()), Math.min(offset + SEARCH_RESULTS, found.size()));
+            showSearchPage(page, found.size() > offset + SEARCH_RESULTS, offset);
+            return;
+        }
+
+        //A newer search replaces the one still waiting for the database
+        if (currentSearch != null) {
+            currentSearch.cancel(true);
+        }
+        SearchQuery query = new SearchQuery(text);
+        CompletableFuture<LinkedHashMap<Item, Integer>> search = DatabaseExecutor.submit(() ->
+                Repositories.items().searchItems(query, offset, SEARCH_RESULTS + 1));
+        currentSearch = search;
+        search.whenCompleteAsync((found, error) -> {
+            if (currentSearch == search) {
+                currentSearch = null;
+            }
+            if (error != null) {
+                if (!isCancellation(error)) {
+                    System.out.println("Search failed: " + error.getMessage());
+                }
+                return;
+            }
+            if (!searchBox.getText().equals(text)) {
+                return;
+            }
+            if (offset == 0) {
+                searchDepartments.clear();
+            }
+            ArrayList<Item> page = new ArrayList<>();
+            for (Map.Entry<Item, Integer> entry : found.entrySet()) {
+                if (page.size() == SEARCH_RESULTS) {
+                    break;
+                }
+                page.add(entry.getKey());
+                searchDepartments.put(entry.getKey(), entry.getValue());
+            }
+            showSearchPage(page, found.size() > SEARCH_RESULTS, offset);
+        }, DatabaseExecutor.edt());
+    }
+
+    /**
+     * @param page
+     * @param more
+     * @param offset
+     */
+    private void showSearchPage(List<Item> page, boolean more, int offset){
+        if (offset == 0) {
+            searchBox.showResults(page, more);
+        } else {
+            searchBox.appendResults(page, more);
+        }
+    }
+
+    /**
+     * Shows an item found by a database search. The result is a copy read
+     * by the search, so the item is looked up by ID in its department, which
+     * is loaded first if it is not in memory yet.
+     *
+     * @param departmentId
+     * @param itemId
+     */
+    private void showSearchResult(Integer departmentId, int itemId){
+        Department department = null;
+        for (Department candidate : departments) {
+            if (departmentId != null && candidate.getID() == departmentId) {
+                department = candidate;
+                break;
+            }
+        }
+        if (department == null) {
+            return;
+        }
+        Department found = department;
+        if (found.hasLoadedItems()) {
+            showItem(found, found.findItem(itemId));
+            return;
+        }
+        CompletableFuture<List<Item>> load = DatabaseExecutor.submit(found::getAllItems);
+        beginTask("Loading " + found.getName() + "...", load);
+        load.whenCompleteAsync((items, error) -> {
+            endTask(load);
+            if (error != null) {
+                if (!isCancellation(error)) {
+                    error.printStackTrace();
+                }
+                return;
+            }
+            showItem(found, found.findItem(itemId));
+        }, DatabaseExecutor.edt());
+    }
+
+    /**
+     * Selects a department and one of its items, used for search results.
+     *
+     * @param department
+     * @param item
+     */
+    private void showItem(Department department, Item item){
+        int departmentIndex = departments.indexOf(department);
+        if (departmentIndex == -1) {
+            return;
+        }
+        if (departmentList.getSelectedIndex() != departmentIndex) {
+            departmentList.setSelectedIndex(departmentIndex);          //Shows the department's items through the selection listener
+            departmentList.ensureIndexIsVisible(departmentIndex);
+        } else if (itemData.getDepartment() != department || itemData.isPaged() || itemData.isLoading()) {
+            refreshItemList();
+        }
+        int itemIndex = item != null ? department.getAllItems().indexOf(item) : -1;
+        if (itemIndex != -1 && itemIndex < itemData.getSize()) {
+            itemList.setSelectedIndex(itemIndex);
+            itemList.ensureIndexIsVisible(itemIndex);
+        }
+    }
+
+    /**
+     * Updates only the rows of the department list whose text no longer
+     * matches the departments, and repaints the visible item rows, instead of
+     * rebuilding both lists.
+     */
+    private void refreshChangedRows(){
+        if (departmentData.size() != departments.size()) {
+            refreshDepartmentList();
+        } else {
+            for (int i = 0; i < departments.size(); i++) {
+                String name = departments.get(i).getName();
+                if (!name.equals(departmentData.get(i))) {
+                    departmentData.set(i, name);
+                }
+            }
+        }
+
+        //The item list model reads the items directly, it only needs to know which rows to repaint
+        if (!itemData.isLoading() && itemData.getDepartment() != null) {
+            itemData.refresh();
         }
     }
 
@@ -350,16 +1090,37 @@ public class Form_Main extends JFrame{
      * @return String
      */
     private String loadItemDescription(int departmentIndex, int itemIndex){
-        String s = "";
-        if(itemIndex != -1) {
-            s += "Name: " + departments.get(departmentIndex).getItem(itemIndex).getName() + "\n";
-            s += "Quantity: " + departments.get(departmentIndex).getItem(itemIndex).getQuantity() + "\n\n";
-            s += departments.get(departmentIndex).getItem(itemIndex).getDescription();
-        } else {
-            s = "";
+        if(itemIndex != -1 && itemData.isPaged()) {
+            Item item = itemData.getElementAt(itemIndex);
+            return item != null ? describeItem(item) : "";
         }
+        if(itemIndex != -1 && !itemData.isLoading()) {
+            return describeItem(departments.get(departmentIndex).getItem(itemIndex));
+        }
+        return "";
+    }
 
-        return s;
+    /**
+     * The text shown for an item in the item list: its zero padded
+     * quantity followed by its name.
+     *
+     * @param item
+     * @return String
+     */
+    static String formatItemRow(Item item){
+        return String.format("%06d", item.getQuantity()) + "   " + item.getName();
+    }
+
+    /**
+     * The text shown in the description area for an item.
+     *
+     * @param item
+     * @return String
+     */
+    static String describeItem(Item item){
+        return "Name: " + item.getName() + "\n" +
+                "Quantity: " + item.getQuantity() + "\n\n" +
+                item.getDescription();
     }
 
     /**
@@ -372,206 +1133,302 @@ public class Form_Main extends JFrame{
      * 5. Items that need inserted
      * 6. Items that need deleted
      *
-     * saveData() only splits the data into their respective groups and then calls on saveDepartments() and saveItems()
-     * to update the database.
+     * saveData() only splits the data into their respective groups with PendingChanges.collect() and then calls on
+     * PendingChanges.save() to write all of them to the database in one transaction. Only rows that are new or
+     * modified are written. The generated IDs and cleared modified marks are applied to the existing objects, so
+     * nothing needs to be reloaded from the database afterwards.
      */
     private void saveData() {
-        //Parse through the departments array
-        for (Department department : departments){
-            //If the department has not received an ID, which indicates it has never been in the database
-            if (department.getID() != 0) {
-                //If the department has already been in the database but was modified later
-                if (department.isModified()) {
-                    modifiedDepartments.add(department);
-                }
-            } else {
-                newDepartments.add(department);
+        //Nothing to write, skip the round trip to the database
+        if (!pending.collect(departments, history.getDirtyDepartments())) {
+            return;
+        }
+
+        //Call the methods to finalize changes into the database on the database thread, then refresh what changed
+        CompletableFuture<Void> save = DatabaseExecutor.run(() -> {
+            pending.save();
+            if (pending.isEverythingSaved()) {
+                writeSnapshot(departments);
+            }
+            if (!Repositories.isEmbedded()) {
+                System.out.println("Save finished " + sqlhandler.getPoolStats());
+            }
+        });
+        //The save can not be cancelled: the driver ignores the interrupt, and the lists must not change until it is done
+        currentSave = save;
+        beginTask("Saving...", save, false);
+        save.whenCompleteAsync((result, error) -> {
+            endTask(save);
+            if (error != null && !isCancellation(error)) {
+                error.printStackTrace();
             }
+            //Undoing past the save would change rows that were already written
+            history.clear();
+            if (pending.isEverythingSaved()) {
+                history.clearDirty();
+            }
+            updateUndoMenu();
+            rewriteJournal();
+            refreshChangedRows();
+        }, DatabaseExecutor.edt());
+    }
 
-            //Parse through the department items array
-            for (Item item : department.getAllItems()) {
-                //If the item has not received an ID, which indicates it has never been in the database
-                if (item.getID() != 0) {
-                    //If the item has already been in the database but was modified later
-                    if (item.isModified()) {
-                        //We need to store both the item and its department in a HashTable to retrieve the item's department_id
-                        modifiedItems.put(item, department);
-                    }
-                } else {
-                    //We need to store both the item and its department in a HashTable to retrieve the item's department_id
-                    newItems.put(item, department);
+    /**
+     * Writes every saved department and item to a CSV file on the database
+     * thread. The number of rows written so far is shown in the title.
+     *
+     * @param file
+     */
+    private void exportCsv(Path file){
+        CompletableFuture<Long> export = DatabaseExecutor.submit(() ->
+                new CsvTransfer(sqlhandler.getImportBatchSize(), this::showTransferProgress).export(file));
+        beginTask("Exporting...", export);
+        export.whenCompleteAsync((rows, error) -> {
+            endTask(export);
+            if (error != null) {
+                if (!isCancellation(error)) {
+                    error.printStackTrace();
+                    JOptionPane.showMessageDialog(null, "Error: Could not export to " + file + ".");
                 }
+                return;
             }
-        }
-
-        //Call the methods to finalize changes into the database then reload the applications data from the database
-        saveDepartments();
-        saveItems();
-        reloadAllContent();
+            System.out.println(rows + " rows exported to " + file);
+        }, DatabaseExecutor.edt());
     }
 
     /**
-     * Prerequisite: saveData()
+     * Adds the departments and items of a CSV file to the database on the
+     * database thread, then reloads everything so they are shown. Batches
+     * inserted before an error or cancel stay in the database.
      *
-     * Used to parse through 3 department lists of departments that needs to be inserted into the database, departments
-     * that needs updated in the database, and departments that needs deleted from the database
+     * @param file
      */
-    private void saveDepartments(){
-        try {
-            //Establishes a connection to the database
-            connectionInfo = sqlhandler.getConnectionInfo();
-            connector = DriverManager.getConnection(connectionInfo[0], connectionInfo[1], connectionInfo[2]);
-
-            /*Using the established SQL prepared statement, parses through the modifiedDepartments list and updates the
-            department data in the database*/
-            if(!modifiedDepartments.isEmpty()) {
-                statement = connector.prepareStatement("UPDATE departments SET name = ? WHERE id = ?");
-                for (Department department : modifiedDepartments) {
-                    statement.setString(1, department.getName());
-                    statement.setInt(2, department.getID());
-                    statement.addBatch();
-                }
-                //Execute the batch, sent to console of the update success, then clear the modifiedDepartments list
-                statement.executeBatch();
-                System.out.println("Departments updated in the database");
-                modifiedDepartments.clear();
-            }
-
-            /*Out of the 6 lists, this list of departments to be inserted into the database must be parsed differently
-            * than the rest of the lists. We must first insert the department, but each iteration we must select the
-            * department that was must inserted into the database, then retrieve the department's newly generated ID so
-            * that we can set the item department ids in the database when we go to insert and update the item lists.*/
-            if(!newDepartments.isEmpty()) {
-                for (Department department : newDepartments) {
-                    statement = connector.prepareStatement("INSERT INTO departments (name, description) VALUES (?,'')");
-                    statement.setString(1, department.getName());
-                    statement.executeUpdate();
-
-                    //Find the department just added and add the department's ID to the department object instance.
-                    statement = connector.prepareStatement("SELECT * FROM departments WHERE name = ?");
-                    statement.setString(1, department.getName());
-                    rs = statement.executeQuery();
-                    rs.next();
-                    department.setID(rs.getInt("id"));
-                }
-                //Print in the console the success of inserting the new departments then clear the newDepartments list.
-                System.out.println("Departments inserted in the database");
-                newDepartments.clear();
-            }
-
-            /*Using the established SQL prepared statement, parses through the deletedDepartments list and delete the
-            department data in the database*/
-            if(!deletedDepartments.isEmpty()) {
-                statement = connector.prepareStatement("DELETE FROM departments WHERE id = ?");
-                for (Department department : deletedDepartments) {
-                /*First we must move all remaining items to the deletedItems list to be deleted from the database and
-                remove clutter.*/
-                    for (Item item : department.getAllItems()) {
-                        deletedItems.add(item);
-                    }
-                    department.removeAllItems();
+    private void importCsv(Path file){
+        CompletableFuture<Long> load = DatabaseExecutor.submit(() ->
+                new CsvTransfer(sqlhandler.getImportBatchSize(), this::showTransferProgress)
+                        .importFile(file, sqlhandler.isImportParallel()));
+        beginTask("Importing...", load);
+        load.whenCompleteAsync((items, error) -> {
+            endTask(load);
+            if (error != null && !isCancellation(error)) {
+                error.printStackTrace();
+                JOptionPane.showMessageDialog(null, "Error: Could not import " + file + ". " + error.getMessage());
+            } else if (error == null) {
+                System.out.println(items + " items imported from " + file);
+            }
+            reloadAllContent();
+        }, DatabaseExecutor.edt());
+    }
 
-                    //If the department ID equals 0, then there is nothing to delete in the database
-                    if (department.getID() != 0) {
-                        statement.setInt(1, department.getID());
-                        statement.addBatch();
-                    }
-                }
-                //Execute the batch of departments that need deleted, clear the deletedDepartments list and send confirmation to the console
-                statement.executeBatch();
-                System.out.println("Departments deleted in the database");
-                deletedDepartments.clear();
+    /**
+     * Shows how far an export or import is. Called on the database thread.
+     *
+     * @param stage
+     * @param rows
+     */
+    private void showTransferProgress(String stage, long rows){
+        SwingUtilities.invokeLater(() -> {
+            if (currentTask != null) {
+                setTitle("Inventory Tracker - " + stage + " " + rows + " rows...");
             }
+        });
+    }
 
-        } catch (SQLException e) {
+    /**
+     * Opens the journal that backs up unsaved changes. The application still
+     * runs without it when the file can not be opened.
+     */
+    private void openJournal(){
+        if (!sqlhandler.isJournalEnabled()) {
+            return;
+        }
+        try {
+            journal = new ChangeJournal(Paths.get(sqlhandler.getJournalFile()), sqlhandler.getJournalSyncInterval());
+        } catch (IOException e) {
             e.printStackTrace();
-            JOptionPane.showMessageDialog(null, "Error: Departments not saved properly!");
-        } finally {
-            sqlhandler.closeConnections(connector, statement, rs);
+            JOptionPane.showMessageDialog(null, "Error: Cannot open the journal file, unsaved changes will not be backed up.");
         }
     }
 
     /**
-     * Prerequisite: saveData(), saveDepartments()
+     * Forces the journal to the disk and stops its sync thread when the
+     * application exits. Unsaved changes stay in the file for the next start.
+     */
+    private void closeJournal(){
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Sets up the local snapshot of the database. Only used with MySQL, the
+     * embedded backend is already a local file.
+     */
+    private void openSnapshot(){
+        if (sqlhandler.isSnapshotEnabled() && !Repositories.isEmbedded()) {
+            String[] connection = sqlhandler.getConnectionInfo();
+            snapshot = new SnapshotCache(Paths.get(sqlhandler.getSnapshotFile()), connection[0] + " " + connection[1]);
+        }
+    }
+
+    /**
+     * Replaces the local snapshot with the given departments. Must run on the
+     * database thread while they hold nothing unsaved. A snapshot that can not
+     * be written only makes the next start slower.
      *
-     * Used to parse through 3 item lists of items that needs to be inserted into the database, items that needs updated
-     * in the database, and items that needs deleted from the database.
+     * @param saved
      */
-    private void saveItems(){
+    private void writeSnapshot(List<Department> saved){
+        if (snapshot == null || !deltaSync.isStarted()) {
+            return;
+        }
         try {
-            //Establishes a connection to the database
-            connectionInfo = sqlhandler.getConnectionInfo();
-            connector = DriverManager.getConnection(connectionInfo[0], connectionInfo[1], connectionInfo[2]);
-
-            /*Using the established SQL prepared statement, parses through the modifiedItems list and updates the
-            item data in the database*/
-            if(!modifiedItems.isEmpty()) {
-                statement = connector.prepareStatement("UPDATE items SET name = ?, quantity = ?, department_id = ?, description = ? WHERE id = ?");
-                for (Item item : modifiedItems.keySet()) {
-                    statement.setString(1, item.getName());
-                    statement.setInt(2, item.getQuantity());
-                    statement.setInt(3, modifiedItems.get(item).getID());
-                    statement.setString(4, item.getDescription());
-                    statement.setInt(5, item.getID());
-                    statement.addBatch();
-                }
-                //Execute the batch of items that need updated, clear the modifiedItems list and send confirmation to the console
-                statement.executeBatch();
-                System.out.println("Items updated in the database");
-                modifiedItems.clear();
-            }
-
-            /*Using the established SQL prepared statement, parses through the newItems list and inserts the item data
-            in the database*/
-            if(!newItems.isEmpty()) {
-                statement = connector.prepareStatement("INSERT INTO items (description, department_id, quantity, name) VALUES (?,?,?,?)");
-                for (Item item : newItems.keySet()) {
-                    statement.setString(1, item.getDescription());
-                    statement.setInt(2, newItems.get(item).getID());
-                    statement.setInt(3, item.getQuantity());
-                    statement.setString(4, item.getName());
-                    statement.addBatch();
-                }
-                //Execute the batch of items that need inserted, clear the newItems list and send confirmation to the console
-                statement.executeBatch();
-                System.out.println("Items inserted in the database");
-                newItems.clear();
-            }
-
-            /*Using the established SQL prepared statement, parses through the deletedItems list and deletes the item
-            data in the database*/
-            if(!deletedItems.isEmpty()) {
-                statement = connector.prepareStatement("DELETE FROM items WHERE id = ?");
-                for (Item item : deletedItems) {
-                    if (item.getID() != 0) {
-                        statement.setInt(1, item.getID());
-                        statement.addBatch();
-                    }
+            snapshot.write(saved, deltaSync.getWatermark(), !sqlhandler.isLazyLoading());
+        } catch (IOException e) {
+            System.out.println("Snapshot not written: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds a change the user just made to the undo history.
+     *
+     * @param command
+     */
+    private void addToHistory(UndoHistory.Command command){
+        history.done(command);
+        updateUndoMenu();
+    }
+
+    /**
+     * Shows the lists again after an undo or redo, keeping the department that
+     * was shown selected if it is still there.
+     *
+     * @param shown
+     */
+    private void historyChanged(Department shown){
+        updateUndoMenu();
+        refreshDepartmentList();
+        int index = shown != null ? departments.indexOf(shown) : -1;
+        if (index != -1) {
+            departmentList.setSelectedIndex(index);
+        }
+    }
+
+    /**
+     * Names the change the 'Undo' and 'Redo' menu buttons would undo or redo.
+     */
+    private void updateUndoMenu(){
+        String undoName = history.getUndoName();
+        String redoName = history.getRedoName();
+        undoMenuItem.setText(undoName != null ? "Undo " + undoName : "Undo");
+        undoMenuItem.setEnabled(undoName != null);
+        redoMenuItem.setText(redoName != null ? "Redo " + redoName : "Redo");
+        redoMenuItem.setEnabled(redoName != null);
+    }
+
+    /**
+     * @param department
+     */
+    private void recordDepartment(Department department){
+        if (journal != null) {
+            journal.department(department);
+        }
+    }
+
+    /**
+     * Backs up the item an Add or Edit Item form saved, if the user did not
+     * close it without confirming.
+     *
+     * @param form
+     */
+    private void recordItem(New_Item form){
+        if (journal != null && form.getSavedItem() != null) {
+            journal.item(form.getSavedItem(), form.getSavedDepartment());
+        }
+    }
+
+    /**
+     * Replaces the journal with the changes that are still unsaved. Empties it
+     * after a save that went through, and keeps what a failed save left behind.
+     * Only the items of the dirty departments can be unsaved, so the items of
+     * the other departments are not looked at. Runs on the EDT after a save,
+     * which clears the dirty departments once everything was saved.
+     */
+    private void rewriteJournal(){
+        if (journal == null) {
+            return;
+        }
+        journal.reset();
+        Set<Department> dirtyDepartments = history.getDirtyDepartments();
+        for (Department department : departments) {
+            if (department.getID() == 0 || department.isModified()) {
+                journal.department(department);
+            }
+            //Departments that were never opened in lazy mode have no unsaved items
+            if (!department.hasLoadedItems() || !dirtyDepartments.contains(department)) {
+                continue;
+            }
+            for (Item item : department.getAllItems()) {
+                recordUnsavedItem(item, department);
+            }
+        }
+        //Rows a save left unsaved are in a dirty department anyway, these only catch one that is not
+        for (Map<Item, Department> unsaved : List.of(modifiedItems, newItems)) {
+            for (Map.Entry<Item, Department> entry : unsaved.entrySet()) {
+                if (!dirtyDepartments.contains(entry.getValue())) {
+                    recordUnsavedItem(entry.getKey(), entry.getValue());
                 }
-                //Execute the batch of items that need deleted, clear the deletedItems list and send confirmation to the console
-                statement.executeBatch();
-                System.out.println("Items deleted in the database");
-                deletedItems.clear();
             }
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(null, "Error: Items not saved properly!");
-        } finally {
-            sqlhandler.closeConnections(connector, statement, rs);
+        }
+        for (Department department : deletedDepartments) {
+            if (department.getID() != 0) {
+                journal.departmentDeleted(department);
+            }
+        }
+        for (Item item : deletedItems) {
+            if (item.getID() != 0) {
+                journal.itemDeleted(item);
+            }
         }
     }
 
     /**
-     * Fully reloads the department and item instances with data that is currently in the database. All data not backedup
-     * beforehand will be lost.
+     * Backs up an item for rewriteJournal() if it is unsaved.
      *
-     * WIP to create local CSV file backups in case data is not saved properly.
+     * @param item
+     * @param department
+     */
+    private void recordUnsavedItem(Item item, Department department){
+        if (item.getID() != 0 && item.isAdjustedOnly()) {
+            journal.itemAdjusted(item, item.getQuantityDelta());
+        } else if (item.getID() == 0 || item.isModified()) {
+            journal.item(item, department);
+        }
+    }
+
+    /**
+     * Fully reloads the department and item instances with data that is currently in the database. All unsaved
+     * changes are lost, including their backup in the journal. The selection is restored once the load has finished.
      */
     private void reloadAllContent() {
+        history.clear();
+        history.clearDirty();
+        updateUndoMenu();
+        //A journal that has not been replayed yet belongs to a load that failed, it is kept for the next one
+        if (journal != null && journalReplayed) {
+            journal.reset();
+        }
         departmentData.clear();
         departments.clear();
-        populateDepartmentList();
-        departmentList.setSelectedIndex(selectedDepartment);
+        Department.getCache().clear();
+        searchIndex.clear();
+        //Unsaved deletes are discarded with the rest, the items they refer to are about to be replaced
+        deletedItems.clear();
+        deletedDepartments.clear();
+        if (Department.getItemStore() != null) {
+            Department.getItemStore().clear();
+        }
+        int previousSelection = selectedDepartment;
+        populateDepartmentList().thenRunAsync(() -> departmentList.setSelectedIndex(previousSelection), DatabaseExecutor.edt());
     }
 }
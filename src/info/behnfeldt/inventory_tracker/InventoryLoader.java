@@ -0,0 +1,161 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Name:   InventoryLoader.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Loads every department and every item with two streamed queries on a single
+ * pooled connection and builds the Department/Item objects in memory. This
+ * replaces loading each department's items with its own query, which cost one
+ * round trip to the database per department at startup.
+ *
+ * In lazy mode only the departments are read and each department loads its
+ * own items the first time it is opened.
+ */
+public class InventoryLoader {
+
+    private SQLHandler sqlhandler = new SQLHandler();   //Used to borrow a database connection
+
+    /**
+     * Reads all departments, then all items ordered by department, and attaches
+     * each item to its department. Departments are returned in id order.
+     *
+     * @return ArrayList<Department>
+     * @throws SQLException
+     */
+    public ArrayList<Department> loadAll() throws SQLException {
+        ArrayList<Department> departments = new ArrayList<>();
+        HashMap<Integer, Department> departmentsById = new HashMap<>();
+        Connection connector = null;
+        PreparedStatement statement = null;
+        ResultSet rs = null;
+
+        try {
+            connector = sqlhandler.getConnection();
+
+            //First scan: every department, without letting the department load its own items
+            statement = prepareStreaming(connector, "SELECT id, name, description, version FROM departments ORDER BY id");
+            rs = statement.executeQuery();
+            while (rs.next()) {
+                Department department = readDepartment(rs);
+                department.markItemsLoaded();
+                departments.add(department);
+                departmentsById.put(department.getID(), department);
+            }
+            rs.close();
+            statement.close();
+
+            /*
+             * Second scan: every item, grouped by department. Items are attached as they stream in, so only the
+             * current row is held by the driver instead of the whole result set.
+             */
+            statement = prepareStreaming(connector, "SELECT id, quantity, name, description, version, department_id FROM items ORDER BY department_id, id");
+            rs = statement.executeQuery();
+            Department current = null;
+            while (rs.next()) {
+                checkCancelled();
+                int departmentId = rs.getInt("department_id");
+                if (current == null || current.getID() != departmentId) {
+                    current = departmentsById.get(departmentId);
+                }
+                //Items whose department no longer exists are skipped, they can not be shown anywhere
+                if (current != null) {
+                    current.addLoadedItem(readItem(rs));
+                }
+            }
+        } finally {
+            sqlhandler.closeConnections(connector, statement, rs);
+        }
+
+        return departments;
+    }
+
+    /**
+     * Reads all departments without their items. Each department loads its
+     * items on demand the first time they are requested.
+     *
+     * @return ArrayList<Department>
+     * @throws SQLException
+     */
+    public ArrayList<Department> loadDepartments() throws SQLException {
+        ArrayList<Department> departments = new ArrayList<>();
+        Connection connector = null;
+        PreparedStatement statement = null;
+        ResultSet rs = null;
+
+        try {
+            connector = sqlhandler.getConnection();
+            statement = prepareStreaming(connector, "SELECT id, name, description, version FROM departments ORDER BY id");
+            rs = statement.executeQuery();
+            while (rs.next()) {
+                departments.add(readDepartment(rs));
+            }
+        } finally {
+            sqlhandler.closeConnections(connector, statement, rs);
+        }
+
+        return departments;
+    }
+
+    /**
+     * Reads a department, without its items, from a row of id, name,
+     * description and version.
+     *
+     * @param rs
+     * @return Department
+     * @throws SQLException
+     */
+    static Department readDepartment(ResultSet rs) throws SQLException {
+        Department department = new Department(rs.getInt("id"), rs.getString("name"), rs.getString("description"), false);
+        department.setVersion(rs.getLong("version"));
+        return department;
+    }
+
+    /**
+     * Reads an item from a row of id, quantity, name, description and version.
+     * The version is what a save checks to find out whether another client
+     * changed the row in the meantime.
+     *
+     * @param rs
+     * @return Item
+     * @throws SQLException
+     */
+    static Item readItem(ResultSet rs) throws SQLException {
+        Item item = new Item(rs.getInt("id"), rs.getInt("quantity"), rs.getString("name"), rs.getString("description"));
+        item.setVersion(rs.getLong("version"));
+        return item;
+    }
+
+    /**
+     * Stops a load that was cancelled through the DatabaseExecutor.
+     *
+     * @throws SQLException
+     */
+    static void checkCancelled() throws SQLException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new SQLException("Inventory load was cancelled.");
+        }
+    }
+
+    /**
+     * Prepares a forward only, read only statement. A fetch size of Integer.MIN_VALUE
+     * tells the MySQL driver to stream rows one at a time instead of buffering the
+     * whole result set in memory.
+     *
+     * @param connector
+     * @param sql
+     * @return PreparedStatement
+     * @throws SQLException
+     */
+    static PreparedStatement prepareStreaming(Connection connector, String sql) throws SQLException {
+        PreparedStatement statement = connector.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(Integer.MIN_VALUE);
+        return statement;
+    }
+}
@@ -1,5 +1,7 @@
 package info.behnfeldt.inventory_tracker;
 
+import java.util.Objects;
+
 /**
  * Name:   Item.java
  * By:     Reed Behnfeldt
@@ -7,13 +9,27 @@ package info.behnfeldt.inventory_tracker;
  *
  * Class used to store Item data. Will load its items automatically from the
  * database when initialized with its ID.
+ *
+ * Besides the modified mark the Item keeps a bit for every column changed since
+ * the last save, so a save only writes those columns. Setters that do not
+ * change the value mark nothing.
  */
 public class Item {
+    public static final int QUANTITY = 1;       //Column bit: quantity
+    public static final int NAME = 2;           //Column bit: name
+    public static final int DESCRIPTION = 4;    //Column bit: description
+    public static final int DEPARTMENT = 8;     //Column bit: department_id
+    public static final int ALL_COLUMNS = QUANTITY | NAME | DESCRIPTION | DEPARTMENT;  //Every column bit
+    public static final int ADJUSTED = 16;      //Marks the quantity change as a delta to add, not a value to write
     private int id;                     //Item ID
     private int quantity;               //Item quantity
     private String name;                //Item name
     private String description;         //Item description
     private boolean hasChanged = false; //Marks when the Item needs to be saved
+    private int changedColumns = 0;     //Column bits changed since the last save, plus ADJUSTED
+    private int quantityDelta = 0;      //Sum of the quantity adjustments not saved yet
+    private long version = 0;           //Row version last seen in the database, 0 when unknown
+    private ItemSearchIndex searchIndex;    //Search index the Item is listed in, if any
 
     /**
      * Main initializer for the Item class.
@@ -44,6 +60,7 @@ public class Item {
         this.name = name;
         this.description = description;
         hasChanged = true;
+        changedColumns = ALL_COLUMNS;
     }
 
     /**
@@ -81,36 +98,276 @@ public class Item {
         return hasChanged;
     }
 
+    /**
+     * When the only unsaved change is a quantity adjustment, which is saved
+     * by adding getQuantityDelta() to the quantity in the database instead of
+     * overwriting the row.
+     *
+     * @return boolean
+     */
+    public boolean isAdjustedOnly(){
+        return changedColumns == (QUANTITY | ADJUSTED);
+    }
+
+    /**
+     * @return the sum of the quantity adjustments not saved yet, 0 unless the ADJUSTED bit is set
+     */
+    public int getQuantityDelta(){
+        return (changedColumns & ADJUSTED) != 0 ? quantityDelta : 0;
+    }
+
+    /**
+     * @return the column bits changed since the last save, plus ADJUSTED when the quantity is a delta
+     */
+    public int getChangedColumns(){
+        return changedColumns;
+    }
+
+    /**
+     * @return
+     */
+    public long getVersion(){
+        return version;
+    }
+
+    /**
+     * @param version
+     */
+    void setVersion(long version){
+        this.version = version;
+    }
+
+    /**
+     * Applies a change another client made in the database. Unlike the
+     * setters this does not mark the Item as modified.
+     *
+     * @param quantity
+     * @param name
+     * @param description
+     * @param version
+     * @return true if anything was different
+     */
+    boolean applyRemote(int quantity, String name, String description, long version){
+        this.version = version;
+        if (this.quantity == quantity && Objects.equals(this.name, name)
+                && Objects.equals(this.description, description)) {
+            return false;
+        }
+        this.quantity = quantity;
+        this.name = name;
+        this.description = description;
+        reindex();
+        return true;
+    }
+
+    /**
+     * Puts the unsaved changes on top of a row another client changed since
+     * it was read. Columns changed here keep their value, the others take the
+     * value from the database, and an adjusted quantity is added to the
+     * quantity in the database. The Item stays modified.
+     *
+     * @param quantity
+     * @param name
+     * @param description
+     * @param version
+     */
+    void rebase(int quantity, String name, String description, long version){
+        this.version = version;
+        if ((changedColumns & ADJUSTED) != 0) {
+            this.quantity = quantity + quantityDelta;
+        } else if ((changedColumns & QUANTITY) == 0) {
+            this.quantity = quantity;
+        }
+        if ((changedColumns & NAME) == 0) {
+            this.name = name;
+        }
+        if ((changedColumns & DESCRIPTION) == 0) {
+            this.description = description;
+        }
+        reindex();
+    }
+
+    /**
+     * @param searchIndex
+     */
+    void setSearchIndex(ItemSearchIndex searchIndex){
+        this.searchIndex = searchIndex;
+    }
+
+    /**
+     * Updates the search index after the name, description or quantity changed.
+     */
+    private void reindex(){
+        if (searchIndex != null) {
+            searchIndex.update(this);
+        }
+    }
+
+    /**
+     * Clears the modified mark once the Item has been written to the
+     * database, without touching any of its data.
+     */
+    void markSaved(){
+        hasChanged = false;
+        changedColumns = 0;
+        quantityDelta = 0;
+    }
+
+    /**
+     * Marks the department column after the Item was added to a department,
+     * which for a saved Item means it moved.
+     */
+    void markMoved(){
+        markChanged(DEPARTMENT);
+    }
+
+    /**
+     * Sets the quantity the database ended up with after the adjustments were
+     * added to it, which includes adjustments other clients saved in the
+     * meantime. Does not mark the Item as modified.
+     *
+     * @param quantity
+     */
+    void setSavedQuantity(int quantity){
+        if (this.quantity != quantity) {
+            this.quantity = quantity;
+            reindex();
+        }
+    }
+
     /**
      * @param id
      */
     public void setID(int id){
+        if (this.id == id) {
+            return;
+        }
         this.id = id;
-        hasChanged = true;
+        //A row with a new ID is written as a whole
+        markChanged(ALL_COLUMNS);
     }
 
     /**
      * @param quantity
      */
     public void setQuantity(int quantity){
+        if (this.quantity == quantity) {
+            return;
+        }
         this.quantity = quantity;
+        markChanged(QUANTITY);
+        reindex();
+    }
+
+    /**
+     * Adds to or removes from the quantity. Unless the quantity is also set to
+     * a value, the save adds the total adjustment to the quantity in the
+     * database, so adjustments other clients save at the same time are not
+     * overwritten.
+     *
+     * @param delta amount to add, negative to remove
+     */
+    public void adjust(int delta){
+        //The quantity stays a delta unless it was already set to a value that needs writing
+        if ((changedColumns & QUANTITY) == 0) {
+            changedColumns |= QUANTITY | ADJUSTED;
+            quantityDelta = 0;
+        }
+        quantity += delta;
+        quantityDelta += delta;
         hasChanged = true;
+        reindex();
     }
 
     /**
      * @param name
      */
     public void setName(String name){
+        if (Objects.equals(this.name, name)) {
+            return;
+        }
         this.name = name;
-        hasChanged = true;
+        markChanged(NAME);
+        reindex();
     }
 
     /**
      * @param description
      */
     public void setDescription(String description){
+        if (Objects.equals(this.description, description)) {
+            return;
+        }
         this.description = description;
+        markChanged(DESCRIPTION);
+        reindex();
+    }
+
+    /**
+     * Copies everything a save can change, see Repositories.remember().
+     *
+     * @return State
+     */
+    State saveState(){
+        return new State(getID(), getQuantity(), getName(), getDescription(), isModified(), getChangedColumns(),
+                getQuantityDelta(), getVersion());
+    }
+
+    /**
+     * Puts back a copy made by saveState(), after the transaction that changed
+     * the Item was rolled back.
+     *
+     * @param state
+     */
+    void restore(State state){
+        id = state.id;
+        quantity = state.quantity;
+        name = state.name;
+        description = state.description;
+        hasChanged = state.modified;
+        changedColumns = state.changedColumns;
+        quantityDelta = state.quantityDelta;
+        version = state.version;
+        reindex();
+    }
+
+    /**
+     * Adds column bits. Writing the quantity as a value replaces any delta.
+     *
+     * @param columns
+     */
+    private void markChanged(int columns){
         hasChanged = true;
+        if ((columns & QUANTITY) != 0) {
+            changedColumns &= ~ADJUSTED;
+            quantityDelta = 0;
+        }
+        changedColumns |= columns;
     }
 
+    /**
+     * The data and marks of an Item at one point in time.
+     */
+    static class State {
+        final int id;
+        final int quantity;
+        final String name;
+        final String description;
+        final boolean modified;
+        final int changedColumns;
+        final int quantityDelta;
+        final long version;
+
+        private State(int id, int quantity, String name, String description, boolean modified, int changedColumns,
+                      int quantityDelta, long version){
+            this.id = id;
+            this.quantity = quantity;
+            this.name = name;
+            this.description = description;
+            this.modified = modified;
+            this.changedColumns = changedColumns;
+            this.quantityDelta = quantityDelta;
+            this.version = version;
+        }
+    }
 }
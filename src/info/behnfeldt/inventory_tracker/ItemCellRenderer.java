@@ -0,0 +1,22 @@
+package info.behnfeldt.inventory_tracker;
+
+import javax.swing.*;
+import java.awt.Component;
+
+/**
+ * Name:   ItemCellRenderer.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Paints a row of the item list as its quantity and name. The text is
+ * built only for rows that are actually painted.
+ */
+public class ItemCellRenderer extends DefaultListCellRenderer {
+
+    @Override
+    public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus){
+        String text = value instanceof Item ? Form_Main.formatItemRow((Item) value) : "Loading...";
+        return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+    }
+}
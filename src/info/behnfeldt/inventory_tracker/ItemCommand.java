@@ -0,0 +1,233 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Name:   ItemCommand.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Undoable add, edit, move or delete of an item. Holds the item itself, the
+ * department it was in before and after the change, and for an edit the
+ * quantity, name and description from before and after. Moving an item to
+ * another department in the Edit Item form is part of the same edit, so one
+ * undo puts back both its values and its department. A quantity adjustment
+ * only holds the amount, and undoing it adjusts by the opposite amount so the
+ * item stays a delta for the save. Every undo and redo is
+ * also written to the journal so a crash afterwards recovers the right state.
+ */
+public class ItemCommand implements UndoHistory.Command {
+
+    private static final long BASE_SIZE = 96;           //Estimated bytes of a command without its text
+    private final String name;                          //Shown in the Undo and Redo menu buttons
+    private final Item item;                            //The item that was changed
+    private final Department from;                      //Department before the change, null for an add
+    private final Department to;                        //Department after the change, null for a delete
+    private final ArrayList<Item> deletedItems;         //Items that need deleted from the database
+    private final ChangeJournal journal;                //Backup of unsaved changes, may be null
+    private final int oldQuantity;                      //Quantity before an edit
+    private final String oldName;                       //Name before an edit
+    private final String oldDescription;                //Description before an edit
+    private final int newQuantity;                      //Quantity after an edit
+    private final String newName;                       //Name after an edit
+    private final String newDescription;                //Description after an edit
+    private final int delta;                            //Amount added by a quantity adjustment, 0 otherwise
+
+    /**
+     * @param name
+     * @param item
+     * @param from
+     * @param to
+     * @param deletedItems
+     * @param journal
+     * @param oldQuantity
+     * @param oldName
+     * @param oldDescription
+     * @param delta
+     */
+    private ItemCommand(String name, Item item, Department from, Department to, ArrayList<Item> deletedItems,
+                        ChangeJournal journal, int oldQuantity, String oldName, String oldDescription, int delta){
+        this.name = name;
+        this.item = item;
+        this.from = from;
+        this.to = to;
+        this.deletedItems = deletedItems;
+        this.journal = journal;
+        this.oldQuantity = oldQuantity;
+        this.oldName = oldName;
+        this.oldDescription = oldDescription;
+        this.newQuantity = item.getQuantity();
+        this.newName = item.getName();
+        this.newDescription = item.getDescription();
+        this.delta = delta;
+    }
+
+    /**
+     * An item that was just added to a department.
+     *
+     * @param item
+     * @param department
+     * @param journal
+     * @return ItemCommand
+     */
+    public static ItemCommand added(Item item, Department department, ChangeJournal journal){
+        return new ItemCommand("Add Item", item, null, department, null, journal, 0, null, null, 0);
+    }
+
+    /**
+     * An item that was just edited, and possibly moved to another department.
+     *
+     * @param item
+     * @param from department before the edit
+     * @param to department after the edit
+     * @param oldQuantity
+     * @param oldName
+     * @param oldDescription
+     * @param journal
+     * @return ItemCommand
+     */
+    public static ItemCommand edited(Item item, Department from, Department to, int oldQuantity, String oldName,
+                                     String oldDescription, ChangeJournal journal){
+        return new ItemCommand(from == to ? "Edit Item" : "Move Item", item, from, to, null, journal,
+                oldQuantity, oldName, oldDescription, 0);
+    }
+
+    /**
+     * The quantity of an item that was just adjusted.
+     *
+     * @param item
+     * @param department
+     * @param delta amount that was added, negative if removed
+     * @param journal
+     * @return ItemCommand
+     */
+    public static ItemCommand adjusted(Item item, Department department, int delta, ChangeJournal journal){
+        return new ItemCommand("Adjust Quantity", item, department, department, null, journal, 0, null, null, delta);
+    }
+
+    /**
+     * An item that was just removed from its department and added to the
+     * deleted items.
+     *
+     * @param item
+     * @param department
+     * @param deletedItems
+     * @param journal
+     * @return ItemCommand
+     */
+    public static ItemCommand deleted(Item item, Department department, ArrayList<Item> deletedItems, ChangeJournal journal){
+        return new ItemCommand("Delete Item", item, department, null, deletedItems, journal, 0, null, null, 0);
+    }
+
+    @Override
+    public void undo(){
+        if (delta != 0) {
+            adjust(-delta);
+        } else if (from == null) {
+            to.removeItem(item);
+            recordDeleted();
+        } else if (to == null) {
+            deletedItems.remove(item);
+            from.addItem(item);
+            record(from);
+        } else {
+            item.setName(oldName);
+            item.setQuantity(oldQuantity);
+            item.setDescription(oldDescription);
+            move(to, from);
+        }
+    }
+
+    @Override
+    public void redo(){
+        if (delta != 0) {
+            adjust(delta);
+        } else if (from == null) {
+            to.addItem(item);
+            record(to);
+        } else if (to == null) {
+            deletedItems.add(item);
+            from.removeItem(item);
+            recordDeleted();
+        } else {
+            item.setName(newName);
+            item.setQuantity(newQuantity);
+            item.setDescription(newDescription);
+            move(from, to);
+        }
+    }
+
+    /**
+     * @param source
+     * @param target
+     */
+    private void move(Department source, Department target){
+        if (source != target) {
+            target.addItem(item);
+            source.removeItem(item);
+        }
+        record(target);
+    }
+
+    /**
+     * @param amount
+     */
+    private void adjust(int amount){
+        item.adjust(amount);
+        if (journal != null) {
+            journal.itemAdjusted(item, amount);
+        }
+    }
+
+    /**
+     * @param department
+     */
+    private void record(Department department){
+        if (journal != null) {
+            journal.item(item, department);
+        }
+    }
+
+    private void recordDeleted(){
+        if (journal != null) {
+            journal.itemDeleted(item);
+        }
+    }
+
+    @Override
+    public String getName(){
+        return name;
+    }
+
+    @Override
+    public long getSize(){
+        //An edit holds two sets of values, an add or delete keeps the item itself alive
+        if (delta != 0) {
+            return BASE_SIZE;
+        }
+        if (from != null && to != null) {
+            return BASE_SIZE + 2L * (length(oldName) + length(oldDescription) + length(newName) + length(newDescription));
+        }
+        return BASE_SIZE + 2L * (length(newName) + length(newDescription));
+    }
+
+    @Override
+    public void addDepartments(Collection<Department> departments){
+        if (from != null) {
+            departments.add(from);
+        }
+        if (to != null) {
+            departments.add(to);
+        }
+    }
+
+    /**
+     * @param value
+     * @return int
+     */
+    private static int length(String value){
+        return value == null ? 0 : value.length();
+    }
+}
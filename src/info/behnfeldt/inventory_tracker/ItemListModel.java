@@ -0,0 +1,187 @@
+package info.behnfeldt.inventory_tracker;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Name:   ItemListModel.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * List model for the item list that reads straight from the selected
+ * department's item list instead of copying every item into a
+ * DefaultListModel of strings. Rows are only turned into text by the
+ * ItemCellRenderer when they are painted, so switching to a department
+ * with a huge number of items costs the same as switching to a small one.
+ *
+ * Callers report what changed with itemAdded(), itemRemoved() and
+ * itemChanged() so the list only repaints the affected rows.
+ *
+ * With paged item loading the model shows a PagedItemSource instead, which
+ * reads the department's items as the rows are scrolled into view. Rows whose
+ * page has not arrived yet are shown as "Loading...".
+ *
+ * The department being shown is kept in memory by the DepartmentCache, so the
+ * item list the model holds is not dropped while it is on screen.
+ */
+public class ItemListModel extends AbstractListModel<Item> {
+
+    private Department department;                              //Department being shown, null when none is selected
+    private List<Item> items = new ArrayList<>();               //The department's item list, shared with the department
+    private boolean loading = false;                            //Marks when the department's items are still being loaded
+    private PagedItemSource pagedItems;                         //Pages of the department's items when paged, otherwise null
+    private int size = 0;                                       //Row count last reported to the list
+
+    /**
+     * Shows the items of a department, or nothing when department is null.
+     *
+     * @param department
+     */
+    public void setDepartment(Department department){
+        closePages();
+        Department.getCache().setShown(department);
+        this.department = department;
+        this.loading = false;
+        this.items = department != null ? department.getAllItems() : new ArrayList<>();
+        replaceAll();
+    }
+
+    /**
+     * Shows a single "Loading..." row while the department's items are read.
+     *
+     * @param department
+     */
+    public void setLoading(Department department){
+        closePages();
+        Department.getCache().setShown(department);
+        this.department = department;
+        this.loading = true;
+        this.items = new ArrayList<>();
+        replaceAll();
+    }
+
+    /**
+     * Shows a department through pages of its items that are read while
+     * scrolling.
+     *
+     * @param department
+     * @param source
+     */
+    public void setPaged(Department department, PagedItemSource source){
+        closePages();
+        Department.getCache().setShown(department);
+        this.department = department;
+        this.loading = false;
+        this.items = new ArrayList<>();
+        this.pagedItems = source;
+        source.setListener((firstRow, lastRow) -> fireContentsChanged(this, firstRow, lastRow));
+        replaceAll();
+    }
+
+    /**
+     * @return boolean
+     */
+    public boolean isPaged(){
+        return pagedItems != null;
+    }
+
+    /**
+     * @return the department being shown
+     */
+    public Department getDepartment(){
+        return department;
+    }
+
+    /**
+     * @return boolean
+     */
+    public boolean isLoading(){
+        return loading;
+    }
+
+    @Override
+    public int getSize(){
+        if (pagedItems != null) {
+            return pagedItems.getSize();
+        }
+        return loading ? 1 : items.size();
+    }
+
+    /**
+     * @param index
+     * @return the item, or null for a "Loading..." row
+     */
+    @Override
+    public Item getElementAt(int index){
+        if (pagedItems != null) {
+            return pagedItems.getItem(index);
+        }
+        return loading ? null : items.get(index);
+    }
+
+    /**
+     * @param index
+     */
+    public void itemAdded(int index){
+        size = getSize();
+        fireIntervalAdded(this, index, index);
+    }
+
+    /**
+     * @param index
+     */
+    public void itemRemoved(int index){
+        size = getSize();
+        fireIntervalRemoved(this, index, index);
+    }
+
+    /**
+     * @param index
+     */
+    public void itemChanged(int index){
+        fireContentsChanged(this, index, index);
+    }
+
+    /**
+     * Tells the list that any row may have changed, for example after items
+     * were merged from the database. Rows that no longer exist are removed
+     * and new rows added; only visible rows are painted again.
+     */
+    public void refresh(){
+        int newSize = getSize();
+        if (newSize < size) {
+            fireIntervalRemoved(this, newSize, size - 1);
+        } else if (newSize > size) {
+            fireIntervalAdded(this, size, newSize - 1);
+        }
+        size = newSize;
+        if (newSize > 0) {
+            fireContentsChanged(this, 0, newSize - 1);
+        }
+    }
+
+    /**
+     * Stops the pages of the department shown before from being read.
+     */
+    private void closePages(){
+        if (pagedItems != null) {
+            pagedItems.close();
+            pagedItems = null;
+        }
+    }
+
+    /**
+     * Replaces every row, used when a different department is shown.
+     */
+    private void replaceAll(){
+        if (size > 0) {
+            fireIntervalRemoved(this, 0, size - 1);
+        }
+        size = getSize();
+        if (size > 0) {
+            fireIntervalAdded(this, 0, size - 1);
+        }
+    }
+}
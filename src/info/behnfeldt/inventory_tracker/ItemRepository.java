@@ -0,0 +1,125 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * Name:   ItemRepository.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Storage of items, independent of where they are kept. Items are passed
+ * together with the department they belong to so the department ID can be
+ * stored with them.
+ */
+public interface ItemRepository {
+
+    /**
+     * @param departmentId
+     * @return ArrayList<Item>
+     * @throws SQLException
+     */
+    ArrayList<Item> findByDepartment(int departmentId) throws SQLException;
+
+    /**
+     * Passes every item of a department to the visitor, in ID order, without
+     * keeping them in memory.
+     *
+     * @param departmentId
+     * @param visitor
+     * @throws SQLException
+     */
+    void streamByDepartment(int departmentId, ItemVisitor visitor) throws SQLException;
+
+    /**
+     * Passes every item of the inventory to the visitor, ordered by department
+     * then ID, without keeping them in memory.
+     *
+     * @param visitor
+     * @throws SQLException
+     */
+    void streamAll(ItemVisitor visitor) throws SQLException;
+
+    /**
+     * Reads up to limit items of a department with an ID above afterId, in
+     * ID order. Used for keyset paging: pass the last ID of the previous page.
+     *
+     * @param departmentId
+     * @param afterId
+     * @param limit
+     * @return ArrayList<Item>
+     * @throws SQLException
+     */
+    ArrayList<Item> findPage(int departmentId, int afterId, int limit) throws SQLException;
+
+    /**
+     * @param departmentId
+     * @return number of items in the department
+     * @throws SQLException
+     */
+    int countByDepartment(int departmentId) throws SQLException;
+
+    /**
+     * Finds the ID of the item at a position of the department in ID order,
+     * used to start a page without reading the pages before it.
+     *
+     * @param departmentId
+     * @param offset
+     * @return the ID, 0 when offset is negative, Integer.MAX_VALUE when past the end
+     * @throws SQLException
+     */
+    int findIdAt(int departmentId, int offset) throws SQLException;
+
+    /**
+     * Finds the department each of the given items is stored in. Items that
+     * do not exist are left out.
+     *
+     * @param itemIds
+     * @return the department ID of each item ID
+     * @throws SQLException
+     */
+    HashMap<Integer, Integer> findDepartmentIds(Collection<Integer> itemIds) throws SQLException;
+
+    /**
+     * Finds the items matching a search, best matches first, skipping the
+     * first offset of them.
+     *
+     * @param query
+     * @param offset
+     * @param limit
+     * @return the items found, each with the ID of its department
+     * @throws SQLException
+     */
+    LinkedHashMap<Item, Integer> searchItems(SearchQuery query, int offset, int limit) throws SQLException;
+
+    /**
+     * Inserts new items and sets the generated ID on each of them.
+     *
+     * @param items
+     * @throws SQLException
+     */
+    void insertItems(HashMap<Item, Department> items) throws SQLException;
+
+    /**
+     * Writes the columns each item changed, see Item.getChangedColumns(). An
+     * adjusted quantity has its delta added to the stored quantity instead of
+     * overwriting it, and the item is then given the quantity that was stored.
+     * Rows another client changed or deleted since they were read are handed
+     * to the ConflictResolver where the backend can detect them.
+     *
+     * @param items
+     * @return the items that are still unsaved because of such a conflict
+     * @throws SQLException
+     */
+    ArrayList<Item> updateItems(HashMap<Item, Department> items) throws SQLException;
+
+    /**
+     * @param items
+     * @throws SQLException
+     */
+    void deleteItems(ArrayList<Item> items) throws SQLException;
+}
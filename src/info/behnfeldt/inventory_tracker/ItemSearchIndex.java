@@ -0,0 +1,298 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Name:   ItemSearchIndex.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * In memory search over the items of every department that is registered with
+ * addDepartment(). Item names and descriptions are split into lower case words
+ * and kept in a sorted word list pointing at the items that contain them, so a
+ * word typed only partly still finds its items. Quantities are kept in a
+ * sorted index for range searches. The index follows the departments and
+ * items as they change: items added, removed, loaded or dropped by a
+ * department, and item setters, update only the entries of that item.
+ *
+ * Search text is read by SearchQuery; an item matches when every word of the
+ * search is the start of a word in its name or description and its quantity
+ * is within the search's quantity range.
+ *
+ * Only items in memory are searched. With lazy or paged loading the items of
+ * departments that have not been opened are not in the index.
+ */
+public class ItemSearchIndex {
+
+    private final HashMap<Item, Entry> entries = new HashMap<>();                       //Indexed items and what they were indexed under
+    private final TreeMap<String, HashSet<Item>> words = new TreeMap<>();               //Items by each word of their name and description
+    private final TreeMap<Integer, HashSet<Item>> quantities = new TreeMap<>();         //Items by quantity
+
+    /**
+     * Starts following a department: its loaded items are indexed now, and
+     * items it loads or is given later are indexed as they arrive. Not
+     * synchronized because the department's lock is taken before the index's
+     * lock when it loads its items.
+     *
+     * @param department
+     */
+    public void addDepartment(Department department){
+        if (department.getSearchIndex() == this) {
+            return;
+        }
+        department.setSearchIndex(this);
+        if (department.hasLoadedItems()) {
+            addAll(department.getAllItems(), department);
+        }
+    }
+
+    /**
+     * @param departments
+     */
+    public void addDepartments(Collection<Department> departments){
+        for (Department department : departments) {
+            addDepartment(department);
+        }
+    }
+
+    /**
+     * @param item
+     * @param department
+     */
+    synchronized void add(Item item, Department department){
+        Entry old = entries.get(item);
+        if (old != null) {
+            unindex(item, old);
+        }
+        Entry entry = new Entry(department, SearchQuery.tokenize(item.getName(), item.getDescription()), item.getQuantity());
+        entries.put(item, entry);
+        item.setSearchIndex(this);
+        for (String word : entry.words) {
+            words.computeIfAbsent(word, k -> new HashSet<>()).add(item);
+        }
+        quantities.computeIfAbsent(entry.quantity, k -> new HashSet<>()).add(item);
+    }
+
+    /**
+     * @param items
+     * @param department
+     */
+    synchronized void addAll(Collection<Item> items, Department department){
+        for (Item item : items) {
+            add(item, department);
+        }
+    }
+
+    /**
+     * Removes an item if it is still indexed under the given department. An
+     * item moved to another department is added there first, so removing it
+     * from the old department afterwards must not drop it.
+     *
+     * @param item
+     * @param department
+     */
+    synchronized void remove(Item item, Department department){
+        Entry entry = entries.get(item);
+        if (entry != null && entry.department == department) {
+            entries.remove(item);
+            unindex(item, entry);
+            item.setSearchIndex(null);
+        }
+    }
+
+    /**
+     * @param items
+     * @param department
+     */
+    synchronized void removeAll(Collection<Item> items, Department department){
+        for (Item item : items) {
+            remove(item, department);
+        }
+    }
+
+    /**
+     * Indexes an item again after its name, description or quantity changed.
+     *
+     * @param item
+     */
+    synchronized void update(Item item){
+        Entry entry = entries.get(item);
+        if (entry != null) {
+            add(item, entry.department);
+        }
+    }
+
+    /**
+     * Forgets every item, used when all content is reloaded.
+     */
+    public synchronized void clear(){
+        for (Item item : entries.keySet()) {
+            item.setSearchIndex(null);
+        }
+        entries.clear();
+        words.clear();
+        quantities.clear();
+    }
+
+    /**
+     * @return number of items indexed
+     */
+    public synchronized int size(){
+        return entries.size();
+    }
+
+    /**
+     * @param item
+     * @return the department the item was indexed under, or null
+     */
+    public synchronized Department getDepartment(Item item){
+        Entry entry = entries.get(item);
+        return entry != null ? entry.department : null;
+    }
+
+    /**
+     * Finds the items matching the search text, at most limit of them.
+     *
+     * @param text
+     * @param limit
+     * @return ArrayList<Item>
+     */
+    public synchronized ArrayList<Item> search(String text, int limit){
+        SearchQuery query = new SearchQuery(text);
+        ArrayList<String> prefixes = query.getWords();
+        ArrayList<Item> results = new ArrayList<>();
+        if (query.isEmpty()) {
+            return results;
+        }
+
+        //Walk the items of the narrowest part of the search and check the other parts on each of them
+        if (prefixes.isEmpty()) {
+            for (HashSet<Item> items : quantities.subMap(query.getMinQuantity(), true, query.getMaxQuantity(), true).values()) {
+                for (Item item : items) {
+                    results.add(item);
+                    if (results.size() >= limit) {
+                        return results;
+                    }
+                }
+            }
+            return results;
+        }
+
+        String narrowest = prefixes.get(0);
+        int narrowestCount = Integer.MAX_VALUE;
+        for (String prefix : prefixes) {
+            int count = countWords(prefix, narrowestCount);
+            if (count < narrowestCount) {
+                narrowest = prefix;
+                narrowestCount = count;
+            }
+        }
+        LinkedHashSet<Item> seen = new LinkedHashSet<>();
+        for (HashSet<Item> items : withPrefix(narrowest).values()) {
+            for (Item item : items) {
+                Entry entry = entries.get(item);
+                if (!query.matchesQuantity(entry.quantity) || !matchesAll(entry, prefixes) || !seen.add(item)) {
+                    continue;
+                }
+                results.add(item);
+                if (results.size() >= limit) {
+                    return results;
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Counts the items listed under the words with a prefix, stopping once
+     * the count passes a bound that can no longer make it the narrowest.
+     *
+     * @param prefix
+     * @param bound
+     * @return int
+     */
+    private int countWords(String prefix, int bound){
+        int count = 0;
+        for (HashSet<Item> items : withPrefix(prefix).values()) {
+            count += items.size();
+            if (count >= bound) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param prefix
+     * @return the words starting with the prefix
+     */
+    private NavigableMap<String, HashSet<Item>> withPrefix(String prefix){
+        return words.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * @param entry
+     * @param prefixes
+     * @return true if every prefix starts one of the entry's words
+     */
+    private static boolean matchesAll(Entry entry, ArrayList<String> prefixes){
+        for (String prefix : prefixes) {
+            boolean found = false;
+            for (String word : entry.words) {
+                if (word.startsWith(prefix)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param item
+     * @param entry
+     */
+    private void unindex(Item item, Entry entry){
+        for (String word : entry.words) {
+            HashSet<Item> items = words.get(word);
+            if (items != null) {
+                items.remove(item);
+                if (items.isEmpty()) {
+                    words.remove(word);
+                }
+            }
+        }
+        HashSet<Item> items = quantities.get(entry.quantity);
+        if (items != null) {
+            items.remove(item);
+            if (items.isEmpty()) {
+                quantities.remove(entry.quantity);
+            }
+        }
+    }
+
+    /**
+     * What an item was indexed under, so its old entries can be removed.
+     */
+    private static class Entry {
+        private final Department department;
+        private final ArrayList<String> words;
+        private final int quantity;
+
+        private Entry(Department department, ArrayList<String> words, int quantity){
+            this.department = department;
+            this.words = words;
+            this.quantity = quantity;
+        }
+    }
+}
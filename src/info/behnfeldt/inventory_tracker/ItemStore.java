@@ -0,0 +1,441 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Objects;
+
+/**
+ * Name:   ItemStore.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Compact storage for item data, used instead of one Item object per item when
+ * the config sets 'item_storage compact'. Every item is a slot in a set of
+ * parallel arrays: ints for the ID, quantity, unsaved quantity adjustment and
+ * department ID, a long for the row version, and references to its name and
+ * description. The modified marks are kept in a BitSet and the changed
+ * column bits of each slot in a byte. Names are deduplicated, so items with the same name share one String.
+ * Each shared name counts the slots using it and is dropped with the last one.
+ * Descriptions are long and mostly unique, so keeping a shared copy of each
+ * would cost more memory than it saves.
+ *
+ * Departments hold their items as a StoredItemList of slot numbers, and
+ * StoredItem is the Item view of one slot that the rest of the application
+ * works with. Views are created when they are asked for and hold nothing but
+ * their slot, so they can be thrown away at any time. Slots of items that are
+ * no longer in memory are released and reused by later items.
+ */
+public class ItemStore {
+
+    private static final int INITIAL_CAPACITY = 1024;          //Slots allocated when the store is created
+    private int[] ids = new int[INITIAL_CAPACITY];              //Item ID of each slot
+    private int[] quantities = new int[INITIAL_CAPACITY];       //Quantity of each slot
+    private int[] departmentIds = new int[INITIAL_CAPACITY];    //Department ID of each slot
+    private long[] versions = new long[INITIAL_CAPACITY];       //Row version of each slot
+    private String[] names = new String[INITIAL_CAPACITY];      //Name of each slot
+    private String[] descriptions = new String[INITIAL_CAPACITY];   //Description of each slot
+    private int[] quantityDeltas = new int[INITIAL_CAPACITY];   //Quantity adjustments not saved yet of each slot
+    private byte[] changedColumns = new byte[INITIAL_CAPACITY]; //Item column bits changed since the last save of each slot
+    private final BitSet modified = new BitSet();               //Slots that need to be saved
+    private final BitSet free = new BitSet();                   //Slots released for reuse
+    private final HashMap<String, SharedString> strings = new HashMap<>();  //One shared copy of every name in use
+    private int size = 0;                                       //Slots handed out so far, including released ones
+    private ItemSearchIndex searchIndex;                        //Search index the stored items are listed in, if any
+
+    /**
+     * Stores a copy of an item in a new slot.
+     *
+     * @param item
+     * @param departmentId
+     * @return the slot
+     */
+    public synchronized int add(Item item, int departmentId){
+        int slot = free.nextSetBit(0);
+        if (slot != -1) {
+            free.clear(slot);
+        } else {
+            if (size == ids.length) {
+                grow();
+            }
+            slot = size++;
+        }
+        ids[slot] = item.getID();
+        quantities[slot] = item.getQuantity();
+        departmentIds[slot] = departmentId;
+        versions[slot] = item.getVersion();
+        putName(slot, item.getName());
+        descriptions[slot] = item.getDescription();
+        modified.set(slot, item.isModified());
+        changedColumns[slot] = (byte) item.getChangedColumns();
+        quantityDeltas[slot] = item.getQuantityDelta();
+        return slot;
+    }
+
+    /**
+     * Frees a slot for reuse. Only for items that nothing refers to anymore.
+     *
+     * @param slot
+     */
+    public synchronized void release(int slot){
+        putName(slot, null);
+        descriptions[slot] = null;
+        modified.clear(slot);
+        changedColumns[slot] = 0;
+        free.set(slot);
+    }
+
+    /**
+     * Forgets every item, used when all content is reloaded.
+     */
+    public synchronized void clear(){
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(descriptions, 0, size, null);
+        modified.clear();
+        Arrays.fill(changedColumns, 0, size, (byte) 0);
+        free.clear();
+        strings.clear();
+        size = 0;
+    }
+
+    /**
+     * @param slot
+     * @return the Item view of the slot
+     */
+    public Item view(int slot){
+        return new StoredItem(this, slot);
+    }
+
+    /**
+     * @return number of slots in use
+     */
+    public synchronized int size(){
+        return size - free.cardinality();
+    }
+
+    /**
+     * @param slot
+     * @return int
+     */
+    synchronized int getId(int slot){
+        return ids[slot];
+    }
+
+    /**
+     * @param slot
+     * @param id
+     */
+    synchronized void setId(int slot, int id){
+        if (ids[slot] != id) {
+            ids[slot] = id;
+            markChanged(slot, Item.ALL_COLUMNS);
+        }
+    }
+
+    /**
+     * @param slot
+     * @return int
+     */
+    synchronized int getQuantity(int slot){
+        return quantities[slot];
+    }
+
+    /**
+     * @param slot
+     * @param quantity
+     * @return true if the quantity was different
+     */
+    synchronized boolean setQuantity(int slot, int quantity){
+        if (quantities[slot] == quantity) {
+            return false;
+        }
+        quantities[slot] = quantity;
+        markChanged(slot, Item.QUANTITY);
+        return true;
+    }
+
+    /**
+     * @param slot
+     * @param delta
+     */
+    synchronized void adjust(int slot, int delta){
+        if ((changedColumns[slot] & Item.QUANTITY) == 0) {
+            changedColumns[slot] |= Item.QUANTITY | Item.ADJUSTED;
+            quantityDeltas[slot] = 0;
+        }
+        quantities[slot] += delta;
+        quantityDeltas[slot] += delta;
+        modified.set(slot);
+    }
+
+    /**
+     * @param slot
+     * @param quantity
+     */
+    synchronized void setSavedQuantity(int slot, int quantity){
+        quantities[slot] = quantity;
+    }
+
+    /**
+     * @param slot
+     * @return boolean
+     */
+    synchronized boolean isAdjustedOnly(int slot){
+        return changedColumns[slot] == (Item.QUANTITY | Item.ADJUSTED);
+    }
+
+    /**
+     * @param slot
+     * @return int
+     */
+    synchronized int getQuantityDelta(int slot){
+        return (changedColumns[slot] & Item.ADJUSTED) != 0 ? quantityDeltas[slot] : 0;
+    }
+
+    /**
+     * @param slot
+     * @return int
+     */
+    synchronized int getChangedColumns(int slot){
+        return changedColumns[slot];
+    }
+
+    /**
+     * @param slot
+     * @return int
+     */
+    synchronized int getDepartmentId(int slot){
+        return departmentIds[slot];
+    }
+
+    /**
+     * @param slot
+     * @param departmentId
+     */
+    synchronized void setDepartmentId(int slot, int departmentId){
+        departmentIds[slot] = departmentId;
+    }
+
+    /**
+     * @param slot
+     * @return long
+     */
+    synchronized long getVersion(int slot){
+        return versions[slot];
+    }
+
+    /**
+     * @param slot
+     * @param version
+     */
+    synchronized void setVersion(int slot, long version){
+        versions[slot] = version;
+    }
+
+    /**
+     * @param slot
+     * @return String
+     */
+    synchronized String getName(int slot){
+        return names[slot];
+    }
+
+    /**
+     * @param slot
+     * @param name
+     * @return true if the name was different
+     */
+    synchronized boolean setName(int slot, String name){
+        if (Objects.equals(names[slot], name)) {
+            return false;
+        }
+        putName(slot, name);
+        markChanged(slot, Item.NAME);
+        return true;
+    }
+
+    /**
+     * @param slot
+     * @return String
+     */
+    synchronized String getDescription(int slot){
+        return descriptions[slot];
+    }
+
+    /**
+     * @param slot
+     * @param description
+     * @return true if the description was different
+     */
+    synchronized boolean setDescription(int slot, String description){
+        if (Objects.equals(descriptions[slot], description)) {
+            return false;
+        }
+        descriptions[slot] = description;
+        markChanged(slot, Item.DESCRIPTION);
+        return true;
+    }
+
+    /**
+     * @param slot
+     * @return boolean
+     */
+    synchronized boolean isModified(int slot){
+        return modified.get(slot);
+    }
+
+    /**
+     * @param slot
+     */
+    synchronized void markSaved(int slot){
+        modified.clear(slot);
+        changedColumns[slot] = 0;
+    }
+
+    /**
+     * @param slot
+     */
+    synchronized void markMoved(int slot){
+        markChanged(slot, Item.DEPARTMENT);
+    }
+
+    /**
+     * Marks a slot as modified and adds column bits. Writing the quantity as
+     * a value replaces any delta.
+     *
+     * @param slot
+     * @param columns
+     */
+    private void markChanged(int slot, int columns){
+        modified.set(slot);
+        if ((columns & Item.QUANTITY) != 0) {
+            changedColumns[slot] &= ~Item.ADJUSTED;
+        }
+        changedColumns[slot] |= columns;
+    }
+
+    /**
+     * Applies a change another client made, without marking the slot as
+     * modified.
+     *
+     * @param slot
+     * @param quantity
+     * @param name
+     * @param description
+     * @param version
+     */
+    synchronized void applyRemote(int slot, int quantity, String name, String description, long version){
+        quantities[slot] = quantity;
+        putName(slot, name);
+        descriptions[slot] = description;
+        versions[slot] = version;
+    }
+
+    /**
+     * Puts the unsaved changes of a slot on top of a row another client
+     * changed, see Item.rebase().
+     *
+     * @param slot
+     * @param quantity
+     * @param name
+     * @param description
+     * @param version
+     */
+    synchronized void rebase(int slot, int quantity, String name, String description, long version){
+        int columns = changedColumns[slot];
+        if ((columns & Item.ADJUSTED) != 0) {
+            quantities[slot] = quantity + quantityDeltas[slot];
+        } else if ((columns & Item.QUANTITY) == 0) {
+            quantities[slot] = quantity;
+        }
+        if ((columns & Item.NAME) == 0) {
+            putName(slot, name);
+        }
+        if ((columns & Item.DESCRIPTION) == 0) {
+            descriptions[slot] = description;
+        }
+        versions[slot] = version;
+    }
+
+    /**
+     * Puts back a copy made by Item.saveState(), see Item.restore().
+     *
+     * @param slot
+     * @param state
+     */
+    synchronized void restore(int slot, Item.State state){
+        ids[slot] = state.id;
+        quantities[slot] = state.quantity;
+        putName(slot, state.name);
+        descriptions[slot] = state.description;
+        modified.set(slot, state.modified);
+        changedColumns[slot] = (byte) state.changedColumns;
+        quantityDeltas[slot] = state.quantityDelta;
+        versions[slot] = state.version;
+    }
+
+    /**
+     * @return ItemSearchIndex
+     */
+    ItemSearchIndex getSearchIndex(){
+        return searchIndex;
+    }
+
+    /**
+     * @param searchIndex
+     */
+    void setSearchIndex(ItemSearchIndex searchIndex){
+        this.searchIndex = searchIndex;
+    }
+
+    /**
+     * Sets the name of a slot to the shared copy of the string, and lets go
+     * of the name it had.
+     *
+     * @param slot
+     * @param name
+     */
+    private void putName(int slot, String name){
+        String previous = names[slot];
+        if (name != null) {
+            SharedString shared = strings.computeIfAbsent(name, SharedString::new);
+            shared.uses++;
+            name = shared.value;
+        }
+        names[slot] = name;
+        if (previous != null) {
+            SharedString shared = strings.get(previous);
+            if (--shared.uses == 0) {
+                strings.remove(previous);
+            }
+        }
+    }
+
+    /**
+     * Grows every column by half.
+     */
+    private void grow(){
+        int capacity = ids.length + (ids.length >> 1);
+        ids = Arrays.copyOf(ids, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        departmentIds = Arrays.copyOf(departmentIds, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        quantityDeltas = Arrays.copyOf(quantityDeltas, capacity);
+        changedColumns = Arrays.copyOf(changedColumns, capacity);
+        names = Arrays.copyOf(names, capacity);
+        descriptions = Arrays.copyOf(descriptions, capacity);
+    }
+
+    /**
+     * A shared name and the number of slots using it.
+     */
+    private static class SharedString {
+        private final String value;         //The copy every slot with this name refers to
+        private int uses = 0;               //Slots using it
+
+        private SharedString(String value){
+            this.value = value;
+        }
+    }
+}
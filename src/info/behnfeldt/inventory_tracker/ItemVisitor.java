@@ -0,0 +1,24 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.sql.SQLException;
+
+/**
+ * Name:   ItemVisitor.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Receives items one at a time from a single pass over a department or the
+ * whole inventory, see Department.forEachItem() and ItemRepository.streamAll().
+ * The item passed in is only valid during the call; a visitor that needs an
+ * item afterwards must copy what it needs.
+ */
+public interface ItemVisitor {
+
+    /**
+     * @param departmentId
+     * @param item
+     * @throws SQLException to stop the pass
+     */
+    void visit(int departmentId, Item item) throws SQLException;
+}
@@ -0,0 +1,838 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Name:   MySqlRepository.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Department and item storage in the MySQL database from the config file.
+ * Every call borrows its own connection from the pool, or uses the one of the
+ * transaction a save opened with Repositories.inTransaction(). Inserts,
+ * updates and deletes are sent as JDBC batches. Updates only set the columns
+ * that changed, with one batch for each set of changed columns. A quantity adjustment is
+ * written as quantity = quantity + delta, so two clients adjusting the same
+ * item both count, and the resulting quantity is read back afterwards.
+ *
+ * Every update also checks the row version the department or item was read
+ * with. A row another client changed or deleted in the meantime updates
+ * nothing, which shows up in the update counts of the batch. Only those rows
+ * are read again and handed to the ConflictResolver, and the ones it keeps are
+ * written again with their new version. They are read with FOR UPDATE, so
+ * inside a transaction no other client can change them again before the
+ * retry.
+ * Searches use the FULLTEXT index on the item name and description created
+ * by SchemaMigrator.
+ */
+public class MySqlRepository implements DepartmentRepository, ItemRepository {
+
+    private static final int READ_BACK_CHUNK = 500;                     //Most IDs in one query reading rows back
+    private static final int MAX_SAVE_ROUNDS = 3;                       //Times a row that keeps conflicting is written in one save
+    private static final int VERSION_CHECK = 1 << 8;                    //Added to the column bits of an update that checks the version
+    private SQLHandler sqlhandler = new SQLHandler();                   //Used to borrow a database connection
+    private ConflictResolver conflictResolver = sqlhandler.getConflictResolver();   //Decides about rows another client changed
+    private InventoryLoader inventoryLoader = new InventoryLoader();     //Used to load all departments and items at once
+
+    @Override
+    public ArrayList<Department> findAll(boolean withItems) throws SQLException {
+        return withItems ? inventoryLoader.loadAll() : inventoryLoader.loadDepartments();
+    }
+
+    @Override
+    public void insertDepartments(ArrayList<Department> departments) throws SQLException {
+        Connection connector = null;
+        PreparedStatement statement = null;
+        ResultSet rs = null;
+        try {
+            connector = sqlhandler.getConnection();
+            statement = connector.prepareStatement("INSERT INTO departments (name, description) VALUES (?,'')",
+                    Statement.RETURN_GENERATED_KEYS);
+            for (Department department : departments) {
+                statement.setString(1, department.getName());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+
+            //Generated keys come back in the order the rows were added to the batch
+            rs = statement.getGeneratedKeys();
+            for (Department department : departments) {
+                if (!rs.next()) {
+                    throw new SQLException("Database returned fewer generated keys than departments inserted.");
+                }
+                Repositories.remember(department);
+                department.setID(rs.getInt(1));
+                department.setVersion(1);
+            }
+        } finally {
+            sqlhandler.closeConnections(connector, statement, rs);
+        }
+    }
+
+    @Override
+    public ArrayList<Department> updateDepartments(ArrayList<Department> departments) throws SQLException {
+        ArrayList<Department> unsaved = new ArrayList<>();
+        Connection connector = null;
+        try {
+            connector = sqlhandler.getConnection();
+            ArrayList<Department> pending = departments;
+            for (int round = 1; !pending.isEmpty(); round++) {
+                ArrayList<Department> conflicts = writeDepartments(connector, pending);
+                if (conflicts.isEmpty()) {
+                    break;
+                }
+                if (round == MAX_SAVE_ROUNDS) {
+                    unsaved.addAll(conflicts);
+                    break;
+                }
+                pending = resolveDepartments(connector, conflicts, unsaved);
+            }
+        } finally {
+            sqlhandler.closeConnections(connector, null, null);
+        }
+        return unsaved;
+    }
+
+    /**
+     * Writes the changed columns of the departments, one batch for each set of
+     * changed columns.
+     *
+     * @param connector
+     * @param departments
+     * @return the departments whose row was changed or deleted by another client
+     * @throws SQLException
+     */
+    private ArrayList<Department> writeDepartments(Connection connector, ArrayList<Department> departments) throws SQLException {
+        //Departments that only had items added or removed have nothing of their own to write
+        LinkedHashMap<Integer, ArrayList<Department>> byColumns = new LinkedHashMap<>();
+        for (Department department : departments) {
+            int columns = department.getChangedColumns();
+            if (columns == 0) {
+                continue;
+            }
+            if (department.getVersion() != 0) {
+                columns |= VERSION_CHECK;
+            }
+            byColumns.computeIfAbsent(columns, k -> new ArrayList<>()).add(department);
+        }
+
+        ArrayList<Department> conflicts = new ArrayList<>();
+        for (Map.Entry<Integer, ArrayList<Department>> group : byColumns.entrySet()) {
+            int columns = group.getKey();
+            try (PreparedStatement statement = connector.prepareStatement(departmentUpdateSql(columns))) {
+                for (Department department : group.getValue()) {
+                    int index = 1;
+                    if ((columns & Department.NAME) != 0) {
+                        statement.setString(index++, department.getName());
+                    }
+                    if ((columns & Department.INFO) != 0) {
+                        statement.setString(index++, department.getInfo() == null ? "" : department.getInfo());
+                    }
+                    statement.setInt(index++, department.getID());
+                    if ((columns & VERSION_CHECK) != 0) {
+                        statement.setLong(index, department.getVersion());
+                    }
+                    statement.addBatch();
+                }
+                int[] counts = statement.executeBatch();
+                for (int i = 0; i < group.getValue().size(); i++) {
+                    Department department = group.getValue().get(i);
+                    int count = i < counts.length ? counts[i] : Statement.SUCCESS_NO_INFO;
+                    if (count == 0) {
+                        conflicts.add(department);
+                        continue;
+                    }
+                    Repositories.remember(department);
+                    if (count > 0 && (columns & VERSION_CHECK) != 0) {
+                        department.setVersion(department.getVersion() + 1);     //The update trigger adds one
+                    } else {
+                        department.setVersion(0);
+                    }
+                }
+            }
+        }
+        return conflicts;
+    }
+
+    /**
+     * Reads the conflicting departments again and lets the conflict resolver
+     * decide what happens to each of them.
+     *
+     * @param connector
+     * @param conflicts
+     * @param unsaved gets the departments that are left for the next save
+     * @return the departments to write again
+     * @throws SQLException
+     */
+    private ArrayList<Department> resolveDepartments(Connection connector, ArrayList<Department> conflicts,
+                                                     ArrayList<Department> unsaved) throws SQLException {
+        HashMap<Integer, Department> current = new HashMap<>();
+        for (int start = 0; start < conflicts.size(); start += READ_BACK_CHUNK) {
+            int end = Math.min(start + READ_BACK_CHUNK, conflicts.size());
+            try (PreparedStatement statement = connector.prepareStatement(
+                    selectById("SELECT id, name, description, version FROM departments", end - start) + " FOR UPDATE")) {
+                for (int i = start; i < end; i++) {
+                    statement.setInt(i - start + 1, conflicts.get(i).getID());
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        Department department = InventoryLoader.readDepartment(rs);
+                        current.put(department.getID(), department);
+                    }
+                }
+            }
+        }
+
+        ArrayList<Department> retry = new ArrayList<>();
+        for (Department department : conflicts) {
+            Department row = current.get(department.getID());
+            boolean keepLocal = conflictResolver.keepLocal(department, row);
+            Repositories.remember(department);
+            if (row == null) {
+                if (keepLocal) {
+                    //The same as delta sync: the department and everything in it are inserted again on the next save
+                    department.setID(0);
+                    if (department.hasLoadedItems()) {
+                        for (Item item : department.getAllItems()) {
+                            Repositories.remember(item);
+                            item.setID(0);
+                        }
+                    }
+                    unsaved.add(department);
+                }
+                //Otherwise there is nothing left to save, the next delta sync removes the department
+            } else if (keepLocal) {
+                department.rebase(row.getName(), row.getInfo(), row.getVersion());
+                retry.add(department);
+            } else {
+                department.applyRemote(row.getName(), row.getInfo(), row.getVersion());
+            }
+        }
+        System.out.println(conflicts.size() + " departments were changed by another client since they were read");
+        return retry;
+    }
+
+    /**
+     * @param columns Department column bits, plus VERSION_CHECK
+     * @return the UPDATE for departments that changed the given columns, name before description
+     */
+    private static String departmentUpdateSql(int columns){
+        ArrayList<String> assignments = new ArrayList<>();
+        if ((columns & Department.NAME) != 0) {
+            assignments.add("name = ?");
+        }
+        if ((columns & Department.INFO) != 0) {
+            assignments.add("description = ?");
+        }
+        return "UPDATE departments SET " + String.join(", ", assignments) + " WHERE id = ?"
+                + ((columns & VERSION_CHECK) != 0 ? " AND version = ?" : "");
+    }
+
+    /**
+     * @param select the SELECT without a WHERE clause
+     * @param count number of IDs
+     * @return the SELECT limited to count IDs
+     */
+    static String selectById(String select, int count){
+        StringBuilder sql = new StringBuilder(select).append(" WHERE id IN (?");
+        for (int i = 1; i < count; i++) {
+            sql.append(",?");
+        }
+        return sql.append(")").toString();
+    }
+
+    @Override
+    public void deleteDepartments(ArrayList<Department> departments) throws SQLException {
+        Connection connector = null;
+        PreparedStatement statement = null;
+        try {
+            connector = sqlhandler.getConnection();
+            //Items are removed by the cascading foreign key on items.department_id
+            statement = connector.prepareStatement("DELETE FROM departments WHERE id = ?");
+            for (Department department : departments) {
+                //If the department ID equals 0, then there is nothing to delete in the database
+                if (department.getID() != 0) {
+                    statement.setInt(1, department.getID());
+                    statement.addBatch();
+                }
+            }
+            statement.executeBatch();
+        } finally {
+            sqlhandler.closeConnections(connector, statement, null);
+        }
+    }
+
+    /**
+     * Replaces what saves do with rows another client changed since they
+     * were read.
+     *
+     * @param conflictResolver
+     */
+    public void setConflictResolver(ConflictResolver conflictResolver){
+        this.conflictResolver = conflictResolver;
+    }
+
+    @Override
+    public ArrayList<Item> findByDepartment(int departmentId) throws SQLException {
+        ArrayList<Item> items = new ArrayList<>();
+        Connection connector = null;
+        PreparedStatement statement = null;
+        ResultSet rs = null;
+        try {
+            connector = sqlhandler.getConnection();
+            statement = connector.prepareStatement("SELECT id, quantity, name, description, version FROM items WHERE department_id = ? ORDER BY id");
+            statement.setInt(1, departmentId);
+            rs = statement.executeQuery();
+            //While there is results from the database, add a new Item instance to the items array.
+            while (rs.next()) {
+                items.add(InventoryLoader.readItem(rs));
+            }
+        } finally {
+            sqlhandler.closeConnections(connector, statement, rs);
+        }
+        return items;
+    }
+
+    @Override
+    public void streamByDepartment(int departmentId, ItemVisitor visitor) throws SQLException {
+        Connection connector = null;
+        PreparedStatement statement = null;
+        ResultSet rs = null;
+        try {
+            connector = sqlhandler.getConnection();
+            statement = InventoryLoader.prepareStreaming(connector,
+                    "SELECT id, quantity, name, description, version FROM items WHERE department_id = ? ORDER BY id");
+            statement.setInt(1, departmentId);
+            rs = statement.executeQuery();
+            //Rows arrive one at a time from the driver, nothing is kept after the visitor returns
+            while (rs.next()) {
+                InventoryLoader.checkCancelled();
+                visitor.visit(departmentId, InventoryLoader.readItem(rs));
+            }
+        } finally {
+            sqlhandler.closeConnections(connector, statement, rs);
+        }
+    }
+
+    @Override
+    public void streamAll(ItemVisitor visitor) throws SQLException {
+        Connection connector = null;
+        PreparedStatement statement = null;
+        ResultSet rs = null;
+        try {
+            connector = sqlhandler.getConnection();
+            statement = InventoryLoader.prepareStreaming(connector,
+                    "SELECT id, department_id, quantity, name, description, version FROM items ORDER BY department_id, id");
+            rs = statement.executeQuery();
+            while (rs.next()) {
+                InventoryLoader.checkCancelled();
+                visitor.visit(rs.getInt("department_id"),
+                        InventoryLoader.readItem(rs));
+            }
+        } finally {
+            sqlhandler.closeConnections(connector, statement, rs);
+        }
+    }
+
+    @Override
+    public ArrayList<Item> findPage(int departmentId, int afterId, int limit) throws SQLException {
+        ArrayList<Item> items = new ArrayList<>();
+        Connection connector = null;
+        PreparedStatement statement = null;
+        ResultSet rs = null;
+        try {
+            connector = sqlhandler.getConnection();
+            //Served by idx_items_department (department_id, id), so the page starts with an index seek
+            statement = connector.prepareStatement("SELECT id, quantity, name, description, version FROM items " +
+                    "WHERE department_id = ? AND id > ? ORDER BY id LIMIT ?");
+            statement.setInt(1, departmentId);
+            statement.setInt(2, afterId);
+            statement.setInt(3, limit);
+            rs = statement.executeQuery();
+            while (rs.next()) {
+                items.add(InventoryLoader.readItem(rs));
+            }
+        } finally {
+            sqlhandler.closeConnections(connector, statement, rs);
+        }
+        return items;
+    }
+
+    @Override
+    public int countByDepartment(int departmentId) throws SQLException {
+        Connection connector = null;
+        PreparedStatement statement = null;
+        ResultSet rs = null;
+        try {
+            connector = sqlhandler.getConnection();
+            statement = connector.prepareStatement("SELECT COUNT(*) FROM items WHERE department_id = ?");
+            statement.setInt(1, departmentId);
+            rs = statement.executeQuery();
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            sqlhandler.closeConnections(connector, statement, rs);
+        }
+    }
+
+    @Override
+    public int findIdAt(int departmentId, int offset) throws SQLException {
+        if (offset < 0) {
+            return 0;
+        }
+        Connection connector = null;
+        PreparedStatement statement = null;
+        ResultSet rs = null;
+        try {
+            connector = sqlhandler.getConnection();
+            //Only walks the index entries, no rows are read
+            statement = connector.prepareStatement("SELECT id FROM items WHERE department_id = ? ORDER BY id LIMIT 1 OFFSET ?");
+            statement.setInt(1, departmentId);
+            statement.setInt(2, offset);
+            rs = statement.executeQuery();
+            return rs.next() ? rs.getInt(1) : Integer.MAX_VALUE;
+        } finally {
+            sqlhandler.closeConnections(connector, statement, rs);
+        }
+    }
+
+    @Override
+    public HashMap<Integer, Integer> findDepartmentIds(Collection<Integer> itemIds) throws SQLException {
+        HashMap<Integer, Integer> departmentIds = new HashMap<>();
+        ArrayList<Integer> ids = new ArrayList<>(itemIds);
+        Connection connector = null;
+        try {
+            connector = sqlhandler.getConnection();
+            for (int start = 0; start < ids.size(); start += READ_BACK_CHUNK) {
+                int end = Math.min(start + READ_BACK_CHUNK, ids.size());
+                try (PreparedStatement statement = connector.prepareStatement(
+                        selectById("SELECT id, department_id FROM items", end - start))) {
+                    for (int i = start; i < end; i++) {
+                        statement.setInt(i - start + 1, ids.get(i));
+                    }
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            departmentIds.put(rs.getInt("id"), rs.getInt("department_id"));
+                        }
+                    }
+                }
+            }
+        } finally {
+            sqlhandler.closeConnections(connector, null, null);
+        }
+        return departmentIds;
+    }
+
+    @Override
+    public LinkedHashMap<Item, Integer> searchItems(SearchQuery query, int offset, int limit) throws SQLException {
+        LinkedHashMap<Item, Integer> items = new LinkedHashMap<>();
+        if (query.isEmpty()) {
+            return items;
+        }
+        //Every word must be the start of a word in the name or description, the same as the in memory search
+        StringBuilder against = new StringBuilder();
+        for (String word : query.getWords()) {
+            against.append('+').append(word).append("* ");
+        }
+        String match = "MATCH (name, description) AGAINST (? IN BOOLEAN MODE)";
+        String sql = "SELECT id, department_id, quantity, name, description, version FROM items WHERE 1 = 1" +
+                (query.getWords().isEmpty() ? "" : " AND " + match) +
+                (query.hasQuantityRange() ? " AND quantity BETWEEN ? AND ?" : "") +
+                (query.getWords().isEmpty() ? " ORDER BY quantity, id" : " ORDER BY " + match + " DESC, id") +
+                " LIMIT ? OFFSET ?";
+
+        Connection connector = null;
+        PreparedStatement statement = null;
+        ResultSet rs = null;
+        try {
+            connector = sqlhandler.getConnection();
+            statement = connector.prepareStatement(sql);
+            int parameter = 1;
+            if (!query.getWords().isEmpty()) {
+                statement.setString(parameter++, against.toString().trim());
+            }
+            if (query.hasQuantityRange()) {
+                statement.setInt(parameter++, query.getMinQuantity());
+                statement.setInt(parameter++, query.getMaxQuantity());
+            }
+            if (!query.getWords().isEmpty()) {
+                statement.setString(parameter++, against.toString().trim());
+            }
+            statement.setInt(parameter++, limit);
+            statement.setInt(parameter, offset);
+            rs = statement.executeQuery();
+            while (rs.next()) {
+                items.put(InventoryLoader.readItem(rs),
+                        rs.getInt("department_id"));
+            }
+        } finally {
+            sqlhandler.closeConnections(connector, statement, rs);
+        }
+        return items;
+    }
+
+    @Override
+    public void insertItems(HashMap<Item, Department> items) throws SQLException {
+        Connection connector = null;
+        PreparedStatement statement = null;
+        ResultSet rs = null;
+        try {
+            connector = sqlhandler.getConnection();
+            ArrayList<Item> insertOrder = new ArrayList<>(items.keySet());
+            statement = connector.prepareStatement("INSERT INTO items (description, department_id, quantity, name) VALUES (?,?,?,?)",
+                    Statement.RETURN_GENERATED_KEYS);
+            for (Item item : insertOrder) {
+                statement.setString(1, item.getDescription());
+                statement.setInt(2, items.get(item).getID());
+                statement.setInt(3, item.getQuantity());
+                statement.setString(4, item.getName());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+
+            //Map the generated keys back in batch order
+            rs = statement.getGeneratedKeys();
+            for (Item item : insertOrder) {
+                if (!rs.next()) {
+                    throw new SQLException("Database returned fewer generated keys than items inserted.");
+                }
+                Repositories.remember(item);
+                item.setID(rs.getInt(1));
+                item.setVersion(1);
+            }
+        } finally {
+            sqlhandler.closeConnections(connector, statement, rs);
+        }
+    }
+
+    @Override
+    public ArrayList<Item> updateItems(HashMap<Item, Department> items) throws SQLException {
+        ArrayList<Item> unsaved = new ArrayList<>();
+        Connection connector = null;
+        try {
+            connector = sqlhandler.getConnection();
+            ArrayList<Item> pending = new ArrayList<>(items.keySet());
+            for (int round = 1; !pending.isEmpty(); round++) {
+                SavedItems saved = new SavedItems();
+                ArrayList<Item> conflicts = writeItems(connector, pending, items, saved);
+                saved.apply();
+                if (conflicts.isEmpty()) {
+                    break;
+                }
+                if (round == MAX_SAVE_ROUNDS) {
+                    unsaved.addAll(conflicts);
+                    break;
+                }
+                pending = resolveItems(connector, conflicts, items, unsaved);
+            }
+        } finally {
+            sqlhandler.closeConnections(connector, null, null);
+        }
+        return unsaved;
+    }
+
+    /**
+     * Writes one partition of a bulk save for BulkItemWriter, on a thread of
+     * its own. The items are only read: the versions and quantities they end
+     * up with are added to saved, and rows another client changed are
+     * returned without being resolved.
+     *
+     * @param pending
+     * @param items the department of each item
+     * @param saved gets the versions and quantities to set once the partition is committed
+     * @return the items whose row was changed or deleted by another client
+     * @throws SQLException
+     */
+    ArrayList<Item> writePartition(ArrayList<Item> pending, HashMap<Item, Department> items, SavedItems saved) throws SQLException {
+        Connection connector = null;
+        try {
+            connector = sqlhandler.getConnection();
+            return writeItems(connector, pending, items, saved);
+        } finally {
+            sqlhandler.closeConnections(connector, null, null);
+        }
+    }
+
+    /**
+     * Writes the changed columns of the items. Items that changed the same
+     * columns share one statement, so a save sends a few batches of only what
+     * changed. The items themselves are not changed here.
+     *
+     * @param connector
+     * @param pending
+     * @param items the department of each item
+     * @param saved gets the version and read back quantity of every item written
+     * @return the items whose row was changed or deleted by another client
+     * @throws SQLException
+     */
+    private ArrayList<Item> writeItems(Connection connector, ArrayList<Item> pending, HashMap<Item, Department> items,
+                                       SavedItems saved) throws SQLException {
+        LinkedHashMap<Integer, ArrayList<Item>> byColumns = new LinkedHashMap<>();
+        ArrayList<Item> adjusted = new ArrayList<>();
+        for (Item item : pending) {
+            int columns = item.getChangedColumns();
+            if ((columns & Item.ALL_COLUMNS) == 0) {
+                continue;
+            }
+            //A delta can be added to whatever the row holds, so only other changes need the version checked
+            if (item.getVersion() != 0 && columns != (Item.QUANTITY | Item.ADJUSTED)) {
+                columns |= VERSION_CHECK;
+            }
+            byColumns.computeIfAbsent(columns, k -> new ArrayList<>()).add(item);
+        }
+
+        ArrayList<Item> conflicts = new ArrayList<>();
+        for (Map.Entry<Integer, ArrayList<Item>> group : byColumns.entrySet()) {
+            int columns = group.getKey();
+            try (PreparedStatement statement = connector.prepareStatement(itemUpdateSql(columns))) {
+                for (Item item : group.getValue()) {
+                    int index = 1;
+                    if ((columns & Item.NAME) != 0) {
+                        statement.setString(index++, item.getName());
+                    }
+                    if ((columns & Item.QUANTITY) != 0) {
+                        //Adjusted items only add their delta, so adjustments other clients saved at the same time are kept
+                        statement.setInt(index++, (columns & Item.ADJUSTED) != 0 ? item.getQuantityDelta() : item.getQuantity());
+                    }
+                    if ((columns & Item.DEPARTMENT) != 0) {
+                        statement.setInt(index++, items.get(item).getID());
+                    }
+                    if ((columns & Item.DESCRIPTION) != 0) {
+                        statement.setString(index++, item.getDescription());
+                    }
+                    statement.setInt(index++, item.getID());
+                    if ((columns & VERSION_CHECK) != 0) {
+                        statement.setLong(index, item.getVersion());
+                    }
+                    statement.addBatch();
+                }
+                //An update count of 0 means the row no longer has the version the item was read with
+                int[] counts = statement.executeBatch();
+                for (int i = 0; i < group.getValue().size(); i++) {
+                    Item item = group.getValue().get(i);
+                    int count = i < counts.length ? counts[i] : Statement.SUCCESS_NO_INFO;
+                    if (count == 0) {
+                        conflicts.add(item);
+                    } else if ((columns & Item.ADJUSTED) != 0) {
+                        adjusted.add(item);
+                    } else if (count > 0 && (columns & VERSION_CHECK) != 0) {
+                        saved.add(item, item.getVersion() + 1);     //The update trigger adds one
+                    } else {
+                        saved.add(item, 0);
+                    }
+                }
+            }
+        }
+        if (!adjusted.isEmpty()) {
+            readSavedQuantities(connector, adjusted, saved);
+        }
+        return conflicts;
+    }
+
+    /**
+     * Reads the conflicting items again and lets the conflict resolver decide
+     * what happens to each of them.
+     *
+     * @param connector
+     * @param conflicts
+     * @param items the department of each item
+     * @param unsaved gets the items that are left for the next save
+     * @return the items to write again
+     * @throws SQLException
+     */
+    private ArrayList<Item> resolveItems(Connection connector, ArrayList<Item> conflicts, HashMap<Item, Department> items,
+                                         ArrayList<Item> unsaved) throws SQLException {
+        HashMap<Integer, Item> current = new HashMap<>();
+        HashMap<Integer, Integer> currentDepartments = new HashMap<>();
+        for (int start = 0; start < conflicts.size(); start += READ_BACK_CHUNK) {
+            int end = Math.min(start + READ_BACK_CHUNK, conflicts.size());
+            try (PreparedStatement statement = connector.prepareStatement(
+                    selectById("SELECT id, department_id, quantity, name, description, version FROM items", end - start)
+                            + " FOR UPDATE")) {
+                for (int i = start; i < end; i++) {
+                    statement.setInt(i - start + 1, conflicts.get(i).getID());
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        Item item = InventoryLoader.readItem(rs);
+                        current.put(item.getID(), item);
+                        currentDepartments.put(item.getID(), rs.getInt("department_id"));
+                    }
+                }
+            }
+        }
+
+        ArrayList<Item> retry = new ArrayList<>();
+        for (Item item : conflicts) {
+            Item row = current.get(item.getID());
+            boolean keepLocal = conflictResolver.keepLocal(item, row);
+            Repositories.remember(item);
+            if (row == null) {
+                if (keepLocal) {
+                    //The same as delta sync: the item is inserted again on the next save
+                    item.setID(0);
+                    unsaved.add(item);
+                }
+                //Otherwise there is nothing left to save, the next delta sync removes the item
+                continue;
+            }
+            if (keepLocal) {
+                item.rebase(row.getQuantity(), row.getName(), row.getDescription(), row.getVersion());
+            } else {
+                item.markSaved();
+                item.applyRemote(row.getQuantity(), row.getName(), row.getDescription(), row.getVersion());
+            }
+            //The item stays in the department it is shown in
+            if (currentDepartments.get(row.getID()) != items.get(item).getID()) {
+                item.markMoved();
+            }
+            if (item.isModified()) {
+                retry.add(item);
+            }
+        }
+        System.out.println(conflicts.size() + " items were changed by another client since they were read");
+        return retry;
+    }
+
+    /**
+     * Builds the UPDATE for items that changed the given columns, in the order
+     * writeItems() sets the parameters: name, quantity, department, description,
+     * the ID and the version last.
+     *
+     * @param columns Item column bits, plus Item.ADJUSTED to add to the quantity and VERSION_CHECK
+     * @return String
+     */
+    private static String itemUpdateSql(int columns){
+        ArrayList<String> assignments = new ArrayList<>();
+        if ((columns & Item.NAME) != 0) {
+            assignments.add("name = ?");
+        }
+        if ((columns & Item.QUANTITY) != 0) {
+            assignments.add((columns & Item.ADJUSTED) != 0 ? "quantity = quantity + ?" : "quantity = ?");
+        }
+        if ((columns & Item.DEPARTMENT) != 0) {
+            assignments.add("department_id = ?");
+        }
+        if ((columns & Item.DESCRIPTION) != 0) {
+            assignments.add("description = ?");
+        }
+        return "UPDATE items SET " + String.join(", ", assignments) + " WHERE id = ?"
+                + ((columns & VERSION_CHECK) != 0 ? " AND version = ?" : "");
+    }
+
+    /**
+     * Reads back the quantities and versions adjusted items ended up with in
+     * the database.
+     *
+     * @param connector
+     * @param adjusted
+     * @param saved
+     * @throws SQLException
+     */
+    private void readSavedQuantities(Connection connector, ArrayList<Item> adjusted, SavedItems saved) throws SQLException {
+        HashMap<Integer, Item> byId = new HashMap<>();
+        for (Item item : adjusted) {
+            byId.put(item.getID(), item);
+        }
+        for (int start = 0; start < adjusted.size(); start += READ_BACK_CHUNK) {
+            int end = Math.min(start + READ_BACK_CHUNK, adjusted.size());
+            try (PreparedStatement statement = connector.prepareStatement(
+                    selectById("SELECT id, quantity, version FROM items", end - start))) {
+                for (int i = start; i < end; i++) {
+                    statement.setInt(i - start + 1, adjusted.get(i).getID());
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        saved.add(byId.get(rs.getInt("id")), rs.getLong("version"), rs.getInt("quantity"));
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void deleteItems(ArrayList<Item> items) throws SQLException {
+        Connection connector = null;
+        PreparedStatement statement = null;
+        try {
+            connector = sqlhandler.getConnection();
+            statement = connector.prepareStatement("DELETE FROM items WHERE id = ?");
+            for (Item item : items) {
+                if (item.getID() != 0) {
+                    statement.setInt(1, item.getID());
+                    statement.addBatch();
+                }
+            }
+            statement.executeBatch();
+        } finally {
+            sqlhandler.closeConnections(connector, statement, null);
+        }
+    }
+
+    /**
+     * Versions and quantities the database ended up with for the items that
+     * were written, kept until apply() sets them on the items. A bulk save
+     * only applies them once the transaction of the partition was committed,
+     * on the thread that owns the items. Inside a transaction the items are
+     * remembered first, so a rollback puts the old values back.
+     */
+    static class SavedItems {
+        private final ArrayList<Item> items = new ArrayList<>();    //Items that were written
+        private long[] versions = new long[16];                     //Version of each item, 0 when unknown
+        private int[] quantities = new int[16];                     //Quantity of each adjusted item
+        private final BitSet adjusted = new BitSet();               //Items whose quantity was read back
+
+        /**
+         * @param item
+         * @param version
+         */
+        void add(Item item, long version){
+            if (items.size() == versions.length) {
+                versions = Arrays.copyOf(versions, versions.length * 2);
+                quantities = Arrays.copyOf(quantities, quantities.length * 2);
+            }
+            versions[items.size()] = version;
+            items.add(item);
+        }
+
+        /**
+         * @param item
+         * @param version
+         * @param quantity the quantity read back after adding the adjustment
+         */
+        void add(Item item, long version, int quantity){
+            adjusted.set(items.size());
+            add(item, version);
+            quantities[items.size() - 1] = quantity;
+        }
+
+        /**
+         * @return number of items written
+         */
+        int size(){
+            return items.size();
+        }
+
+        /**
+         * Sets the versions and quantities on the items.
+         */
+        void apply(){
+            for (int i = 0; i < items.size(); i++) {
+                Item item = items.get(i);
+                Repositories.remember(item);
+                if (adjusted.get(i)) {
+                    item.setSavedQuantity(quantities[i]);
+                }
+                item.setVersion(versions[i]);
+            }
+        }
+    }
+}
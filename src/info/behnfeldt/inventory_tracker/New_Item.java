@@ -37,6 +37,8 @@ public class New_Item extends JDialog{
     private JComboBox departmentSelectionList;      //Combo box to select an existing department where the item is stored
     private DefaultComboBoxModel departmentData = new DefaultComboBoxModel();   //Variable that holds the department selection data
     private ArrayList<Department> departments;      //Array to hold existing departments passed to this form from the parent object
+    private Item savedItem;                         //The item that was added or edited, null until the user confirms
+    private Department savedDepartment;             //The department the saved item is in
 
     /**
      * The New_Item() initializer for when it is required that a new
@@ -62,7 +64,10 @@ public class New_Item extends JDialog{
                 //Check and make sure that there is a description for the item and a name inputted by the user
                 if(!itemDescriptionInput.getText().equals("") && !itemNameInput.getText().equals("")) {
                     //Add a new item instance to the selected department
-                    departments.get(selectedDepartment).addItem(new Item(quantityInputted, nameInputted, descriptionInputted));
+                    Department department = departments.get(selectedDepartment);
+                    department.addItem(new Item(quantityInputted, nameInputted, descriptionInputted));
+                    savedItem = department.getItem(department.getAllItems().size() - 1);   //The stored item, a copy in compact mode
+                    savedDepartment = department;
                     dispose(); //Close the add item form
                 } else {
                     JOptionPane.showMessageDialog(null, "Error: Name or Description is blank.");
@@ -164,6 +169,8 @@ public class New_Item extends JDialog{
                         departments.get(selectedDepartment).addItem(currentItem);                   //Add item to the new department
                         departments.get(originalDepartmentIndex).removeItem(departmentItemIndex);   //Remove item from the original department
                     }
+                    savedItem = currentItem;
+                    savedDepartment = departments.get(selectedDepartment);
                     dispose();  //Close the Edit Item form
                 } else {
                     JOptionPane.showMessageDialog(null, "Error: Name or Description is blank.");
@@ -259,6 +266,20 @@ public class New_Item extends JDialog{
         itemDescriptionInput.setText(descriptionInputted);
     }
 
+    /**
+     * @return the item that was added or edited, or null if the form was closed without confirming
+     */
+    public Item getSavedItem(){
+        return savedItem;
+    }
+
+    /**
+     * @return the department the saved item is in
+     */
+    public Department getSavedDepartment(){
+        return savedDepartment;
+    }
+
     /**
      * Loads the departments that can be selected into the
      * combo box.
@@ -0,0 +1,203 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Name:   PagedItemSource.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Reads the items of one department a page at a time while the user scrolls
+ * the item list, instead of loading every item of the department at once.
+ * Pages are read with keyset pagination: a page starts after the last ID of
+ * the page before it, so reading a page deep into a department costs the same
+ * as reading the first one. When the user jumps to a page whose starting ID
+ * is not known yet, the ID is looked up once through the department index.
+ *
+ * Only a bounded window of pages stays in memory, the least recently used
+ * page is dropped when the window is full. Every page that is read also
+ * schedules the pages after it, so scrolling down normally finds the next
+ * rows already loaded.
+ *
+ * All methods must be called on the Swing thread. Pages are read on the
+ * database thread and handed back to the Swing thread, which then calls the
+ * listener with the range of rows that arrived.
+ */
+public class PagedItemSource {
+
+    private final int departmentId;                                         //Department the items are read from
+    private final int size;                                                 //Number of items in the department when opened
+    private final int pageSize;                                             //Items per page
+    private final int prefetch;                                             //Pages read ahead of the one being shown
+    private final int maxPages;                                             //Most pages kept in memory at once
+    private final LinkedHashMap<Integer, ArrayList<Item>> pages =
+            new LinkedHashMap<>(16, 0.75f, true);                           //Loaded pages by number, least recently used first
+    private final TreeMap<Integer, Integer> startKeys = new TreeMap<>();    //ID each page starts after, by page number
+    private final HashSet<Integer> requested = new HashSet<>();             //Pages being read right now
+    private PageListener listener;                                          //Told when rows have arrived
+    private boolean closed = false;                                         //Marks when the source is no longer shown
+
+    /**
+     * Main initializer for the PagedItemSource class. Use open() to count the
+     * department's items and read the first page before showing it.
+     *
+     * @param departmentId
+     * @param size
+     * @param pageSize
+     * @param prefetch
+     * @param firstPage
+     */
+    private PagedItemSource(int departmentId, int size, int pageSize, int prefetch, ArrayList<Item> firstPage){
+        this.departmentId = departmentId;
+        this.size = size;
+        this.pageSize = pageSize;
+        this.prefetch = prefetch;
+        this.maxPages = prefetch * 2 + 4;       //The visible page, read ahead in both directions, and some slack
+        startKeys.put(0, 0);
+        store(0, firstPage);
+    }
+
+    /**
+     * Counts the department's items and reads the first page. Must run on
+     * the database thread.
+     *
+     * @param departmentId
+     * @param pageSize
+     * @param prefetch
+     * @return PagedItemSource
+     * @throws SQLException
+     */
+    public static PagedItemSource open(int departmentId, int pageSize, int prefetch) throws SQLException {
+        ItemRepository repository = Repositories.items();
+        int size = repository.countByDepartment(departmentId);
+        ArrayList<Item> firstPage = repository.findPage(departmentId, 0, pageSize);
+        return new PagedItemSource(departmentId, size, Math.max(1, pageSize), Math.max(0, prefetch), firstPage);
+    }
+
+    /**
+     * @param listener
+     */
+    public void setListener(PageListener listener){
+        this.listener = listener;
+    }
+
+    /**
+     * @return int
+     */
+    public int getSize(){
+        return size;
+    }
+
+    /**
+     * Returns the item at a row, or null if its page has not been read yet.
+     * Asking for a row that is not loaded schedules its page, and every row
+     * asked for schedules the pages after it.
+     *
+     * @param index
+     * @return Item
+     */
+    public Item getItem(int index){
+        int page = index / pageSize;
+        for (int ahead = 1; ahead <= prefetch; ahead++) {
+            request(page + ahead);
+        }
+        ArrayList<Item> rows = pages.get(page);
+        if (rows == null) {
+            request(page);
+            return null;
+        }
+        int offset = index % pageSize;
+        //A page can come back short if items were deleted by another client since the department was counted
+        return offset < rows.size() ? rows.get(offset) : null;
+    }
+
+    /**
+     * Stops handing pages to the listener, used when a different department
+     * is shown. Reads already queued finish and are thrown away.
+     */
+    public void close(){
+        closed = true;
+        pages.clear();
+    }
+
+    /**
+     * @return number of pages in memory
+     */
+    public int getLoadedPages(){
+        return pages.size();
+    }
+
+    /**
+     * Queues a page on the database thread unless it is loaded, being read,
+     * or past the end of the department.
+     *
+     * @param page
+     */
+    private void request(int page){
+        if (closed || page < 0 || page * pageSize >= size || pages.containsKey(page) || !requested.add(page)) {
+            return;
+        }
+        Integer known = startKeys.get(page);
+        CompletableFuture<ArrayList<Item>> read = DatabaseExecutor.submit(() -> {
+            ItemRepository repository = Repositories.items();
+            //The page starts after the last item of the page before it, looked up through the index when unknown
+            int afterId = known != null ? known : repository.findIdAt(departmentId, page * pageSize - 1);
+            return repository.findPage(departmentId, afterId, pageSize);
+        });
+        read.whenCompleteAsync((rows, error) -> {
+            requested.remove(page);
+            if (closed) {
+                return;
+            }
+            if (error != null) {
+                System.out.println("An error occurred trying to read page " + page + " of department " + departmentId);
+                error.printStackTrace();
+                return;
+            }
+            store(page, rows);
+            if (listener != null) {
+                int first = page * pageSize;
+                listener.rowsLoaded(first, Math.min(size, first + pageSize) - 1);
+            }
+        }, DatabaseExecutor.edt());
+    }
+
+    /**
+     * Keeps a page that was read, remembers where the next page starts and
+     * drops the least recently used pages past the window.
+     *
+     * @param page
+     * @param rows
+     */
+    private void store(int page, ArrayList<Item> rows){
+        pages.put(page, rows);
+        if (rows.size() == pageSize) {
+            startKeys.put(page + 1, rows.get(rows.size() - 1).getID());
+        }
+        Iterator<Map.Entry<Integer, ArrayList<Item>>> iterator = pages.entrySet().iterator();
+        while (pages.size() > maxPages && iterator.hasNext()) {
+            if (iterator.next().getKey() != page) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Told on the Swing thread when a page of rows has been read.
+     */
+    public interface PageListener {
+        /**
+         * @param firstRow
+         * @param lastRow
+         */
+        void rowsLoaded(int firstRow, int lastRow);
+    }
+}
@@ -0,0 +1,283 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Name:   PendingChanges.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * The 6 save lists of the main form, the departments and items that still need
+ * written to the storage, and the save that writes them:
+ * 1. Departments that need updated
+ * 2. Departments that need inserted
+ * 3. Departments that need deleted
+ * 4. Items that need updated
+ * 5. Items that need inserted
+ * 6. Items that need deleted
+ *
+ * The main form adds deleted departments and items to the lists as they are
+ * deleted, collect() fills in the new and modified ones before a save, and
+ * save() writes all of them in one transaction. Each list is only cleared once
+ * it has been written, so rows a failed save left behind are written again by
+ * the next one. The benchmarks save through this class as well.
+ */
+public class PendingChanges {
+
+    private final ArrayList<Department> modifiedDepartments = new ArrayList<>();   //Departments that need updated in the database
+    private final ArrayList<Department> newDepartments = new ArrayList<>();        //Departments that need inserted in the database
+    private final ArrayList<Department> deletedDepartments = new ArrayList<>();    //Departments that need deleted from the database
+    private final HashMap<Item, Department> modifiedItems = new HashMap<>();       //Items that need updated in the database
+    private final HashMap<Item, Department> newItems = new HashMap<>();            //Items that need inserted in the database
+    private final ArrayList<Item> deletedItems = new ArrayList<>();                //Items that need deleted from the database
+    private final int bulkWriteThreads;                                            //Connections a large save writes items on, 0 is off
+    private final int bulkPartitionSize;                                           //Most items written in one bulk partition
+
+    /**
+     * @param bulkWriteThreads
+     * @param bulkPartitionSize
+     */
+    public PendingChanges(int bulkWriteThreads, int bulkPartitionSize){
+        this.bulkWriteThreads = bulkWriteThreads;
+        this.bulkPartitionSize = bulkPartitionSize;
+    }
+
+    /**
+     * Rebuilds the new and modified lists from the departments. Only the items
+     * of the dirty departments are looked at, a change touched no other. The
+     * deleted lists are kept, they are filled as things are deleted.
+     *
+     * @param departments every department in memory
+     * @param dirtyDepartments departments a change touched since the last save
+     * @return false when there is nothing to write
+     */
+    public boolean collect(Collection<Department> departments, Set<Department> dirtyDepartments){
+        modifiedDepartments.clear();
+        newDepartments.clear();
+        modifiedItems.clear();
+        newItems.clear();
+
+        for (Department department : departments) {
+            //A department without an ID has never been in the database
+            if (department.getID() != 0) {
+                if (department.isModified()) {
+                    modifiedDepartments.add(department);
+                }
+            } else {
+                newDepartments.add(department);
+            }
+
+            if (!department.hasLoadedItems() || !dirtyDepartments.contains(department)) {
+                continue;
+            }
+            for (Item item : department.getAllItems()) {
+                //The department is stored with the item to retrieve the item's department_id
+                if (item.getID() != 0) {
+                    if (item.isModified()) {
+                        modifiedItems.put(item, department);
+                    }
+                } else {
+                    newItems.put(item, department);
+                }
+            }
+        }
+        return !isEverythingSaved();
+    }
+
+    /**
+     * Each save list is only cleared once it has been written, so empty lists
+     * mean the memory matches the database again.
+     *
+     * @return boolean
+     */
+    public boolean isEverythingSaved(){
+        return modifiedDepartments.isEmpty() && newDepartments.isEmpty() && deletedDepartments.isEmpty()
+                && modifiedItems.isEmpty() && newItems.isEmpty() && deletedItems.isEmpty();
+    }
+
+    /**
+     * Prerequisite: collect()
+     *
+     * Writes the 6 save lists to the storage in one transaction, so either all of the changes are saved or none of
+     * them are. The in-memory objects are only marked as saved once the transaction has been committed. When it is
+     * rolled back, Repositories puts back everything the storage changed on them, generated IDs, row versions and
+     * rows rebased onto another client's changes alike, and the lists are left as they were so the next save writes
+     * them again. Errors are shown to the user. Runs on the database thread.
+     *
+     * With 'bulk_write_threads' set, a save of nothing but modified items that fill more than one bulk partition
+     * is written by the BulkItemWriter instead, on several connections at once. Each partition is committed in a
+     * transaction of its own, so such a save is all or nothing per partition only: the items of a partition that
+     * failed stay on the list, are kept in the journal and are reported, while the other partitions are saved. A
+     * save that also inserts, changes or deletes anything else is always written in the one transaction, so no part
+     * of it can be committed while another part fails.
+     */
+    public void save(){
+        ArrayList<Department> unsavedDepartments = new ArrayList<>();
+        HashSet<Item> unsavedItems = new HashSet<>();
+        int failedItems = 0;
+
+        if (isBulk()) {
+            //Only the MySQL backend is used here, it implements both repositories
+            BulkItemWriter.Report report = new BulkItemWriter((MySqlRepository) Repositories.items(),
+                    bulkWriteThreads, bulkPartitionSize).write(modifiedItems);
+            System.out.println(report);
+            unsavedItems.addAll(report.getUnsaved());
+            unsavedItems.addAll(report.getFailed());
+            failedItems = report.getFailed().size();
+            if (failedItems > 0) {
+                DatabaseExecutor.showError("Error: " + failedItems + " modified items were not saved and are kept for "
+                        + "the next save. " + String.join(" ", report.getErrors()));
+            }
+        } else {
+            try {
+                Repositories.inTransaction(() -> {
+                    unsavedDepartments.clear();
+                    unsavedItems.clear();
+                    write(unsavedDepartments, unsavedItems);
+                }, () -> {});
+            } catch (Repositories.CommitFailedException e) {
+                e.printStackTrace();
+                DatabaseExecutor.showError("Error: The database did not confirm the save, it may or may not have been written. "
+                        + "Reload before saving again, otherwise new rows may be added twice. " + e.getMessage());
+                return;
+            } catch (SQLException e) {
+                e.printStackTrace();
+                DatabaseExecutor.showError("Error: Changes not saved, nothing was written to the database! " + e.getMessage());
+                return;
+            }
+            System.out.println("Changes committed to the database");
+        }
+
+        //Departments and items another client deleted stay on the lists, they are inserted again on the next save
+        for (Department department : modifiedDepartments) {
+            if (!unsavedDepartments.contains(department)) {
+                department.markSaved();
+            }
+        }
+        modifiedDepartments.retainAll(unsavedDepartments);
+        for (Department department : newDepartments) {
+            department.markSaved();
+        }
+        newDepartments.clear();
+        for (Item item : modifiedItems.keySet()) {
+            if (!unsavedItems.contains(item)) {
+                item.markSaved();
+            }
+        }
+        modifiedItems.keySet().retainAll(unsavedItems);
+        for (Item item : newItems.keySet()) {
+            item.markSaved();
+        }
+        newItems.clear();
+        //The storage deleted the items of deleted departments along with them, so they only need removed from memory
+        for (Department department : deletedDepartments) {
+            department.removeAllItems();
+        }
+        deletedDepartments.clear();
+        Department.releaseItems(deletedItems);
+        deletedItems.clear();
+
+        if (!unsavedDepartments.isEmpty()) {
+            DatabaseExecutor.showError(unsavedDepartments.size() + " departments were deleted or changed by another user "
+                    + "and are not saved yet. Save again to keep your changes.");
+        }
+        if (unsavedItems.size() > failedItems) {
+            DatabaseExecutor.showError(unsavedItems.size() - failedItems + " items were deleted or changed by another user "
+                    + "and are not saved yet. Save again to keep your changes.");
+        }
+    }
+
+    /**
+     * The bulk writer is only used when the save holds nothing but modified
+     * items, more than one partition of them, on MySQL.
+     *
+     * @return boolean
+     */
+    private boolean isBulk(){
+        return !Repositories.isEmbedded() && bulkWriteThreads > 1 && modifiedItems.size() > bulkPartitionSize
+                && modifiedDepartments.isEmpty() && newDepartments.isEmpty() && deletedDepartments.isEmpty()
+                && newItems.isEmpty() && deletedItems.isEmpty();
+    }
+
+    /**
+     * Prerequisite: save()
+     *
+     * Sends the 6 save lists to the storage inside the save transaction. New departments are inserted before any
+     * item is written, so the storage has set their generated IDs by the time the items of those departments are
+     * inserted or moved into them. Items are deleted before the departments, which take their remaining items with
+     * them. Whatever the storage changes on the objects is undone by Repositories after a rollback, so the
+     * transaction can run again after a deadlock.
+     *
+     * @param unsavedDepartments gets the departments a conflict with another user left unsaved
+     * @param unsavedItems gets the items a conflict with another user left unsaved
+     * @throws SQLException
+     */
+    private void write(ArrayList<Department> unsavedDepartments, HashSet<Item> unsavedItems) throws SQLException {
+        if (!modifiedDepartments.isEmpty()) {
+            unsavedDepartments.addAll(Repositories.departments().updateDepartments(modifiedDepartments));
+        }
+        if (!newDepartments.isEmpty()) {
+            Repositories.departments().insertDepartments(newDepartments);
+        }
+        if (!modifiedItems.isEmpty()) {
+            unsavedItems.addAll(Repositories.items().updateItems(modifiedItems));
+        }
+        if (!newItems.isEmpty()) {
+            Repositories.items().insertItems(newItems);
+        }
+        if (!deletedItems.isEmpty()) {
+            Repositories.items().deleteItems(deletedItems);
+        }
+        if (!deletedDepartments.isEmpty()) {
+            Repositories.departments().deleteDepartments(deletedDepartments);
+        }
+    }
+
+    /**
+     * @return ArrayList<Department>
+     */
+    public ArrayList<Department> getModifiedDepartments(){
+        return modifiedDepartments;
+    }
+
+    /**
+     * @return ArrayList<Department>
+     */
+    public ArrayList<Department> getNewDepartments(){
+        return newDepartments;
+    }
+
+    /**
+     * @return ArrayList<Department>
+     */
+    public ArrayList<Department> getDeletedDepartments(){
+        return deletedDepartments;
+    }
+
+    /**
+     * @return HashMap<Item, Department>
+     */
+    public HashMap<Item, Department> getModifiedItems(){
+        return modifiedItems;
+    }
+
+    /**
+     * @return HashMap<Item, Department>
+     */
+    public HashMap<Item, Department> getNewItems(){
+        return newItems;
+    }
+
+    /**
+     * @return ArrayList<Item>
+     */
+    public ArrayList<Item> getDeletedItems(){
+        return deletedItems;
+    }
+}
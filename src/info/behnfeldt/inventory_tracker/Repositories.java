@@ -0,0 +1,213 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+/**
+ * Name:   Repositories.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Hands out the department and item repositories of the backend selected
+ * with 'backend' in the config file:
+ * -mysql (default): the MySQL database from the config file
+ * -embedded: an in-process store kept in the file set by 'embedded_file'
+ *
+ * inTransaction() runs several repository calls as one transaction of the
+ * selected backend, so they are saved together or not at all. The repositories
+ * call remember() before they change a department or item in memory inside a
+ * transaction, so a rollback puts the objects back the way they were.
+ */
+public class Repositories {
+
+    private static DepartmentRepository departmentRepository;  //Shared department storage
+    private static ItemRepository itemRepository;              //Shared item storage
+    private static final int DEADLOCK_RETRIES = 3;             //Times a transaction is run again after a deadlock
+    private static final long DEADLOCK_BACKOFF = 50;            //Milliseconds to wait before the first retry, doubled for each one
+    private static boolean embedded;                            //Marks when the embedded backend was selected
+    private static EmbeddedRepository embeddedRepository;       //The embedded backend, null when using MySQL
+    private static SQLHandler sqlhandler;                       //Opens the transactions of the MySQL backend
+    private static final ThreadLocal<ArrayList<Runnable>> restores = new ThreadLocal<>();  //Undo the in-memory changes of the transaction open on each thread
+
+    /**
+     * @return DepartmentRepository
+     */
+    public static synchronized DepartmentRepository departments(){
+        create();
+        return departmentRepository;
+    }
+
+    /**
+     * @return ItemRepository
+     */
+    public static synchronized ItemRepository items(){
+        create();
+        return itemRepository;
+    }
+
+    /**
+     * When the embedded backend is in use. The MySQL only features, schema
+     * migrations and delta sync, are skipped for it.
+     *
+     * @return boolean
+     */
+    public static synchronized boolean isEmbedded(){
+        create();
+        return embedded;
+    }
+
+    /**
+     * Runs the work as one transaction: everything it writes is committed
+     * together, or rolled back together when anything fails. With MySQL the
+     * work runs on a single connection and costs one commit however many rows
+     * it writes. When the database rolled the transaction back because of a
+     * deadlock, the work is run again after a short wait.
+     *
+     * Every department and item a repository changed in memory is put back
+     * after a rollback, before rolledBack is called.
+     *
+     * @param work the repository calls to make, must be safe to run again
+     * @param rolledBack called after every rollback, to undo what the work itself changed in memory
+     * @throws SQLException the error of the last attempt, after it was rolled back
+     * @throws CommitFailedException when MySQL did not confirm the commit, the changes may or may not be saved
+     */
+    public static void inTransaction(Work work, Runnable rolledBack) throws SQLException {
+        //Also runs on the bulk writer threads, which must not read the config file at the same time
+        boolean embedded = isEmbedded();
+        for (int attempt = 0; ; attempt++) {
+            ArrayList<Runnable> undo = new ArrayList<>();
+            restores.set(undo);
+            try {
+                if (embedded) {
+                    embeddedRepository.beginTransaction();
+                } else {
+                    sqlhandler.beginTransaction();
+                }
+                work.run();
+                if (embedded) {
+                    embeddedRepository.commitTransaction();
+                } else {
+                    try {
+                        sqlhandler.commitTransaction();
+                    } catch (SQLException e) {
+                        throw new CommitFailedException(e);
+                    }
+                }
+                return;
+            } catch (SQLException | RuntimeException e) {
+                if (embedded) {
+                    embeddedRepository.rollbackTransaction();
+                } else {
+                    sqlhandler.rollbackTransaction();
+                }
+                for (int i = undo.size() - 1; i >= 0; i--) {
+                    undo.get(i).run();
+                }
+                rolledBack.run();
+                //A commit that may have gone through is never run again, it could write its rows twice
+                if (!(e instanceof SQLException) || e instanceof CommitFailedException
+                        || !SQLHandler.isDeadlock((SQLException) e) || attempt == DEADLOCK_RETRIES) {
+                    throw e;
+                }
+                System.out.println("Transaction deadlocked, running it again: " + e.getMessage());
+                try {
+                    Thread.sleep(DEADLOCK_BACKOFF << attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw (SQLException) e;
+                }
+            } finally {
+                restores.remove();
+            }
+        }
+    }
+
+    /**
+     * Remembers an item before a repository changes it in memory. When the
+     * transaction open on this thread is rolled back, the item is put back as
+     * it is now. Does nothing outside a transaction.
+     *
+     * @param item
+     */
+    static void remember(Item item){
+        ArrayList<Runnable> undo = restores.get();
+        if (undo != null) {
+            Item.State state = item.saveState();
+            undo.add(() -> item.restore(state));
+        }
+    }
+
+    /**
+     * Remembers a department before a repository changes it in memory, see
+     * remember(Item).
+     *
+     * @param department
+     */
+    static void remember(Department department){
+        ArrayList<Runnable> undo = restores.get();
+        if (undo != null) {
+            Department.State state = department.saveState();
+            undo.add(() -> department.restore(state));
+        }
+    }
+
+    /**
+     * Uses the given embedded store instead of the backend of the config file,
+     * for the benchmarks and tests.
+     *
+     * @param repository
+     */
+    static synchronized void useEmbedded(EmbeddedRepository repository){
+        embedded = true;
+        embeddedRepository = repository;
+        departmentRepository = repository;
+        itemRepository = repository;
+    }
+
+    /**
+     * Creates the repositories for the configured backend the first time they
+     * are needed. Both backends implement both interfaces with one object.
+     */
+    private static void create(){
+        if (departmentRepository != null) {
+            return;
+        }
+        sqlhandler = new SQLHandler();
+        embedded = sqlhandler.getBackend().equals("embedded");
+        if (embedded) {
+            embeddedRepository = new EmbeddedRepository(sqlhandler.getEmbeddedFile());
+            departmentRepository = embeddedRepository;
+            itemRepository = embeddedRepository;
+        } else {
+            MySqlRepository mysql = new MySqlRepository();
+            departmentRepository = mysql;
+            itemRepository = mysql;
+        }
+    }
+
+    /**
+     * Thrown by inTransaction() when MySQL did not confirm the commit, for
+     * example because the connection broke while committing. The server may
+     * have committed the transaction or not, so the objects are put back as
+     * unsaved but the rows may already be in the database.
+     */
+    public static class CommitFailedException extends SQLException {
+        /**
+         * @param cause
+         */
+        private CommitFailedException(SQLException cause){
+            super("The database did not confirm the commit: " + cause.getMessage(), cause.getSQLState(), cause.getErrorCode(), cause);
+        }
+    }
+
+    /**
+     * Repository calls run by inTransaction().
+     */
+    public interface Work {
+        /**
+         * @throws SQLException
+         */
+        void run() throws SQLException;
+    }
+}
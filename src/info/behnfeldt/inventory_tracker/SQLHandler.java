@@ -13,18 +13,56 @@ import java.util.Scanner;
  * This class is the interface between the application and the database. When you need to run a query, you
  * should only be passing a query statement in the form of a String to the runQuery() method which will return a
  * ResultSet that can be parsed by the class requesting the information.
+ *
+ * Connections are borrowed from a shared ConnectionPool through getConnection(). Closing a borrowed
+ * connection (or passing it to closeConnections()) returns it to the pool for the next caller.
+ *
+ * A save runs in one transaction: beginTransaction() binds a connection to the calling thread, every
+ * getConnection() on that thread hands out the same connection and closeConnections() leaves it open, until
+ * commitTransaction() or rollbackTransaction() ends the transaction and returns it to the pool.
 */
 public class SQLHandler {
 
     private String configName = "config";               //Name of the configuration file needed
     private String[] lineData;                          //Used to initialize variables set by the configuration file
     private static String driver = "jdbc:mysql://";     //Defines that the driver will be using the JDBC MySQL driver
+    private static String urlOptions = "?rewriteBatchedStatements=true";    //Lets the driver send a batch as multi-row statements
     private static String ip;                           //Stores the config for the database IP address
     private static String database;                     //Stores the config for the database name we are using
     private static String username;                     //Stores the config for the database username
     private static String password;                     //Stores the config for the database password
     private static File config;                         //Stores the file we are parsing
     private static Scanner scanner;                     //Scanner to read the config file
+    private static int poolSize = 4;                    //Stores the config for the most pooled connections open at once
+    private static long poolTimeout = 10000;            //Stores the config for how long to wait on a pooled connection (ms)
+    private static long poolIdleTimeout = 300000;       //Stores the config for how long a pooled connection may sit idle (ms)
+    private static long poolMaxLifetime = 1800000;      //Stores the config for how long a pooled connection may live (ms)
+    private static long poolLeakThreshold = 60000;      //Stores the config for how long a connection may be borrowed (ms)
+    private static ConnectionPool pool;                 //Shared pool of database connections
+    private static final ThreadLocal<Connection> transaction = new ThreadLocal<>();     //Connection of the transaction open on each thread
+    private static boolean lazyLoading = false;         //Stores the config for loading department items on demand
+    private static boolean pagedLoading = false;        //Stores the config for reading department items a page at a time
+    private static int pageSize = 200;                  //Stores the config for how many items are read per page
+    private static int pagePrefetch = 2;                //Stores the config for how many pages are read ahead
+    private static int lazyCacheSize = 50;              //Stores the config for how many lazily loaded departments stay in memory
+    private static int syncInterval = 0;                //Stores the config for seconds between delta sync polls, 0 is off
+    private static int syncMaxTransaction = 300;        //Stores the config for the most seconds a transaction of any client stays open
+    private static int syncLogDays = 7;                 //Stores the config for how many days change log entries are kept
+    private static String backend = "mysql";            //Stores the config for where data is stored: mysql or embedded
+    private static String embeddedFile = "inventory.db";    //Stores the config for the embedded database file
+    private static boolean databaseSearch = false;      //Stores the config for running searches in the database
+    private static boolean compactItems = false;        //Stores the config for keeping items in the compact ItemStore
+    private static int importBatchSize = 5000;          //Stores the config for how many items a CSV import inserts at once
+    private static boolean importParallel = false;      //Stores the config for parsing CSV imports on their own thread
+    private static boolean journal = true;              //Stores the config for backing up unsaved changes to a journal file
+    private static String journalFile = "inventory.journal";    //Stores the config for the journal file
+    private static long journalSyncInterval = 200;      //Stores the config for most ms between a journal write and the disk sync
+    private static boolean snapshot = true;             //Stores the config for starting from a local snapshot of the database
+    private static String snapshotFile = "inventory.snapshot";  //Stores the config for the snapshot file
+    private static int undoMemory = 1024;               //Stores the config for the most KB the undo history may hold
+    private static String saveConflicts = "merge";      //Stores the config for rows another client changed: merge or reload
+    private static int bulkWriteThreads = 0;            //Stores the config for connections a large save writes items on, 0 is off
+    private static int bulkPartitionSize = 5000;        //Stores the config for most items written in one bulk partition
 
     /**
      * Initialization method. Begins by trying to read the configuration file 'config' and retrieves
@@ -43,10 +81,40 @@ public class SQLHandler {
                 if (lineData[0].length() != 0) {
                     if(lineData[0].charAt(0) != '#') {
                         switch(lineData[0]){
-                            case "ip" : ip=lineData[1];
-                            case "database" : database=lineData[1];
-                            case "username" : username=lineData[1];
-                            case "password" : password=lineData[1];
+                            case "ip" : ip=lineData[1]; break;
+                            case "database" : database=lineData[1]; break;
+                            case "username" : username=lineData[1]; break;
+                            case "password" : password=lineData[1]; break;
+                            case "pool_size" : poolSize=Integer.parseInt(lineData[1]); break;
+                            case "pool_timeout" : poolTimeout=Long.parseLong(lineData[1]); break;
+                            case "pool_idle_timeout" : poolIdleTimeout=Long.parseLong(lineData[1]); break;
+                            case "pool_max_lifetime" : poolMaxLifetime=Long.parseLong(lineData[1]); break;
+                            case "pool_leak_threshold" : poolLeakThreshold=Long.parseLong(lineData[1]); break;
+                            case "item_loading" :
+                                pagedLoading=lineData[1].equalsIgnoreCase("paged");
+                                lazyLoading=pagedLoading || lineData[1].equalsIgnoreCase("lazy");
+                                break;
+                            case "page_size" : pageSize=Integer.parseInt(lineData[1]); break;
+                            case "page_prefetch" : pagePrefetch=Integer.parseInt(lineData[1]); break;
+                            case "lazy_cache_size" : lazyCacheSize=Integer.parseInt(lineData[1]); break;
+                            case "sync_interval" : syncInterval=Integer.parseInt(lineData[1]); break;
+                            case "sync_max_transaction" : syncMaxTransaction=Integer.parseInt(lineData[1]); break;
+                            case "sync_log_days" : syncLogDays=Integer.parseInt(lineData[1]); break;
+                            case "backend" : backend=lineData[1].toLowerCase(); break;
+                            case "embedded_file" : embeddedFile=lineData[1]; break;
+                            case "search" : databaseSearch=lineData[1].equalsIgnoreCase("database"); break;
+                            case "item_storage" : compactItems=lineData[1].equalsIgnoreCase("compact"); break;
+                            case "import_batch_size" : importBatchSize=Integer.parseInt(lineData[1]); break;
+                            case "import_parallel" : importParallel=Boolean.parseBoolean(lineData[1]); break;
+                            case "journal" : journal=!lineData[1].equalsIgnoreCase("off"); break;
+                            case "journal_file" : journalFile=lineData[1]; break;
+                            case "journal_sync_interval" : journalSyncInterval=Long.parseLong(lineData[1]); break;
+                            case "snapshot" : snapshot=!lineData[1].equalsIgnoreCase("off"); break;
+                            case "snapshot_file" : snapshotFile=lineData[1]; break;
+                            case "undo_memory" : undoMemory=Integer.parseInt(lineData[1]); break;
+                            case "save_conflicts" : saveConflicts=lineData[1].toLowerCase(); break;
+                            case "bulk_write_threads" : bulkWriteThreads=Integer.parseInt(lineData[1]); break;
+                            case "bulk_partition_size" : bulkPartitionSize=Integer.parseInt(lineData[1]); break;
                         }
                     }
                 }
@@ -62,26 +130,357 @@ public class SQLHandler {
      * Provides a String array that provides the necessary information to connect to the database. Must have
      * access to the config file in the first place to get this information. The data can be used on a Connection
      * object. Returns the following:
-     * Index 0: Database driver + ip + port + database name
+     * Index 0: Database driver + ip + port + database name + url options
      * Index 1: Username
      * Index 2: Password
      *
      * @return String[]
      */
     public String[] getConnectionInfo(){
-        return new String[]{driver + ip + "/" + database, username, password};
+        return new String[]{driver + ip + "/" + database + urlOptions, username, password};
+    }
+
+    /**
+     * Borrows a connection from the shared connection pool, creating the pool from the
+     * configuration the first time it is needed. The connection must be closed when the
+     * caller is done with it, normally through closeConnections(). While this
+     * thread has a transaction open, its connection is returned instead.
+     *
+     * @return Connection
+     * @throws SQLException
+     */
+    public Connection getConnection() throws SQLException {
+        Connection bound = transaction.get();
+        return bound != null ? bound : getPool().borrow();
+    }
+
+    /**
+     * Starts a transaction on a connection bound to the calling thread. Every
+     * statement this thread runs until it is committed or rolled back is part
+     * of it.
+     *
+     * @throws SQLException
+     */
+    public void beginTransaction() throws SQLException {
+        if (transaction.get() != null) {
+            throw new SQLException("A transaction is already open on this thread.");
+        }
+        Connection connection = getPool().borrow();
+        try {
+            connection.setAutoCommit(false);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        transaction.set(connection);
+    }
+
+    /**
+     * Commits the transaction of the calling thread. When this throws the
+     * transaction must still be rolled back, but whether the server committed
+     * it is unknown: the connection may have failed after the commit went
+     * through.
+     *
+     * @throws SQLException
+     */
+    public void commitTransaction() throws SQLException {
+        Connection connection = transaction.get();
+        if (connection == null) {
+            throw new SQLException("No transaction is open on this thread.");
+        }
+        connection.commit();
+        endTransaction(connection);
+    }
+
+    /**
+     * Rolls back the transaction of the calling thread, if one is open. A
+     * rollback that fails still ends the transaction, the pool then finds the
+     * connection broken or the server discards the transaction with it.
+     */
+    public void rollbackTransaction(){
+        Connection connection = transaction.get();
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            System.out.println("Rollback failed: " + e.getMessage());
+        }
+        endTransaction(connection);
+    }
+
+    /**
+     * Unbinds the transaction connection and returns it to the pool in
+     * autocommit mode.
+     *
+     * @param connection
+     */
+    private void endTransaction(Connection connection){
+        transaction.remove();
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {}
+        try {
+            connection.close();
+        } catch (SQLException e) {}
+    }
+
+    /**
+     * When the error is a deadlock or a serialization failure, after which the
+     * server has rolled back the whole transaction and running it again is
+     * expected to succeed.
+     *
+     * @param e
+     * @return boolean
+     */
+    public static boolean isDeadlock(SQLException e){
+        for (SQLException next = e; next != null; next = next.getNextException()) {
+            //1213 is the MySQL deadlock error, 40001 the standard SQL state of a serialization failure
+            if (next.getErrorCode() == 1213 || "40001".equals(next.getSQLState())) {
+                return true;
+            }
+        }
+        return e.getCause() instanceof SQLException && e.getCause() != e && isDeadlock((SQLException) e.getCause());
+    }
+
+    /**
+     * @return ConnectionPool
+     */
+    public static synchronized ConnectionPool getPool(){
+        if (pool == null) {
+            pool = new ConnectionPool(driver + ip + "/" + database + urlOptions, username, password, poolSize, poolTimeout,
+                    poolIdleTimeout, poolMaxLifetime, poolLeakThreshold);
+            //Close the pooled connections cleanly when the application exits
+            Runtime.getRuntime().addShutdownHook(new Thread(pool::shutdown));
+        }
+        return pool;
+    }
+
+    /**
+     * Statistics of the connection pool, used for the console and error messages.
+     *
+     * @return String
+     */
+    public String getPoolStats(){
+        return getPool().getStats();
+    }
+
+    /**
+     * When department items should be loaded the first time a department is
+     * opened instead of all at once on startup.
+     *
+     * @return boolean
+     */
+    public boolean isLazyLoading(){
+        return lazyLoading;
     }
 
     /**
-     * Used to close all database connection variables used.
+     * When the item list should read a department's items a page at a time
+     * while scrolling instead of loading them all. Implies lazy loading, the
+     * items are only loaded in full when the department is edited.
+     *
+     * @return boolean
+     */
+    public boolean isPagedLoading(){
+        return pagedLoading;
+    }
+
+    /**
+     * @return int
+     */
+    public int getPageSize(){
+        return pageSize;
+    }
+
+    /**
+     * @return int
+     */
+    public int getPagePrefetch(){
+        return pagePrefetch;
+    }
+
+    /**
+     * @return int
+     */
+    public int getLazyCacheSize(){
+        return lazyCacheSize;
+    }
+
+    /**
+     * Seconds between polls for changes made by other clients. 0 turns delta
+     * sync off.
+     *
+     * @return int
+     */
+    public int getSyncInterval(){
+        return syncInterval;
+    }
+
+    /**
+     * Most seconds a transaction of any client may stay open. Delta sync
+     * waits this long for a missing change log entry before it takes the
+     * entry as rolled back.
+     *
+     * @return int
+     */
+    public int getSyncMaxTransaction(){
+        return syncMaxTransaction;
+    }
+
+    /**
+     * Days change log entries are kept. A client that was away for longer
+     * has to reload.
+     *
+     * @return int
+     */
+    public int getSyncLogDays(){
+        return syncLogDays;
+    }
+
+    /**
+     * @return String
+     */
+    public String getBackend(){
+        return backend;
+    }
+
+    /**
+     * @return String
+     */
+    public String getEmbeddedFile(){
+        return embeddedFile;
+    }
+
+    /**
+     * When the search box should search the database instead of the items in
+     * memory, for inventories too big to keep in memory.
+     *
+     * @return boolean
+     */
+    public boolean isDatabaseSearch(){
+        return databaseSearch;
+    }
+
+    /**
+     * When items should be kept in the column based ItemStore instead of one
+     * object per item, to save memory with very large inventories.
+     *
+     * @return boolean
+     */
+    public boolean isCompactItems(){
+        return compactItems;
+    }
+
+    /**
+     * @return int
+     */
+    public int getImportBatchSize(){
+        return importBatchSize;
+    }
+
+    /**
+     * When a CSV import should parse the file on its own thread while the
+     * previous batch is inserted.
+     *
+     * @return boolean
+     */
+    public boolean isImportParallel(){
+        return importParallel;
+    }
+
+    /**
+     * When unsaved changes are backed up to the journal file so they survive
+     * a crash or a failed save.
+     *
+     * @return boolean
+     */
+    public boolean isJournalEnabled(){
+        return journal;
+    }
+
+    /**
+     * @return String
+     */
+    public String getJournalFile(){
+        return journalFile;
+    }
+
+    /**
+     * @return long
+     */
+    public long getJournalSyncInterval(){
+        return journalSyncInterval;
+    }
+
+    /**
+     * When the application starts from a local snapshot of the database and
+     * then only reads what changed since. Only used with MySQL.
+     *
+     * @return boolean
+     */
+    public boolean isSnapshotEnabled(){
+        return snapshot;
+    }
+
+    /**
+     * @return String
+     */
+    public String getSnapshotFile(){
+        return snapshotFile;
+    }
+
+    /**
+     * Most kilobytes the undo history may hold before the oldest changes are
+     * dropped.
+     *
+     * @return int
+     */
+    public int getUndoMemory(){
+        return undoMemory;
+    }
+
+    /**
+     * What a save does with rows another client changed or deleted since
+     * they were read.
+     *
+     * @return ConflictResolver
+     */
+    public ConflictResolver getConflictResolver(){
+        return saveConflicts.equals("reload") ? ConflictResolver.RELOAD : ConflictResolver.MERGE;
+    }
+
+    /**
+     * Number of pooled connections a save with more than one bulk partition
+     * of modified items writes them on at once. 0 or 1 turns the bulk writer
+     * off.
+     *
+     * @return int
+     */
+    public int getBulkWriteThreads(){
+        return bulkWriteThreads;
+    }
+
+    /**
+     * @return int
+     */
+    public int getBulkPartitionSize(){
+        return bulkPartitionSize;
+    }
+
+    /**
+     * Used to close all database connection variables used. The result set and statement are
+     * closed before the connection so a pooled connection is returned without open statements.
      *
      * @param connection (Connection)
      * @param statements (Statement)
      * @param resultset (ResultSet)
      */
     public void closeConnections(Connection connection, Statement statements, ResultSet resultset){
-        if (connection != null) try{connection.close();} catch (SQLException e) {}
-        if (statements != null) try{ statements.close();} catch (SQLException e) {}
         if (resultset != null) try{ resultset.close();} catch (SQLException e) {}
+        if (statements != null) try{ statements.close();} catch (SQLException e) {}
+        //The connection of an open transaction stays with it until the commit or rollback
+        if (connection != null && connection != transaction.get()) try{connection.close();} catch (SQLException e) {}
     }
 }
@@ -0,0 +1,337 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.sql.*;
+import java.util.ArrayList;
+
+/**
+ * Name:   SchemaMigrator.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Creates and upgrades the tables the application needs when it starts. Each
+ * migration has a version number and is applied once, in order; the versions
+ * that were applied are recorded in the schema_version table. A named lock
+ * keeps two clients that start at the same time from migrating together.
+ *
+ * Databases that were created by hand before this class existed are brought
+ * up to date as well: the first migration only creates missing tables and
+ * the later ones check for existing indexes and keys before adding them.
+ *
+ * Migrations:
+ * 1. departments and items tables
+ * 2. Indexes for the application's queries and a cascading foreign key from
+ *    items to departments; items whose department is gone are moved to a
+ *    new "Recovered" department first
+ * 3. Row versions, change timestamps and tombstones used by DeltaSync
+ * 4. FULLTEXT index on the item name and description for database search
+ * 5. Change log of inserted, updated and deleted rows used by DeltaSync, in
+ *    place of the updated_at timestamps and deleted_rows tombstones
+ */
+public class SchemaMigrator {
+
+    private SQLHandler sqlhandler = new SQLHandler();               //Used to borrow a database connection
+    private ArrayList<Migration> migrations = new ArrayList<>();    //Every migration, in version order
+
+    /**
+     * Main initializer for the SchemaMigrator class. Registers the migrations.
+     */
+    public SchemaMigrator(){
+        migrations.add(new Migration(1, "Create departments and items") {
+            @Override
+            void apply(Connection connector) throws SQLException {
+                execute(connector, "CREATE TABLE IF NOT EXISTS departments (" +
+                        "id INT NOT NULL AUTO_INCREMENT PRIMARY KEY, " +
+                        "name VARCHAR(255) NOT NULL, " +
+                        "description TEXT) ENGINE=InnoDB");
+                execute(connector, "CREATE TABLE IF NOT EXISTS items (" +
+                        "id INT NOT NULL AUTO_INCREMENT PRIMARY KEY, " +
+                        "department_id INT NOT NULL, " +
+                        "quantity INT NOT NULL DEFAULT 0, " +
+                        "name VARCHAR(255) NOT NULL, " +
+                        "description TEXT) ENGINE=InnoDB");
+            }
+        });
+
+        migrations.add(new Migration(2, "Indexes and cascading department delete") {
+            @Override
+            void apply(Connection connector) throws SQLException {
+                //Department.loadItems() filters on department_id, the loaders order by department_id then id
+                if (!indexExists(connector, "items", "idx_items_department")) {
+                    execute(connector, "CREATE INDEX idx_items_department ON items (department_id, id)");
+                }
+                if (!indexExists(connector, "departments", "idx_departments_name")) {
+                    execute(connector, "CREATE INDEX idx_departments_name ON departments (name)");
+                }
+                //Items left behind by departments deleted before the foreign key existed would block adding it
+                if (!foreignKeyExists(connector, "items", "fk_items_department")) {
+                    recoverOrphanedItems(connector);
+                    execute(connector, "ALTER TABLE items ADD CONSTRAINT fk_items_department FOREIGN KEY (department_id) " +
+                            "REFERENCES departments (id) ON DELETE CASCADE");
+                }
+            }
+        });
+
+        migrations.add(new Migration(3, "Row versions and tombstones for delta sync") {
+            @Override
+            void apply(Connection connector) throws SQLException {
+                for (String table : new String[]{"departments", "items"}) {
+                    if (!columnExists(connector, table, "version")) {
+                        execute(connector, "ALTER TABLE " + table + " ADD COLUMN version BIGINT NOT NULL DEFAULT 1");
+                    }
+                    if (!columnExists(connector, table, "updated_at")) {
+                        execute(connector, "ALTER TABLE " + table + " ADD COLUMN updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)");
+                    }
+                    if (!indexExists(connector, table, "idx_" + table + "_updated_at")) {
+                        execute(connector, "CREATE INDEX idx_" + table + "_updated_at ON " + table + " (updated_at)");
+                    }
+                    execute(connector, "DROP TRIGGER IF EXISTS " + table + "_touch");
+                    execute(connector, "CREATE TRIGGER " + table + "_touch BEFORE UPDATE ON " + table + " FOR EACH ROW " +
+                            "SET NEW.version = OLD.version + 1, NEW.updated_at = CURRENT_TIMESTAMP(3)");
+                    execute(connector, "DROP TRIGGER IF EXISTS " + table + "_tombstone");
+                }
+                execute(connector, "CREATE TABLE IF NOT EXISTS deleted_rows (" +
+                        "id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY, " +
+                        "table_name VARCHAR(32) NOT NULL, " +
+                        "row_id INT NOT NULL, " +
+                        "deleted_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3), " +
+                        "INDEX idx_deleted_rows_deleted_at (deleted_at)) ENGINE=InnoDB");
+                //Rows removed by ON DELETE CASCADE do not fire triggers, clients drop those items with their department
+                for (String table : new String[]{"departments", "items"}) {
+                    execute(connector, "CREATE TRIGGER " + table + "_tombstone AFTER DELETE ON " + table + " FOR EACH ROW " +
+                            "INSERT INTO deleted_rows (table_name, row_id) VALUES ('" + table + "', OLD.id)");
+                }
+            }
+        });
+
+        migrations.add(new Migration(4, "Full text index on item names and descriptions") {
+            @Override
+            void apply(Connection connector) throws SQLException {
+                //Used by MySqlRepository.searchItems(), MATCH must name exactly these columns
+                if (!indexExists(connector, "items", "ft_items_name_description")) {
+                    execute(connector, "CREATE FULLTEXT INDEX ft_items_name_description ON items (name, description)");
+                }
+            }
+        });
+
+        migrations.add(new Migration(5, "Change log for delta sync") {
+            @Override
+            void apply(Connection connector) throws SQLException {
+                //updated_at is set when a row is written, not when it is committed, so it can not tell a client what it missed
+                execute(connector, "CREATE TABLE IF NOT EXISTS change_log (" +
+                        "id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY, " +
+                        "table_name VARCHAR(32) NOT NULL, " +
+                        "row_id INT NOT NULL, " +
+                        "deleted TINYINT NOT NULL DEFAULT 0, " +
+                        "changed_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3), " +
+                        "INDEX idx_change_log_changed_at (changed_at)) ENGINE=InnoDB");
+                //The highest entry ID pruned so far, see DeltaSync.prune()
+                execute(connector, "CREATE TABLE IF NOT EXISTS change_log_pruned (" +
+                        "id TINYINT NOT NULL PRIMARY KEY, " +
+                        "pruned_to BIGINT NOT NULL) ENGINE=InnoDB");
+                execute(connector, "INSERT IGNORE INTO change_log_pruned (id, pruned_to) VALUES (1, 0)");
+                for (String table : new String[]{"departments", "items"}) {
+                    execute(connector, "DROP TRIGGER IF EXISTS " + table + "_tombstone");
+                    execute(connector, "DROP TRIGGER IF EXISTS " + table + "_log_insert");
+                    execute(connector, "DROP TRIGGER IF EXISTS " + table + "_log_update");
+                    execute(connector, "DROP TRIGGER IF EXISTS " + table + "_log_delete");
+                    execute(connector, "CREATE TRIGGER " + table + "_log_insert AFTER INSERT ON " + table + " FOR EACH ROW " +
+                            "INSERT INTO change_log (table_name, row_id) VALUES ('" + table + "', NEW.id)");
+                    execute(connector, "CREATE TRIGGER " + table + "_log_update AFTER UPDATE ON " + table + " FOR EACH ROW " +
+                            "INSERT INTO change_log (table_name, row_id) VALUES ('" + table + "', NEW.id)");
+                    execute(connector, "CREATE TRIGGER " + table + "_log_delete AFTER DELETE ON " + table + " FOR EACH ROW " +
+                            "INSERT INTO change_log (table_name, row_id, deleted) VALUES ('" + table + "', OLD.id, 1)");
+                }
+                //Nothing writes tombstones any more, deletes are in the change log
+                execute(connector, "DROP TABLE IF EXISTS deleted_rows");
+            }
+        });
+    }
+
+    /**
+     * Applies every migration newer than the version recorded in the database.
+     *
+     * @return the schema version after migrating
+     * @throws SQLException
+     */
+    public int migrate() throws SQLException {
+        Connection connector = null;
+        PreparedStatement statement = null;
+        ResultSet rs = null;
+        boolean locked = false;
+
+        try {
+            connector = sqlhandler.getConnection();
+
+            //Only one client migrates at a time, the others wait and then find nothing left to do
+            statement = connector.prepareStatement("SELECT GET_LOCK('inventory_tracker_schema', 60)");
+            rs = statement.executeQuery();
+            locked = rs.next() && rs.getInt(1) == 1;
+            rs.close();
+            statement.close();
+            if (!locked) {
+                throw new SQLException("Timed out waiting for another client to finish migrating the schema.");
+            }
+
+            execute(connector, "CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INT NOT NULL PRIMARY KEY, " +
+                    "description VARCHAR(255) NOT NULL, " +
+                    "applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP) ENGINE=InnoDB");
+
+            statement = connector.prepareStatement("SELECT COALESCE(MAX(version), 0) FROM schema_version");
+            rs = statement.executeQuery();
+            rs.next();
+            int current = rs.getInt(1);
+            rs.close();
+            statement.close();
+
+            //MySQL commits every DDL statement on its own, so each migration is recorded as soon as it has been applied
+            for (Migration migration : migrations) {
+                if (migration.version <= current) {
+                    continue;
+                }
+                migration.apply(connector);
+                statement = connector.prepareStatement("INSERT INTO schema_version (version, description) VALUES (?,?)");
+                statement.setInt(1, migration.version);
+                statement.setString(2, migration.description);
+                statement.executeUpdate();
+                statement.close();
+                current = migration.version;
+                System.out.println("Applied schema migration " + migration.version + ": " + migration.description);
+            }
+            return current;
+        } finally {
+            if (locked) {
+                try {
+                    execute(connector, "DO RELEASE_LOCK('inventory_tracker_schema')");
+                } catch (SQLException e) {}
+            }
+            sqlhandler.closeConnections(connector, statement, rs);
+        }
+    }
+
+    /**
+     * Moves items whose department no longer exists into a new department
+     * named "Recovered", so adding the foreign key does not lose them.
+     *
+     * @param connector
+     * @throws SQLException
+     */
+    private static void recoverOrphanedItems(Connection connector) throws SQLException {
+        int orphans;
+        try (PreparedStatement statement = connector.prepareStatement(
+                "SELECT COUNT(*) FROM items WHERE department_id NOT IN (SELECT id FROM departments)");
+             ResultSet rs = statement.executeQuery()) {
+            rs.next();
+            orphans = rs.getInt(1);
+        }
+        if (orphans == 0) {
+            return;
+        }
+
+        int recovered;
+        try (PreparedStatement statement = connector.prepareStatement("INSERT INTO departments (name, description) VALUES (?,?)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            statement.setString(1, "Recovered");
+            statement.setString(2, "Items whose department was deleted before the database was upgraded.");
+            statement.executeUpdate();
+            try (ResultSet rs = statement.getGeneratedKeys()) {
+                rs.next();
+                recovered = rs.getInt(1);
+            }
+        }
+        //An orphan may point at the ID the new department was given, it is moved as well
+        try (PreparedStatement statement = connector.prepareStatement(
+                "UPDATE items SET department_id = ? WHERE department_id NOT IN (SELECT id FROM departments WHERE id <> ?)")) {
+            statement.setInt(1, recovered);
+            statement.setInt(2, recovered);
+            orphans = statement.executeUpdate();
+        }
+        System.out.println("Moved " + orphans + " items without a department to the department 'Recovered'");
+        DatabaseExecutor.showError(orphans + " items whose department was deleted were moved to the new department 'Recovered'.");
+    }
+
+    /**
+     * @param connector
+     * @param sql
+     * @throws SQLException
+     */
+    private static void execute(Connection connector, String sql) throws SQLException {
+        try (Statement statement = connector.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    /**
+     * @param connector
+     * @param table
+     * @param index
+     * @return boolean
+     * @throws SQLException
+     */
+    private static boolean indexExists(Connection connector, String table, String index) throws SQLException {
+        return exists(connector, "SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE() " +
+                "AND table_name = ? AND index_name = ?", table, index);
+    }
+
+    /**
+     * @param connector
+     * @param table
+     * @param column
+     * @return boolean
+     * @throws SQLException
+     */
+    private static boolean columnExists(Connection connector, String table, String column) throws SQLException {
+        return exists(connector, "SELECT 1 FROM information_schema.columns WHERE table_schema = DATABASE() " +
+                "AND table_name = ? AND column_name = ?", table, column);
+    }
+
+    /**
+     * @param connector
+     * @param table
+     * @param constraint
+     * @return boolean
+     * @throws SQLException
+     */
+    private static boolean foreignKeyExists(Connection connector, String table, String constraint) throws SQLException {
+        return exists(connector, "SELECT 1 FROM information_schema.table_constraints WHERE table_schema = DATABASE() " +
+                "AND table_name = ? AND constraint_name = ? AND constraint_type = 'FOREIGN KEY'", table, constraint);
+    }
+
+    /**
+     * @param connector
+     * @param sql
+     * @param first
+     * @param second
+     * @return boolean
+     * @throws SQLException
+     */
+    private static boolean exists(Connection connector, String sql, String first, String second) throws SQLException {
+        try (PreparedStatement statement = connector.prepareStatement(sql)) {
+            statement.setString(1, first);
+            statement.setString(2, second);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * A single numbered change to the schema.
+     */
+    private static abstract class Migration {
+        private final int version;              //Order the migration is applied in
+        private final String description;       //Recorded in schema_version
+
+        private Migration(int version, String description){
+            this.version = version;
+            this.description = description;
+        }
+
+        /**
+         * @param connector
+         * @throws SQLException
+         */
+        abstract void apply(Connection connector) throws SQLException;
+    }
+}
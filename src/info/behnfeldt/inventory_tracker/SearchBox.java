@@ -0,0 +1,199 @@
+package info.behnfeldt.inventory_tracker;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+
+/**
+ * Name:   SearchBox.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Text field that reports every change of its text as a search and shows the
+ * results in a list that drops down below it. The down arrow moves into the
+ * results, enter or a click picks one and escape closes the list. The field
+ * does not search by itself, the listener decides how and hands the results
+ * back through showResults(), which may happen later from a database search.
+ * When there are more results than were shown, scrolling to the bottom of the
+ * list asks the listener for the next page.
+ */
+public class SearchBox extends JTextField {
+
+    private static final int VISIBLE_RESULTS = 12;                          //Result rows shown before the list scrolls
+    private final DefaultListModel<Item> resultData = new DefaultListModel<>();     //Results of the last search
+    private final JList<Item> resultList = new JList<>(resultData);        //Shows the results
+    private final JPopupMenu popup = new JPopupMenu();                      //Drops the results down below the field
+    private Listener listener;                                              //Runs the searches and handles picked results
+    private boolean hasMore = false;                                        //Marks when more results can be asked for
+
+    /**
+     * Main initializer for the SearchBox class.
+     *
+     * @param columns
+     */
+    public SearchBox(int columns){
+        super(columns);
+        setMaximumSize(getPreferredSize());                 //Keeps the field from stretching across the menu bar
+        resultList.setCellRenderer(new ItemCellRenderer());
+        resultList.setVisibleRowCount(VISIBLE_RESULTS);
+        resultList.setFocusable(false);                     //Typing stays in the field while the results are shown
+        popup.setFocusable(false);
+        JScrollPane resultScroll = new JScrollPane(resultList);
+        popup.add(resultScroll);
+
+        //Asks for the next page of results once the list is scrolled to the bottom
+        resultScroll.getVerticalScrollBar().addAdjustmentListener(e -> {
+            JScrollBar bar = resultScroll.getVerticalScrollBar();
+            if (hasMore && listener != null && bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum()) {
+                hasMore = false;
+                listener.searchMore(getText(), resultData.size());
+            }
+        });
+
+        getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchChanged();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchChanged();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                searchChanged();
+            }
+        });
+
+        //Arrow keys move through the results while the focus stays in the field
+        addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                int selected = resultList.getSelectedIndex();
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_DOWN:
+                        if (selected < resultData.size() - 1) {
+                            resultList.setSelectedIndex(selected + 1);
+                            resultList.ensureIndexIsVisible(selected + 1);
+                        }
+                        break;
+                    case KeyEvent.VK_UP:
+                        if (selected > 0) {
+                            resultList.setSelectedIndex(selected - 1);
+                            resultList.ensureIndexIsVisible(selected - 1);
+                        }
+                        break;
+                    case KeyEvent.VK_ENTER:
+                        choose(selected != -1 ? selected : 0);
+                        break;
+                    case KeyEvent.VK_ESCAPE:
+                        popup.setVisible(false);
+                        break;
+                }
+            }
+        });
+
+        resultList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                choose(resultList.locationToIndex(e.getPoint()));
+            }
+        });
+    }
+
+    /**
+     * @param listener
+     */
+    public void setListener(Listener listener){
+        this.listener = listener;
+    }
+
+    /**
+     * Shows the results of a search below the field, or hides the list when
+     * there are none.
+     *
+     * @param results
+     * @param more true if there are more results after these
+     */
+    public void showResults(List<Item> results, boolean more){
+        hasMore = more;
+        resultData.clear();
+        resultData.addAll(results);
+        if (results.isEmpty() || !isShowing()) {
+            popup.setVisible(false);
+            return;
+        }
+        resultList.setSelectedIndex(0);
+        popup.pack();
+        if (!popup.isVisible()) {
+            popup.show(this, 0, getHeight());
+        }
+    }
+
+    /**
+     * Adds the next page of results to the end of the list.
+     *
+     * @param results
+     * @param more true if there are more results after these
+     */
+    public void appendResults(List<Item> results, boolean more){
+        hasMore = more;
+        resultData.addAll(results);
+    }
+
+    /**
+     * Passes the current text to the listener, hiding the results when the
+     * field is empty.
+     */
+    private void searchChanged(){
+        if (getText().isBlank()) {
+            showResults(List.of(), false);
+            return;
+        }
+        if (listener != null) {
+            listener.searchChanged(getText());
+        }
+    }
+
+    /**
+     * @param index
+     */
+    private void choose(int index){
+        if (index < 0 || index >= resultData.size()) {
+            return;
+        }
+        popup.setVisible(false);
+        if (listener != null) {
+            listener.resultChosen(resultData.get(index));
+        }
+    }
+
+    /**
+     * Runs searches for the box and handles the result the user picked.
+     */
+    public interface Listener {
+        /**
+         * @param text
+         */
+        void searchChanged(String text);
+
+        /**
+         * @param text
+         * @param offset number of results already shown
+         */
+        void searchMore(String text, int offset);
+
+        /**
+         * @param item
+         */
+        void resultChosen(Item item);
+    }
+}
@@ -0,0 +1,152 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
+/**
+ * Name:   SearchQuery.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Search text typed by the user, split into the words to look for and a
+ * quantity range. Shared by the in memory search index and the database
+ * search so both read the search text the same way.
+ *
+ * Words are lower cased and split on anything that is not a letter or digit.
+ * Quantity filters can be mixed in:
+ *   qty:10      quantity is exactly 10
+ *   qty:10-50   quantity is between 10 and 50
+ *   qty:>10     quantity is above 10
+ *   qty:<10     quantity is below 10
+ * A quantity filter that can not be read, such as qty:abc, matches nothing.
+ * Numbers past the range of a quantity are clamped to it.
+ */
+public class SearchQuery {
+
+    private final ArrayList<String> words = new ArrayList<>();     //Words, each the start of a word to find
+    private int minQuantity = Integer.MIN_VALUE;                    //Lowest quantity to find
+    private int maxQuantity = Integer.MAX_VALUE;                    //Highest quantity to find
+
+    /**
+     * Main initializer for the SearchQuery class.
+     *
+     * @param text
+     */
+    public SearchQuery(String text){
+        for (String part : text.trim().toLowerCase().split("\\s+")) {
+            if (part.startsWith("qty:")) {
+                long[] range = parseRange(part.substring(4));
+                if (range[0] > Integer.MAX_VALUE || range[1] < Integer.MIN_VALUE) {
+                    //No quantity is past the largest or below the smallest, so nothing matches
+                    minQuantity = Integer.MAX_VALUE;
+                    maxQuantity = Integer.MIN_VALUE;
+                } else {
+                    minQuantity = Math.max(minQuantity, clamp(range[0]));
+                    maxQuantity = Math.min(maxQuantity, clamp(range[1]));
+                }
+            } else {
+                words.addAll(tokenize(part, null));
+            }
+        }
+    }
+
+    /**
+     * @return ArrayList<String>
+     */
+    public ArrayList<String> getWords(){
+        return words;
+    }
+
+    /**
+     * @return int
+     */
+    public int getMinQuantity(){
+        return minQuantity;
+    }
+
+    /**
+     * @return int
+     */
+    public int getMaxQuantity(){
+        return maxQuantity;
+    }
+
+    /**
+     * @return true if the search filters on quantity
+     */
+    public boolean hasQuantityRange(){
+        return minQuantity != Integer.MIN_VALUE || maxQuantity != Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return true if nothing can match, because the search is empty or its quantity range is
+     */
+    public boolean isEmpty(){
+        return minQuantity > maxQuantity || (words.isEmpty() && !hasQuantityRange());
+    }
+
+    /**
+     * @param quantity
+     * @return boolean
+     */
+    public boolean matchesQuantity(int quantity){
+        return quantity >= minQuantity && quantity <= maxQuantity;
+    }
+
+    /**
+     * The bounds are worked out as longs, so one past the largest or smallest
+     * quantity does not wrap around.
+     *
+     * @param range
+     * @return the lowest and highest quantity, an empty range if it can not be read
+     */
+    private static long[] parseRange(String range){
+        try {
+            if (range.startsWith(">")) {
+                return new long[]{Long.parseLong(range.substring(1)) + 1, Integer.MAX_VALUE};
+            }
+            if (range.startsWith("<")) {
+                return new long[]{Integer.MIN_VALUE, Long.parseLong(range.substring(1)) - 1};
+            }
+            int dash = range.indexOf('-', 1);
+            if (dash > 0) {
+                return new long[]{Long.parseLong(range.substring(0, dash)), Long.parseLong(range.substring(dash + 1))};
+            }
+            long quantity = Long.parseLong(range);
+            return new long[]{quantity, quantity};
+        } catch (NumberFormatException e) {
+            return new long[]{Integer.MAX_VALUE, Integer.MIN_VALUE};
+        }
+    }
+
+    /**
+     * @param bound
+     * @return the bound limited to the range of a quantity
+     */
+    private static int clamp(long bound){
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, bound));
+    }
+
+    /**
+     * Splits a name and description into their distinct lower case words.
+     *
+     * @param name
+     * @param description
+     * @return ArrayList<String>
+     */
+    static ArrayList<String> tokenize(String name, String description){
+        LinkedHashSet<String> result = new LinkedHashSet<>();
+        for (String text : new String[]{name, description}) {
+            if (text == null) {
+                continue;
+            }
+            for (String word : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+                if (!word.isEmpty()) {
+                    result.add(word);
+                }
+            }
+        }
+        return new ArrayList<>(result);
+    }
+}
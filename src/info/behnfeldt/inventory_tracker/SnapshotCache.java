@@ -0,0 +1,189 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Name:   SnapshotCache.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Local copy of the departments and items as they are in the database, so the
+ * application can show the inventory at startup without waiting for it to be
+ * downloaded. The snapshot carries the delta sync watermark it is current to.
+ * After starting from it, DeltaSync reads only the rows changed since that
+ * watermark, so how long it takes to be up to date depends on how much changed
+ * rather than on the size of the inventory.
+ *
+ * The snapshot only ever holds saved data. It is written after a full load from
+ * the database and after a save that left nothing unsaved, always on the
+ * database thread while no edit or merge can run. Without lazy loading the
+ * items are included; with lazy or paged loading only the departments are, and
+ * items are read on demand as usual.
+ *
+ * The file is binary: a header with the format version, the database it came
+ * from and the watermark, followed by every department and its items. It is
+ * written to a temporary file that then replaces the old one, so a crash while
+ * writing never leaves a broken snapshot behind, and it is read through a
+ * memory mapped buffer. A snapshot of another format version or database is
+ * ignored.
+ */
+public class SnapshotCache {
+
+    private static final int MAGIC = 0x49534E50;            //Marks a snapshot file, "ISNP"
+    private static final int FORMAT_VERSION = 3;            //Bumped whenever the layout below changes, 3: the watermark is a change log ID
+    private final Path file;                                //The snapshot file
+    private final String source;                            //Database the snapshot belongs to
+
+    /**
+     * Main initializer for the SnapshotCache class.
+     *
+     * @param file
+     * @param source identifies the database, a snapshot of any other database is ignored
+     */
+    public SnapshotCache(Path file, String source){
+        this.file = file;
+        this.source = source;
+    }
+
+    /**
+     * Reads the snapshot.
+     *
+     * @param withItems true when the items of every department are needed
+     * @return the departments and watermark, or null when there is no usable snapshot
+     */
+    public Snapshot read(boolean withItems){
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION
+                    || !getString(buffer, decoder).equals(source)) {
+                System.out.println("Snapshot " + file + " is from another version or database, it is not used");
+                return null;
+            }
+            long watermark = buffer.getLong();
+            if ((buffer.get() == 1) != withItems) {
+                System.out.println("Snapshot " + file + " was written for another item loading mode, it is not used");
+                return null;
+            }
+            int departmentCount = buffer.getInt();
+
+            ArrayList<Department> departments = new ArrayList<>(departmentCount);
+            for (int i = 0; i < departmentCount; i++) {
+                Department department = new Department(buffer.getInt(), getString(buffer, decoder), getString(buffer, decoder), false);
+                department.setVersion(buffer.getLong());
+                if (withItems) {
+                    department.markItemsLoaded();
+                    int itemCount = buffer.getInt();
+                    for (int j = 0; j < itemCount; j++) {
+                        Item item = new Item(buffer.getInt(), buffer.getInt(), getString(buffer, decoder), getString(buffer, decoder));
+                        item.setVersion(buffer.getLong());
+                        department.addLoadedItem(item);
+                    }
+                }
+                departments.add(department);
+            }
+            return new Snapshot(departments, watermark);
+        } catch (IOException | RuntimeException e) {
+            //A snapshot that can not be read only costs the full load it was meant to save
+            System.out.println("Snapshot " + file + " could not be read: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the snapshot with the given departments. Must only be called
+     * while they hold no unsaved changes.
+     *
+     * @param departments
+     * @param watermark the delta sync watermark the departments are current to
+     * @param withItems true to include the items of every department
+     * @throws IOException
+     */
+    public void write(List<Department> departments, long watermark, boolean withItems) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            putString(out, source);
+            out.writeLong(watermark);
+            out.writeByte(withItems ? 1 : 0);
+            out.writeInt(departments.size());
+            for (Department department : departments) {
+                out.writeInt(department.getID());
+                putString(out, department.getName());
+                putString(out, department.getInfo());
+                out.writeLong(department.getVersion());
+                if (withItems) {
+                    List<Item> items = department.getAllItems();
+                    out.writeInt(items.size());
+                    for (int i = 0; i < items.size(); i++) {
+                        Item item = items.get(i);
+                        out.writeInt(item.getID());
+                        out.writeInt(item.getQuantity());
+                        putString(out, item.getName());
+                        putString(out, item.getDescription());
+                        out.writeLong(item.getVersion());
+                    }
+                }
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes a string as its byte length followed by its UTF-8 bytes.
+     *
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    private static void putString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * @param buffer
+     * @param decoder
+     * @return String
+     * @throws IOException
+     */
+    private static String getString(ByteBuffer buffer, CharsetDecoder decoder) throws IOException {
+        int length = buffer.getInt();
+        ByteBuffer bytes = buffer.slice();
+        bytes.limit(length);
+        buffer.position(buffer.position() + length);
+        return decoder.decode(bytes).toString();
+    }
+
+    /**
+     * Departments read from a snapshot and the watermark they are current to.
+     */
+    public static class Snapshot {
+        public final ArrayList<Department> departments;     //Departments, with their items unless loading lazily
+        public final long watermark;                        //Delta sync watermark the departments are current to
+
+        private Snapshot(ArrayList<Department> departments, long watermark){
+            this.departments = departments;
+            this.watermark = watermark;
+        }
+    }
+}
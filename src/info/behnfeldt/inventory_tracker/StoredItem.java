@@ -0,0 +1,198 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.util.Objects;
+
+/**
+ * Name:   StoredItem.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Item view of one slot of an ItemStore. Every getter and setter reads or
+ * writes the store, so any number of views of the same slot show the same
+ * item. Two views are equal when they point at the same slot, which lets
+ * views created at different times be used as keys of the same HashMap.
+ */
+public class StoredItem extends Item {
+
+    private final ItemStore store;      //Store holding the item data
+    private final int slot;             //Slot of the item in the store
+
+    /**
+     * Main initializer for the StoredItem class.
+     *
+     * @param store
+     * @param slot
+     */
+    StoredItem(ItemStore store, int slot){
+        super(0, 0, null, null);
+        this.store = store;
+        this.slot = slot;
+    }
+
+    /**
+     * @return ItemStore
+     */
+    ItemStore getStore(){
+        return store;
+    }
+
+    /**
+     * @return int
+     */
+    int getSlot(){
+        return slot;
+    }
+
+    @Override
+    public int getID(){
+        return store.getId(slot);
+    }
+
+    @Override
+    public int getQuantity(){
+        return store.getQuantity(slot);
+    }
+
+    @Override
+    public String getName(){
+        return store.getName(slot);
+    }
+
+    @Override
+    public String getDescription(){
+        return store.getDescription(slot);
+    }
+
+    @Override
+    public boolean isModified(){
+        return store.isModified(slot);
+    }
+
+    @Override
+    public boolean isAdjustedOnly(){
+        return store.isAdjustedOnly(slot);
+    }
+
+    @Override
+    public int getQuantityDelta(){
+        return store.getQuantityDelta(slot);
+    }
+
+    @Override
+    public int getChangedColumns(){
+        return store.getChangedColumns(slot);
+    }
+
+    @Override
+    public long getVersion(){
+        return store.getVersion(slot);
+    }
+
+    @Override
+    void setVersion(long version){
+        store.setVersion(slot, version);
+    }
+
+    @Override
+    boolean applyRemote(int quantity, String name, String description, long version){
+        store.setVersion(slot, version);
+        if (getQuantity() == quantity && Objects.equals(getName(), name)
+                && Objects.equals(getDescription(), description)) {
+            return false;
+        }
+        store.applyRemote(slot, quantity, name, description, version);
+        reindex();
+        return true;
+    }
+
+    @Override
+    void markSaved(){
+        store.markSaved(slot);
+    }
+
+    @Override
+    void setSavedQuantity(int quantity){
+        if (getQuantity() != quantity) {
+            store.setSavedQuantity(slot, quantity);
+            reindex();
+        }
+    }
+
+    @Override
+    void rebase(int quantity, String name, String description, long version){
+        store.rebase(slot, quantity, name, description, version);
+        reindex();
+    }
+
+    @Override
+    void markMoved(){
+        store.markMoved(slot);
+    }
+
+    @Override
+    void restore(State state){
+        store.restore(slot, state);
+        reindex();
+    }
+
+    @Override
+    void setSearchIndex(ItemSearchIndex searchIndex){
+        //The store follows one search index for all of its items
+        if (searchIndex != null) {
+            store.setSearchIndex(searchIndex);
+        }
+    }
+
+    @Override
+    public void setID(int id){
+        store.setId(slot, id);
+    }
+
+    @Override
+    public void setQuantity(int quantity){
+        if (store.setQuantity(slot, quantity)) {
+            reindex();
+        }
+    }
+
+    @Override
+    public void adjust(int delta){
+        store.adjust(slot, delta);
+        reindex();
+    }
+
+    @Override
+    public void setName(String name){
+        if (store.setName(slot, name)) {
+            reindex();
+        }
+    }
+
+    @Override
+    public void setDescription(String description){
+        if (store.setDescription(slot, description)) {
+            reindex();
+        }
+    }
+
+    /**
+     * Updates the search index after the name, description or quantity changed.
+     */
+    private void reindex(){
+        ItemSearchIndex searchIndex = store.getSearchIndex();
+        if (searchIndex != null) {
+            searchIndex.update(this);
+        }
+    }
+
+    @Override
+    public boolean equals(Object other){
+        return other instanceof StoredItem && ((StoredItem) other).store == store && ((StoredItem) other).slot == slot;
+    }
+
+    @Override
+    public int hashCode(){
+        return System.identityHashCode(store) * 31 + slot;
+    }
+}
@@ -0,0 +1,138 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Name:   StoredItemList.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * A department's item list when items are kept in an ItemStore. The list only
+ * holds the slot number of each item and hands out StoredItem views. Adding a
+ * view of the same store keeps its slot, so an item moved to another department
+ * stays the same item; adding any other Item copies it into a new slot.
+ */
+public class StoredItemList extends AbstractList<Item> implements RandomAccess {
+
+    private final ItemStore store;          //Store holding the item data
+    private final Department department;    //Department the list belongs to
+    private int[] slots = new int[16];      //Slot of each item, in list order
+    private int size = 0;                   //Number of items in the list
+
+    /**
+     * Main initializer for the StoredItemList class.
+     *
+     * @param store
+     * @param department
+     */
+    public StoredItemList(ItemStore store, Department department){
+        this.store = store;
+        this.department = department;
+    }
+
+    @Override
+    public Item get(int index){
+        checkIndex(index, size);
+        return store.view(slots[index]);
+    }
+
+    @Override
+    public int size(){
+        return size;
+    }
+
+    @Override
+    public void add(int index, Item item){
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        int slot;
+        if (item instanceof StoredItem && ((StoredItem) item).getStore() == store) {
+            slot = ((StoredItem) item).getSlot();
+            store.setDepartmentId(slot, department.getID());
+        } else {
+            slot = store.add(item, department.getID());
+        }
+        if (size == slots.length) {
+            slots = Arrays.copyOf(slots, size * 2);
+        }
+        System.arraycopy(slots, index, slots, index + 1, size - index);
+        slots[index] = slot;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Item remove(int index){
+        checkIndex(index, size);
+        Item removed = store.view(slots[index]);
+        System.arraycopy(slots, index + 1, slots, index, size - index - 1);
+        size--;
+        modCount++;
+        return removed;
+    }
+
+    @Override
+    public void clear(){
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Finds a view by its slot without creating a view for every item.
+     *
+     * @param other
+     * @return the index, or -1
+     */
+    @Override
+    public int indexOf(Object other){
+        if (other instanceof StoredItem && ((StoredItem) other).getStore() == store) {
+            int slot = ((StoredItem) other).getSlot();
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object other){
+        return indexOf(other) != -1;
+    }
+
+    /**
+     * Updates the department ID of every item, used once a new department
+     * has been given its ID by the database.
+     */
+    public void updateDepartmentId(){
+        for (int i = 0; i < size; i++) {
+            store.setDepartmentId(slots[i], department.getID());
+        }
+    }
+
+    /**
+     * Frees the slots of every item in the list and empties it. Only for
+     * items that nothing else refers to anymore.
+     */
+    public void release(){
+        for (int i = 0; i < size; i++) {
+            store.release(slots[i]);
+        }
+        clear();
+    }
+
+    /**
+     * @param index
+     * @param size
+     */
+    private static void checkIndex(int index, int size){
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
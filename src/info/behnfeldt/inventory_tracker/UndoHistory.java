@@ -0,0 +1,182 @@
+package info.behnfeldt.inventory_tracker;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Name:   UndoHistory.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Undo and redo for the changes the user makes to departments and items.
+ * Every change is kept as a Command that holds references to the objects it
+ * changed and the values it replaced, never a copy of any item list, so the
+ * history costs little more than the text that was changed. The size of each
+ * command is estimated, and once the history grows past its memory limit the
+ * oldest commands are dropped first.
+ *
+ * The history also keeps every department that a change touched since the
+ * last save. Items can only have unsaved changes in those departments, so a
+ * save only needs to look at their items instead of the whole inventory.
+ *
+ * Used on the Swing thread only.
+ */
+public class UndoHistory {
+
+    private final ArrayDeque<Command> undoStack = new ArrayDeque<>();   //Changes that can be undone, newest first
+    private final ArrayDeque<Command> redoStack = new ArrayDeque<>();   //Changes that were undone, newest first
+    private final HashSet<Department> dirtyDepartments = new HashSet<>();   //Departments changed since the last save
+    private final long limit;                                           //Most bytes the history may hold
+    private long size = 0;                                              //Estimated bytes held by both stacks
+
+    /**
+     * Main initializer for the UndoHistory class.
+     *
+     * @param limit most bytes the history may hold
+     */
+    public UndoHistory(long limit){
+        this.limit = limit;
+    }
+
+    /**
+     * Adds a change that has just been made. Anything that was undone can no
+     * longer be redone.
+     *
+     * @param command
+     */
+    public void done(Command command){
+        for (Command undone : redoStack) {
+            size -= undone.getSize();
+        }
+        redoStack.clear();
+        undoStack.push(command);
+        size += command.getSize();
+        command.addDepartments(dirtyDepartments);
+        //Drop the oldest changes until the history fits, the newest one is always kept
+        while (size > limit && undoStack.size() > 1) {
+            size -= undoStack.removeLast().getSize();
+        }
+    }
+
+    /**
+     * Undoes the newest change.
+     *
+     * @return the change that was undone, or null if there was nothing to undo
+     */
+    public Command undo(){
+        Command command = undoStack.poll();
+        if (command != null) {
+            command.undo();
+            command.addDepartments(dirtyDepartments);
+            redoStack.push(command);
+        }
+        return command;
+    }
+
+    /**
+     * Redoes the newest change that was undone.
+     *
+     * @return the change that was redone, or null if there was nothing to redo
+     */
+    public Command redo(){
+        Command command = redoStack.poll();
+        if (command != null) {
+            command.redo();
+            command.addDepartments(dirtyDepartments);
+            undoStack.push(command);
+        }
+        return command;
+    }
+
+    /**
+     * @return the name of the change undo() would undo, or null
+     */
+    public String getUndoName(){
+        return undoStack.isEmpty() ? null : undoStack.peek().getName();
+    }
+
+    /**
+     * @return the name of the change redo() would redo, or null
+     */
+    public String getRedoName(){
+        return redoStack.isEmpty() ? null : redoStack.peek().getName();
+    }
+
+    /**
+     * Forgets every change, used after a save or reload since undoing past
+     * it would have to change rows that were already written.
+     */
+    public void clear(){
+        undoStack.clear();
+        redoStack.clear();
+        size = 0;
+    }
+
+    /**
+     * Marks departments as changed by something other than a command, such as
+     * changes recovered from the journal.
+     *
+     * @param departments
+     */
+    public void markDirty(Collection<Department> departments){
+        dirtyDepartments.addAll(departments);
+    }
+
+    /**
+     * @return departments changed since the last save
+     */
+    public Set<Department> getDirtyDepartments(){
+        return dirtyDepartments;
+    }
+
+    /**
+     * Forgets the changed departments once everything has been saved or
+     * reloaded.
+     */
+    public void clearDirty(){
+        dirtyDepartments.clear();
+    }
+
+    /**
+     * @return estimated bytes held by the history
+     */
+    public long getSize(){
+        return size;
+    }
+
+    /**
+     * One change that can be undone and redone. The change has already been
+     * made when the command is added to the history.
+     */
+    public interface Command {
+        /**
+         * Reverts the change.
+         */
+        void undo();
+
+        /**
+         * Makes the change again after it was undone.
+         */
+        void redo();
+
+        /**
+         * @return name shown in the Undo and Redo menu buttons
+         */
+        String getName();
+
+        /**
+         * @return estimated bytes held by the command
+         */
+        long getSize();
+
+        /**
+         * Adds the departments the change touches.
+         *
+         * @param departments
+         */
+        void addDepartments(Collection<Department> departments);
+    }
+}
@@ -0,0 +1,277 @@
+package info.behnfeldt.inventory_tracker;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Name:   ChangeJournalTest.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Tests for recording unsaved changes and replaying them onto the departments
+ * loaded after a restart. The saved inventory is kept in an embedded database
+ * in a temporary directory: Tools with a hammer and a saw.
+ */
+public class ChangeJournalTest {
+
+    @TempDir
+    Path directory;                                 //Holds the database and journal files
+    private Path file;                              //The journal file
+    private ChangeJournal journal;                  //Journal the changes are recorded in
+    private Department tools;                       //Saved department
+    private Item hammer;                            //Saved item of tools, quantity 5
+    private Item saw;                               //Saved item of tools, quantity 3
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Repositories.useEmbedded(new EmbeddedRepository(directory.resolve("inventory.db").toString()));
+        tools = new Department("Tools");
+        hammer = new Item(5, "Hammer", "Claw");
+        saw = new Item(3, "Saw", "Hand saw");
+        ArrayList<Department> departments = new ArrayList<>();
+        departments.add(tools);
+        HashMap<Item, Department> items = new HashMap<>();
+        items.put(hammer, tools);
+        items.put(saw, tools);
+        Repositories.inTransaction(() -> {
+            Repositories.departments().insertDepartments(departments);
+            Repositories.items().insertItems(items);
+        }, () -> {});
+        tools.markSaved();
+        hammer.markSaved();
+        saw.markSaved();
+
+        file = directory.resolve("inventory.journal");
+        journal = new ChangeJournal(file, 10);
+    }
+
+    @AfterEach
+    public void tearDown(){
+        journal.close();
+    }
+
+    /**
+     * A new journal has nothing to replay.
+     */
+    @Test
+    public void startsEmpty() throws Exception {
+        assertTrue(journal.isEmpty());
+        ArrayList<Department> departments = load();
+        ChangeJournal.Recovery recovery = reopen().replay(departments);
+        assertEquals(0, recovery.changes);
+        assertEquals(1, departments.size());
+    }
+
+    /**
+     * New departments and items come back as new, unsaved rows.
+     */
+    @Test
+    public void replaysNewRows() throws Exception {
+        Department garden = new Department("Garden");
+        Item rake = new Item(2, "Rake", "Leaf rake");
+        garden.addItem(rake);
+        journal.department(garden);
+        journal.item(rake, garden);
+        assertFalse(journal.isEmpty());
+
+        ArrayList<Department> departments = load();
+        ChangeJournal.Recovery recovery = reopen().replay(departments);
+        assertEquals(2, recovery.changes);
+        assertEquals(2, departments.size());
+        Department replayed = find(departments, "Garden");
+        assertEquals(0, replayed.getID());
+        assertEquals(1, replayed.getAllItems().size());
+        Item replayedRake = replayed.getItem(0);
+        assertEquals("Rake", replayedRake.getName());
+        assertEquals(2, replayedRake.getQuantity());
+        assertEquals("Leaf rake", replayedRake.getDescription());
+        assertEquals(0, replayedRake.getID());
+        assertTrue(recovery.changedDepartments.contains(replayed));
+    }
+
+    /**
+     * Edits, moves and adjustments of saved items are put back on the loaded rows.
+     */
+    @Test
+    public void replaysChangesToSavedItems() throws Exception {
+        Department garden = new Department("Garden");
+        journal.department(garden);
+        hammer.setName("Mallet");
+        hammer.setQuantity(8);
+        journal.item(hammer, tools);
+        journal.item(saw, garden);
+        saw.adjust(4);
+        journal.itemAdjusted(saw, 4);
+
+        ArrayList<Department> departments = load();
+        ChangeJournal.Recovery recovery = reopen().replay(departments);
+        assertEquals(4, recovery.changes);
+        Department loadedTools = find(departments, "Tools");
+        Department loadedGarden = find(departments, "Garden");
+
+        assertEquals(1, loadedTools.getAllItems().size());
+        Item mallet = loadedTools.getItem(0);
+        assertEquals(hammer.getID(), mallet.getID());
+        assertEquals("Mallet", mallet.getName());
+        assertEquals(8, mallet.getQuantity());
+        assertTrue(mallet.isModified());
+
+        assertEquals(1, loadedGarden.getAllItems().size());
+        Item movedSaw = loadedGarden.getItem(0);
+        assertEquals(saw.getID(), movedSaw.getID());
+        assertEquals(7, movedSaw.getQuantity());
+        assertNotEquals(0, movedSaw.getChangedColumns() & Item.DEPARTMENT);
+        assertTrue(recovery.changedDepartments.contains(loadedTools));
+        assertTrue(recovery.changedDepartments.contains(loadedGarden));
+    }
+
+    /**
+     * An adjustment alone stays a delta after the replay.
+     */
+    @Test
+    public void replaysAdjustmentAsDelta() throws Exception {
+        hammer.adjust(-2);
+        journal.itemAdjusted(hammer, -2);
+        hammer.adjust(5);
+        journal.itemAdjusted(hammer, 5);
+
+        ArrayList<Department> departments = load();
+        reopen().replay(departments);
+        Item replayed = findItem(find(departments, "Tools"), hammer.getID());
+        assertEquals(8, replayed.getQuantity());
+        assertTrue(replayed.isAdjustedOnly());
+        assertEquals(3, replayed.getQuantityDelta());
+    }
+
+    /**
+     * Deleted saved rows are removed and listed so the save deletes them.
+     */
+    @Test
+    public void replaysDeletes() throws Exception {
+        journal.itemDeleted(saw);
+        journal.departmentDeleted(tools);
+
+        ArrayList<Department> departments = load();
+        ChangeJournal.Recovery recovery = reopen().replay(departments);
+        assertTrue(departments.isEmpty());
+        assertEquals(1, recovery.deletedDepartments.size());
+        assertEquals(tools.getID(), recovery.deletedDepartments.get(0).getID());
+        assertEquals(1, recovery.deletedItems.size());
+        assertEquals(saw.getID(), recovery.deletedItems.get(0).getID());
+    }
+
+    /**
+     * A delete that was undone later in the journal leaves the row in place.
+     */
+    @Test
+    public void replaysUndoneDeletes() throws Exception {
+        journal.itemDeleted(saw);
+        journal.item(saw, tools);
+        journal.departmentDeleted(tools);
+        journal.department(tools);
+
+        ArrayList<Department> departments = load();
+        ChangeJournal.Recovery recovery = reopen().replay(departments);
+        assertEquals(1, departments.size());
+        assertNotNull(findItem(departments.get(0), saw.getID()));
+        assertTrue(recovery.deletedItems.isEmpty());
+        assertTrue(recovery.deletedDepartments.isEmpty());
+    }
+
+    /**
+     * A record cut off by a crash is dropped, the ones before it are kept.
+     */
+    @Test
+    public void dropsTornRecord() throws Exception {
+        hammer.setQuantity(9);
+        journal.item(hammer, tools);
+        saw.setQuantity(1);
+        journal.item(saw, tools);
+        journal.close();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 3);
+        }
+
+        ArrayList<Department> departments = load();
+        ChangeJournal.Recovery recovery = reopen().replay(departments);
+        assertEquals(1, recovery.changes);
+        Department loadedTools = find(departments, "Tools");
+        assertEquals(9, findItem(loadedTools, hammer.getID()).getQuantity());
+        assertEquals(3, findItem(loadedTools, saw.getID()).getQuantity());
+    }
+
+    /**
+     * Nothing is replayed after a reset.
+     */
+    @Test
+    public void resetEmpties() throws Exception {
+        hammer.setQuantity(9);
+        journal.item(hammer, tools);
+        journal.reset();
+        assertTrue(journal.isEmpty());
+
+        ArrayList<Department> departments = load();
+        assertEquals(0, reopen().replay(departments).changes);
+        assertEquals(5, findItem(departments.get(0), hammer.getID()).getQuantity());
+    }
+
+    /**
+     * Closes the journal and opens its file again, as after a restart.
+     *
+     * @return ChangeJournal
+     * @throws Exception
+     */
+    private ChangeJournal reopen() throws Exception {
+        journal.close();
+        journal = new ChangeJournal(file, 10);
+        return journal;
+    }
+
+    /**
+     * @return the departments as loaded from the database after a restart
+     * @throws Exception
+     */
+    private static ArrayList<Department> load() throws Exception {
+        return Repositories.departments().findAll(true);
+    }
+
+    /**
+     * @param departments
+     * @param name
+     * @return Department
+     */
+    private static Department find(ArrayList<Department> departments, String name){
+        for (Department department : departments) {
+            if (department.getName().equals(name)) {
+                return department;
+            }
+        }
+        return fail("No department " + name);
+    }
+
+    /**
+     * @param department
+     * @param id
+     * @return the item, or null
+     */
+    private static Item findItem(Department department, int id){
+        for (Item item : department.getAllItems()) {
+            if (item.getID() == id) {
+                return item;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,142 @@
+package info.behnfeldt.inventory_tracker;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Name:   ConflictResolverTest.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Tests for what happens to a row another client changed since it was read:
+ * merging the local changes onto the row from the database, or taking that
+ * row. The version check itself runs in MySQL, these cover the decisions and
+ * the merged values the save writes again.
+ */
+public class ConflictResolverTest {
+
+    /**
+     * Merge keeps the local changes, reload takes the database row, deleted rows alike.
+     */
+    @Test
+    public void resolversDecide(){
+        Item item = new Item(1, 10, "Hammer", "");
+        Item row = new Item(1, 12, "Hammer", "");
+        Department department = new Department(1, "Tools", "", false);
+        assertTrue(ConflictResolver.MERGE.keepLocal(item, row));
+        assertTrue(ConflictResolver.MERGE.keepLocal(item, null));
+        assertTrue(ConflictResolver.MERGE.keepLocal(department, department));
+        assertFalse(ConflictResolver.RELOAD.keepLocal(item, row));
+        assertFalse(ConflictResolver.RELOAD.keepLocal(item, null));
+        assertFalse(ConflictResolver.RELOAD.keepLocal(department, department));
+    }
+
+    /**
+     * Columns changed locally keep their value, the others take the new row.
+     */
+    @Test
+    public void mergeKeepsChangedColumns(){
+        Item item = new Item(1, 10, "Hammer", "Claw");
+        item.setName("Mallet");
+        item.rebase(12, "Claw hammer", "Steel", 2);
+
+        assertEquals("Mallet", item.getName());
+        assertEquals(12, item.getQuantity());
+        assertEquals("Steel", item.getDescription());
+        assertEquals(2, item.getVersion());
+        assertTrue(item.isModified());
+        assertEquals(Item.NAME, item.getChangedColumns());
+    }
+
+    /**
+     * A quantity set to a value keeps the value.
+     */
+    @Test
+    public void mergeKeepsSetQuantity(){
+        Item item = new Item(1, 10, "Hammer", "");
+        item.setQuantity(4);
+        item.rebase(12, "Hammer", "", 2);
+        assertEquals(4, item.getQuantity());
+        assertEquals(Item.QUANTITY, item.getChangedColumns());
+    }
+
+    /**
+     * An adjusted quantity is added to the quantity of the new row.
+     */
+    @Test
+    public void mergeAddsAdjustment(){
+        Item item = new Item(1, 10, "Hammer", "");
+        item.adjust(-3);
+        item.rebase(20, "Hammer", "", 2);
+        assertEquals(17, item.getQuantity());
+        assertTrue(item.isAdjustedOnly());
+        assertEquals(-3, item.getQuantityDelta());
+    }
+
+    /**
+     * Reload drops the local changes for the row from the database.
+     */
+    @Test
+    public void reloadTakesRow(){
+        Item item = new Item(1, 10, "Hammer", "Claw");
+        item.setName("Mallet");
+        item.adjust(2);
+        item.markSaved();
+        item.applyRemote(12, "Claw hammer", "Steel", 2);
+
+        assertEquals(12, item.getQuantity());
+        assertEquals("Claw hammer", item.getName());
+        assertEquals("Steel", item.getDescription());
+        assertEquals(2, item.getVersion());
+        assertFalse(item.isModified());
+    }
+
+    /**
+     * Items in the compact storage merge the same way.
+     */
+    @Test
+    public void mergeInStore(){
+        ItemStore store = new ItemStore();
+        Item item = store.view(store.add(new Item(1, 10, "Hammer", "Claw"), 1));
+        item.setDescription("Rubber");
+        item.adjust(5);
+        item.rebase(20, "Claw hammer", "Steel", 3);
+
+        assertEquals(25, item.getQuantity());
+        assertEquals("Claw hammer", item.getName());
+        assertEquals("Rubber", item.getDescription());
+        assertEquals(3, item.getVersion());
+        assertEquals(5, item.getQuantityDelta());
+        assertTrue(item.isModified());
+    }
+
+    /**
+     * Departments keep their changed columns and take the others.
+     */
+    @Test
+    public void mergeDepartment(){
+        Department department = new Department(1, "Tools", "Hand tools", false);
+        department.setInfo("All tools");
+        department.rebase("Tool shed", "Power tools", 4);
+        assertEquals("Tool shed", department.getName());
+        assertEquals("All tools", department.getInfo());
+        assertEquals(4, department.getVersion());
+        assertTrue(department.isModified());
+    }
+
+    /**
+     * Reloading a department takes the row without marking it.
+     */
+    @Test
+    public void reloadDepartment(){
+        Department department = new Department(1, "Tools", "Hand tools", false);
+        assertTrue(department.applyRemote("Tool shed", "Power tools", 4));
+        assertEquals("Tool shed", department.getName());
+        assertEquals("Power tools", department.getInfo());
+        assertEquals(4, department.getVersion());
+        assertFalse(department.isModified());
+        assertFalse(department.applyRemote("Tool shed", "Power tools", 5));
+    }
+}
@@ -0,0 +1,152 @@
+package info.behnfeldt.inventory_tracker;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Name:   ItemSearchIndexTest.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Tests for the in memory item search, and for keeping it up to date as items
+ * are changed, moved and removed.
+ */
+public class ItemSearchIndexTest {
+
+    private ItemSearchIndex index;                  //Index following both departments
+    private Department tools;                       //Holds the hammer and the saw
+    private Department hardware;                    //Holds the nails
+    private Item hammer;                            //Claw hammer, quantity 5
+    private Item saw;                               //Hand saw, quantity 12
+    private Item nails;                             //Box of nails, quantity 500
+
+    @BeforeEach
+    public void setUp(){
+        hammer = new Item(1, 5, "Claw Hammer", "16oz steel");
+        saw = new Item(2, 12, "Hand Saw", "Wood");
+        nails = new Item(3, 500, "Nails", "Box of steel nails");
+        tools = loaded(1, "Tools", hammer, saw);
+        hardware = loaded(2, "Hardware", nails);
+        index = new ItemSearchIndex();
+        index.addDepartments(Arrays.asList(tools, hardware));
+    }
+
+    /**
+     * Loaded items are indexed under their department.
+     */
+    @Test
+    public void indexesLoadedItems(){
+        assertEquals(3, index.size());
+        assertSame(tools, index.getDepartment(hammer));
+        assertSame(hardware, index.getDepartment(nails));
+    }
+
+    /**
+     * Each word of the search is the start of a word in the name or description.
+     */
+    @Test
+    public void findsByWordPrefix(){
+        assertEquals(Collections.singletonList(hammer), index.search("ham", 10));
+        assertEquals(Collections.singletonList(saw), index.search("WOO", 10));
+        assertEquals(new HashSet<>(Arrays.asList(hammer, nails)), new HashSet<>(index.search("ste", 10)));
+        assertTrue(index.search("mer", 10).isEmpty());
+    }
+
+    /**
+     * An item must match every word of the search.
+     */
+    @Test
+    public void matchesEveryWord(){
+        assertEquals(Collections.singletonList(nails), index.search("steel box", 10));
+        assertTrue(index.search("steel saw", 10).isEmpty());
+    }
+
+    /**
+     * Quantity filters work alone and together with words.
+     */
+    @Test
+    public void findsByQuantity(){
+        assertEquals(new HashSet<>(Arrays.asList(hammer, saw)), new HashSet<>(index.search("qty:<100", 10)));
+        assertEquals(Collections.singletonList(nails), index.search("steel qty:>5", 10));
+        assertTrue(index.search("qty:abc", 10).isEmpty());
+    }
+
+    /**
+     * No more than the limit is returned.
+     */
+    @Test
+    public void stopsAtLimit(){
+        assertEquals(2, index.search("qty:>0", 2).size());
+        assertEquals(1, index.search("steel", 1).size());
+    }
+
+    /**
+     * Edited items are found by their new values only.
+     */
+    @Test
+    public void followsEdits(){
+        hammer.setName("Mallet");
+        hammer.setQuantity(50);
+        assertTrue(index.search("hammer", 10).isEmpty());
+        assertEquals(Collections.singletonList(hammer), index.search("mallet qty:50", 10));
+        hammer.adjust(-10);
+        assertEquals(Collections.singletonList(hammer), index.search("qty:40", 10));
+    }
+
+    /**
+     * An item moved to another department stays indexed under the new one.
+     */
+    @Test
+    public void followsMoves(){
+        hardware.addItem(saw);
+        tools.removeItem(saw);
+        assertSame(hardware, index.getDepartment(saw));
+        assertEquals(Collections.singletonList(saw), index.search("saw", 10));
+    }
+
+    /**
+     * Removed items are no longer found, and changing them does not index them again.
+     */
+    @Test
+    public void followsRemovals(){
+        tools.removeItem(hammer);
+        assertEquals(2, index.size());
+        assertNull(index.getDepartment(hammer));
+        assertTrue(index.search("hammer", 10).isEmpty());
+        hammer.setName("Hammer drill");
+        assertTrue(index.search("hammer", 10).isEmpty());
+    }
+
+    /**
+     * New items added to a followed department are indexed.
+     */
+    @Test
+    public void indexesAddedItems(){
+        Item level = new Item(3, "Spirit Level", "");
+        tools.addItem(level);
+        assertEquals(1, index.search("spirit", 10).size());
+        assertSame(tools, index.getDepartment(index.search("spirit", 10).get(0)));
+    }
+
+    /**
+     * @param id
+     * @param name
+     * @param items
+     * @return a saved department holding the items
+     */
+    private static Department loaded(int id, String name, Item... items){
+        Department department = new Department(id, name, "", false);
+        for (Item item : items) {
+            department.addLoadedItem(item);
+        }
+        department.markItemsLoaded();
+        return department;
+    }
+}
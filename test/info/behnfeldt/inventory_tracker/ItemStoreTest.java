@@ -0,0 +1,224 @@
+package info.behnfeldt.inventory_tracker;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Name:   ItemStoreTest.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Tests for the compact item storage: copying items into slots, reusing
+ * released slots, sharing names and the item lists of departments.
+ */
+public class ItemStoreTest {
+
+    private ItemStore store;                        //Store under test, empty at the start of each test
+    private Department tools;                       //Saved department with ID 1
+    private Department hardware;                    //Saved department with ID 2
+
+    @BeforeEach
+    public void setUp(){
+        store = new ItemStore();
+        tools = new Department(1, "Tools", "", false);
+        hardware = new Department(2, "Hardware", "", false);
+    }
+
+    /**
+     * A slot holds a copy of the item, and its view writes to the slot.
+     */
+    @Test
+    public void storesCopy(){
+        Item item = new Item(7, 5, "Hammer", "Claw");
+        int slot = store.add(item, 1);
+        Item view = store.view(slot);
+
+        assertEquals(7, view.getID());
+        assertEquals(5, view.getQuantity());
+        assertEquals("Hammer", view.getName());
+        assertEquals("Claw", view.getDescription());
+        assertFalse(view.isModified());
+        assertEquals(1, store.getDepartmentId(slot));
+
+        view.setQuantity(6);
+        assertEquals(6, store.view(slot).getQuantity());
+        assertTrue(store.view(slot).isModified());
+        assertEquals(5, item.getQuantity());
+        assertEquals(store.view(slot), view);
+    }
+
+    /**
+     * The modified marks and changed columns of a new item are copied.
+     */
+    @Test
+    public void copiesMarks(){
+        Item item = new Item(1, 5, "Hammer", "");
+        item.adjust(3);
+        Item view = store.view(store.add(item, 1));
+        assertTrue(view.isModified());
+        assertTrue(view.isAdjustedOnly());
+        assertEquals(3, view.getQuantityDelta());
+    }
+
+    /**
+     * Released slots are handed out again before the store grows, without
+     * anything left over from the item they held.
+     */
+    @Test
+    public void reusesReleasedSlots(){
+        int first = store.add(new Item(5, "Hammer", ""), 1);
+        int second = store.add(new Item(3, "Saw", ""), 1);
+        assertEquals(2, store.size());
+        assertTrue(store.view(first).isModified());
+
+        store.release(first);
+        assertEquals(1, store.size());
+        int reused = store.add(new Item(9, 1, "Level", "Spirit level"), 2);
+        assertEquals(first, reused);
+        assertEquals(2, store.size());
+        Item view = store.view(reused);
+        assertEquals("Level", view.getName());
+        assertEquals(9, view.getID());
+        assertFalse(view.isModified());
+        assertEquals(0, view.getChangedColumns());
+        assertEquals("Saw", store.view(second).getName());
+
+        assertNotEquals(first, store.add(new Item(1, "Chisel", ""), 1));
+        assertEquals(3, store.size());
+    }
+
+    /**
+     * Growing past the initial capacity keeps every slot.
+     */
+    @Test
+    public void grows(){
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i, store.add(new Item(i + 1, i, "Item " + i, ""), 1));
+        }
+        assertEquals(5000, store.size());
+        assertEquals("Item 4321", store.view(4321).getName());
+        assertEquals(4321, store.view(4321).getQuantity());
+    }
+
+    /**
+     * Items with the same name share one String, which is dropped with its last slot.
+     */
+    @Test
+    public void sharesNames(){
+        String first = new String("Hammer");
+        String second = new String("Hammer");
+        int a = store.add(new Item(1, 1, first, ""), 1);
+        int b = store.add(new Item(2, 1, second, ""), 1);
+        assertSame(store.getName(a), store.getName(b));
+        assertSame(first, store.getName(b));
+
+        //Still in use by the second slot
+        store.release(a);
+        int c = store.add(new Item(3, 1, new String("Hammer"), ""), 1);
+        assertSame(first, store.getName(c));
+
+        //Renaming and releasing let go of the last uses
+        store.view(b).setName("Mallet");
+        store.release(c);
+        String third = new String("Hammer");
+        int d = store.add(new Item(4, 1, third, ""), 1);
+        assertSame(third, store.getName(d));
+    }
+
+    /**
+     * Clearing the store starts over at the first slot.
+     */
+    @Test
+    public void clears(){
+        store.add(new Item(5, "Hammer", ""), 1);
+        store.add(new Item(3, "Saw", ""), 1);
+        store.clear();
+        assertEquals(0, store.size());
+        assertEquals(0, store.add(new Item(1, "Level", ""), 1));
+        assertFalse(store.view(0).getName().equals("Hammer"));
+    }
+
+    /**
+     * The item list of a department keeps slots in order and finds its views.
+     */
+    @Test
+    public void listHoldsSlots(){
+        StoredItemList list = new StoredItemList(store, tools);
+        list.add(new Item(5, "Hammer", ""));
+        list.add(new Item(3, "Saw", ""));
+        list.add(0, new Item(1, "Level", ""));
+
+        assertEquals(3, list.size());
+        assertEquals("Level", list.get(0).getName());
+        assertEquals("Hammer", list.get(1).getName());
+        assertEquals(1, list.indexOf(list.get(1)));
+        assertTrue(list.contains(list.get(2)));
+        assertEquals(-1, list.indexOf(new Item(5, "Hammer", "")));
+
+        Item removed = list.remove(1);
+        assertEquals("Hammer", removed.getName());
+        assertEquals(2, list.size());
+        assertFalse(list.contains(removed));
+        //The slot is only freed by a release
+        assertEquals(3, store.size());
+    }
+
+    /**
+     * Moving a view into another list of the same store keeps its slot.
+     */
+    @Test
+    public void moveKeepsSlot(){
+        StoredItemList from = new StoredItemList(store, tools);
+        StoredItemList to = new StoredItemList(store, hardware);
+        from.add(new Item(1, 5, "Hammer", ""));
+        Item view = from.get(0);
+
+        to.add(view);
+        from.remove(view);
+        assertEquals(1, store.size());
+        assertEquals(view, to.get(0));
+        assertEquals(2, store.getDepartmentId(((StoredItem) view).getSlot()));
+    }
+
+    /**
+     * Releasing a list frees its slots for the next items.
+     */
+    @Test
+    public void releaseFreesSlots(){
+        StoredItemList list = new StoredItemList(store, tools);
+        list.add(new Item(5, "Hammer", ""));
+        list.add(new Item(3, "Saw", ""));
+        list.release();
+        assertEquals(0, list.size());
+        assertEquals(0, store.size());
+
+        StoredItemList other = new StoredItemList(store, hardware);
+        other.add(new Item(1, "Level", ""));
+        other.add(new Item(1, "Chisel", ""));
+        other.add(new Item(1, "File", ""));
+        int highest = 0;
+        for (Item item : other) {
+            highest = Math.max(highest, ((StoredItem) item).getSlot());
+        }
+        assertEquals(2, highest);
+    }
+
+    /**
+     * A new department is given its ID after its items were stored.
+     */
+    @Test
+    public void updatesDepartmentId(){
+        Department department = new Department("Garden");
+        StoredItemList list = new StoredItemList(store, department);
+        list.add(new Item(5, "Rake", ""));
+        int slot = ((StoredItem) list.get(0)).getSlot();
+        assertEquals(0, store.getDepartmentId(slot));
+
+        department.setID(12);
+        list.updateDepartmentId();
+        assertEquals(12, store.getDepartmentId(slot));
+    }
+}
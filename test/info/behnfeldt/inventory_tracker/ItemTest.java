@@ -0,0 +1,228 @@
+package info.behnfeldt.inventory_tracker;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Name:   ItemTest.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Tests for the unsaved change marks of an item: the column bits of each
+ * change, and a quantity adjusted by a delta against a quantity set to a value.
+ */
+public class ItemTest {
+
+    /**
+     * An item read from the database has no changes.
+     */
+    @Test
+    public void loadedItemIsClean(){
+        Item item = new Item(1, 10, "Hammer", "Claw");
+        assertFalse(item.isModified());
+        assertEquals(0, item.getChangedColumns());
+    }
+
+    /**
+     * A new item has every column to write.
+     */
+    @Test
+    public void newItemHasEveryColumn(){
+        Item item = new Item(10, "Hammer", "Claw");
+        assertTrue(item.isModified());
+        assertEquals(Item.ALL_COLUMNS, item.getChangedColumns());
+    }
+
+    /**
+     * Each setter marks its own column only.
+     */
+    @Test
+    public void settersMarkTheirColumn(){
+        Item item = new Item(1, 10, "Hammer", "Claw");
+        item.setName("Mallet");
+        assertTrue(item.isModified());
+        assertEquals(Item.NAME, item.getChangedColumns());
+        item.setDescription("Rubber");
+        assertEquals(Item.NAME | Item.DESCRIPTION, item.getChangedColumns());
+        item.setQuantity(4);
+        assertEquals(Item.NAME | Item.DESCRIPTION | Item.QUANTITY, item.getChangedColumns());
+    }
+
+    /**
+     * Setting a column to the value it already has is not a change.
+     */
+    @Test
+    public void sameValueIsNotAChange(){
+        Item item = new Item(1, 10, "Hammer", "Claw");
+        item.setName("Hammer");
+        item.setDescription("Claw");
+        item.setQuantity(10);
+        item.setID(1);
+        assertFalse(item.isModified());
+        assertEquals(0, item.getChangedColumns());
+    }
+
+    /**
+     * Moving an item to another department marks the department column.
+     */
+    @Test
+    public void moveMarksDepartment(){
+        Item item = new Item(1, 10, "Hammer", "Claw");
+        Department department = new Department(2, "Tools", "", false);
+        department.markItemsLoaded();
+        department.addItem(item);
+        assertEquals(Item.DEPARTMENT, item.getChangedColumns());
+    }
+
+    /**
+     * A row with a new ID is written as a whole.
+     */
+    @Test
+    public void newIdMarksEveryColumn(){
+        Item item = new Item(1, 10, "Hammer", "Claw");
+        item.setID(7);
+        assertEquals(Item.ALL_COLUMNS, item.getChangedColumns());
+    }
+
+    /**
+     * A save clears every mark.
+     */
+    @Test
+    public void saveClearsColumns(){
+        Item item = new Item(1, 10, "Hammer", "Claw");
+        item.setName("Mallet");
+        item.setDescription("Rubber");
+        item.markSaved();
+        assertFalse(item.isModified());
+        assertEquals(0, item.getChangedColumns());
+    }
+
+    /**
+     * Changes another client made are not marked as changes to save.
+     */
+    @Test
+    public void remoteChangeIsNotAChange(){
+        Item item = new Item(1, 10, "Hammer", "Claw");
+        assertTrue(item.applyRemote(12, "Mallet", "Claw", 3));
+        assertEquals(12, item.getQuantity());
+        assertEquals("Mallet", item.getName());
+        assertEquals(3, item.getVersion());
+        assertFalse(item.isModified());
+        assertFalse(item.applyRemote(12, "Mallet", "Claw", 4));
+        assertEquals(4, item.getVersion());
+    }
+
+    /**
+     * Adjusting a saved item keeps the quantity a delta.
+     */
+    @Test
+    public void adjustIsDelta(){
+        Item item = new Item(1, 10, "Hammer", "");
+        item.adjust(3);
+        item.adjust(-1);
+        assertEquals(12, item.getQuantity());
+        assertTrue(item.isModified());
+        assertTrue(item.isAdjustedOnly());
+        assertEquals(2, item.getQuantityDelta());
+        assertEquals(Item.QUANTITY | Item.ADJUSTED, item.getChangedColumns());
+    }
+
+    /**
+     * Setting the quantity replaces the delta with the value.
+     */
+    @Test
+    public void setQuantityReplacesDelta(){
+        Item item = new Item(1, 10, "Hammer", "");
+        item.adjust(3);
+        item.setQuantity(20);
+        assertEquals(20, item.getQuantity());
+        assertFalse(item.isAdjustedOnly());
+        assertEquals(0, item.getQuantityDelta());
+        assertEquals(Item.QUANTITY, item.getChangedColumns());
+    }
+
+    /**
+     * Adjusting a quantity that was set to a value keeps it a value.
+     */
+    @Test
+    public void adjustAfterSetStaysValue(){
+        Item item = new Item(1, 10, "Hammer", "");
+        item.setQuantity(20);
+        item.adjust(5);
+        assertEquals(25, item.getQuantity());
+        assertFalse(item.isAdjustedOnly());
+        assertEquals(0, item.getQuantityDelta());
+        assertEquals(Item.QUANTITY, item.getChangedColumns());
+    }
+
+    /**
+     * An adjustment together with another change is still saved as a delta.
+     */
+    @Test
+    public void adjustWithOtherChanges(){
+        Item item = new Item(1, 10, "Hammer", "");
+        item.adjust(4);
+        item.setName("Mallet");
+        assertFalse(item.isAdjustedOnly());
+        assertEquals(4, item.getQuantityDelta());
+        assertEquals(Item.QUANTITY | Item.ADJUSTED | Item.NAME, item.getChangedColumns());
+    }
+
+    /**
+     * A new item is written as a whole, so its quantity is never a delta.
+     */
+    @Test
+    public void newItemIsNeverDelta(){
+        Item item = new Item(10, "Hammer", "");
+        item.adjust(2);
+        assertEquals(12, item.getQuantity());
+        assertFalse(item.isAdjustedOnly());
+        assertEquals(0, item.getQuantityDelta());
+        assertEquals(Item.ALL_COLUMNS, item.getChangedColumns());
+    }
+
+    /**
+     * Adjustments that cancel out are still saved, as a delta of 0.
+     */
+    @Test
+    public void adjustBackToStart(){
+        Item item = new Item(1, 10, "Hammer", "");
+        item.adjust(2);
+        item.adjust(-2);
+        assertEquals(10, item.getQuantity());
+        assertTrue(item.isAdjustedOnly());
+        assertEquals(0, item.getQuantityDelta());
+    }
+
+    /**
+     * After a save the next adjustment starts a new delta.
+     */
+    @Test
+    public void saveStartsNewDelta(){
+        Item item = new Item(1, 10, "Hammer", "");
+        item.adjust(2);
+        item.setSavedQuantity(15);
+        item.markSaved();
+        assertEquals(15, item.getQuantity());
+        assertFalse(item.isModified());
+        assertEquals(0, item.getQuantityDelta());
+        assertEquals(0, item.getChangedColumns());
+
+        item.adjust(1);
+        assertEquals(16, item.getQuantity());
+        assertEquals(1, item.getQuantityDelta());
+    }
+
+    /**
+     * Storing the saved quantity does not mark the item.
+     */
+    @Test
+    public void savedQuantityIsNotAChange(){
+        Item item = new Item(1, 10, "Hammer", "");
+        item.setSavedQuantity(12);
+        assertEquals(12, item.getQuantity());
+        assertFalse(item.isModified());
+    }
+}
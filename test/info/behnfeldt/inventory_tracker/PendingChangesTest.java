@@ -0,0 +1,209 @@
+package info.behnfeldt.inventory_tracker;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Name:   PendingChangesTest.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Tests for the save lists of the main form, saved to an embedded database in
+ * a temporary directory.
+ */
+public class PendingChangesTest {
+
+    @TempDir
+    Path directory;                                 //Holds the embedded database file
+    private Path file;                              //The embedded database file
+
+    @BeforeEach
+    public void setUp(){
+        file = directory.resolve("inventory.db");
+        Repositories.useEmbedded(new EmbeddedRepository(file.toString()));
+    }
+
+    /**
+     * Only the items of the dirty departments are collected.
+     */
+    @Test
+    public void collectLooksAtDirtyDepartmentsOnly(){
+        Item dirtyItem = new Item(1, 5, "Hammer", "");
+        Item cleanItem = new Item(2, 7, "Saw", "");
+        Department dirty = loaded(1, dirtyItem);
+        Department clean = loaded(2, cleanItem);
+        dirtyItem.setQuantity(6);
+        cleanItem.setQuantity(8);
+
+        PendingChanges pending = new PendingChanges(0, Integer.MAX_VALUE);
+        assertTrue(pending.collect(Arrays.asList(dirty, clean), Collections.singleton(dirty)));
+        assertEquals(Collections.singleton(dirtyItem), pending.getModifiedItems().keySet());
+        assertSame(dirty, pending.getModifiedItems().get(dirtyItem));
+        assertTrue(pending.getNewItems().isEmpty());
+    }
+
+    /**
+     * A save with nothing in it leaves every list empty.
+     */
+    @Test
+    public void collectFindsNothingToSave(){
+        Department department = loaded(1, new Item(1, 5, "Hammer", ""));
+
+        PendingChanges pending = new PendingChanges(0, Integer.MAX_VALUE);
+        assertFalse(pending.collect(Collections.singletonList(department), Collections.singleton(department)));
+        assertTrue(pending.isEverythingSaved());
+    }
+
+    /**
+     * New departments and items are written, given their IDs and marked saved.
+     */
+    @Test
+    public void saveWritesNewRows(){
+        Department department = new Department("Tools");
+        Item item = new Item(5, "Hammer", "Claw hammer");
+        department.addItem(item);
+
+        PendingChanges pending = new PendingChanges(0, Integer.MAX_VALUE);
+        assertTrue(pending.collect(Collections.singletonList(department), Collections.singleton(department)));
+        pending.save();
+
+        assertTrue(pending.isEverythingSaved());
+        assertNotEquals(0, department.getID());
+        assertNotEquals(0, item.getID());
+        assertFalse(department.isModified());
+        assertFalse(item.isModified());
+
+        ArrayList<Department> stored = new EmbeddedRepository(file.toString()).findAll(true);
+        assertEquals(1, stored.size());
+        assertEquals("Tools", stored.get(0).getName());
+        assertEquals(1, stored.get(0).getAllItems().size());
+        assertEquals("Hammer", stored.get(0).getItem(0).getName());
+        assertEquals(5, stored.get(0).getItem(0).getQuantity());
+    }
+
+    /**
+     * Deleted items are removed from the storage and the list is emptied.
+     */
+    @Test
+    public void saveDeletesItems(){
+        Department department = new Department("Tools");
+        Item kept = new Item(5, "Hammer", "");
+        Item deleted = new Item(3, "Saw", "");
+        department.addItem(kept);
+        department.addItem(deleted);
+        PendingChanges pending = new PendingChanges(0, Integer.MAX_VALUE);
+        pending.collect(Collections.singletonList(department), Collections.singleton(department));
+        pending.save();
+
+        department.removeItem(deleted);
+        pending.getDeletedItems().add(deleted);
+        pending.collect(Collections.singletonList(department), new HashSet<>());
+        pending.save();
+
+        assertTrue(pending.isEverythingSaved());
+        ArrayList<Department> stored = new EmbeddedRepository(file.toString()).findAll(true);
+        assertEquals(1, stored.get(0).getAllItems().size());
+        assertEquals(kept.getID(), stored.get(0).getItem(0).getID());
+    }
+
+    /**
+     * Adjustments are added to the stored quantity, so two clients adjusting
+     * the same item do not overwrite each other.
+     */
+    @Test
+    public void saveAddsAdjustments(){
+        Department department = new Department("Tools");
+        department.addItem(new Item(10, "Hammer", ""));
+        save(department);
+
+        //Two copies of the saved row, as two clients would read it
+        Department first = new EmbeddedRepository(file.toString()).findAll(true).get(0);
+        Department second = new EmbeddedRepository(file.toString()).findAll(true).get(0);
+        first.getItem(0).adjust(3);
+        second.getItem(0).adjust(-1);
+        save(first);
+        save(second);
+
+        assertEquals(12, second.getItem(0).getQuantity());
+        assertFalse(second.getItem(0).isModified());
+        assertEquals(12, new EmbeddedRepository(file.toString()).findAll(true).get(0).getItem(0).getQuantity());
+    }
+
+    /**
+     * A quantity set to a value is written as that value.
+     */
+    @Test
+    public void saveWritesSetQuantity(){
+        Department department = new Department("Tools");
+        department.addItem(new Item(10, "Hammer", ""));
+        save(department);
+
+        Department first = new EmbeddedRepository(file.toString()).findAll(true).get(0);
+        Department second = new EmbeddedRepository(file.toString()).findAll(true).get(0);
+        first.getItem(0).adjust(3);
+        second.getItem(0).setQuantity(4);
+        save(first);
+        save(second);
+
+        assertEquals(4, new EmbeddedRepository(file.toString()).findAll(true).get(0).getItem(0).getQuantity());
+    }
+
+    /**
+     * Only the changed columns are written, so two clients changing different
+     * columns of the same item keep both changes.
+     */
+    @Test
+    public void saveWritesChangedColumnsOnly(){
+        Department department = new Department("Tools");
+        department.addItem(new Item(10, "Hammer", "Claw"));
+        save(department);
+
+        Department first = new EmbeddedRepository(file.toString()).findAll(true).get(0);
+        Department second = new EmbeddedRepository(file.toString()).findAll(true).get(0);
+        first.getItem(0).setName("Mallet");
+        second.getItem(0).setDescription("Rubber");
+        save(first);
+        save(second);
+
+        Item stored = new EmbeddedRepository(file.toString()).findAll(true).get(0).getItem(0);
+        assertEquals("Mallet", stored.getName());
+        assertEquals("Rubber", stored.getDescription());
+        assertEquals(10, stored.getQuantity());
+    }
+
+    /**
+     * Saves the changes of one department, the way the Save button does.
+     *
+     * @param department
+     */
+    private static void save(Department department){
+        PendingChanges pending = new PendingChanges(0, Integer.MAX_VALUE);
+        pending.collect(Collections.singletonList(department), Collections.singleton(department));
+        pending.save();
+        assertTrue(pending.isEverythingSaved());
+    }
+
+    /**
+     * @param id
+     * @param items
+     * @return a saved department holding the items
+     */
+    private static Department loaded(int id, Item... items){
+        Department department = new Department(id, "Department " + id, "", false);
+        for (Item item : items) {
+            department.addLoadedItem(item);
+        }
+        department.markItemsLoaded();
+        return department;
+    }
+}
@@ -0,0 +1,201 @@
+package info.behnfeldt.inventory_tracker;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Name:   RepositoriesTest.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Tests for the save transaction: running it again after a deadlock, and
+ * putting back the in-memory changes of a transaction that was rolled back.
+ * Uses an embedded database in a temporary directory.
+ */
+public class RepositoriesTest {
+
+    @TempDir
+    Path directory;                                 //Holds the embedded database file
+    private Path file;                              //The embedded database file
+    private AtomicInteger attempts;                 //Times the work of a transaction was run
+    private AtomicInteger rollbacks;                //Times a transaction was rolled back
+
+    @BeforeEach
+    public void setUp(){
+        file = directory.resolve("inventory.db");
+        Repositories.useEmbedded(new EmbeddedRepository(file.toString()));
+        attempts = new AtomicInteger();
+        rollbacks = new AtomicInteger();
+    }
+
+    /**
+     * A deadlock rolls the transaction back and runs it again, without writing anything twice.
+     */
+    @Test
+    public void retriesDeadlock() throws Exception {
+        Department department = new Department("Tools");
+        Item item = new Item(5, "Hammer", "");
+        department.addItem(item);
+
+        Repositories.inTransaction(() -> {
+            insert(department, item);
+            if (attempts.incrementAndGet() == 1) {
+                throw deadlock();
+            }
+        }, rollbacks::incrementAndGet);
+
+        assertEquals(2, attempts.get());
+        assertEquals(1, rollbacks.get());
+        assertEquals(1, department.getID());
+        assertEquals(1, item.getID());
+        ArrayList<Department> stored = new EmbeddedRepository(file.toString()).findAll(true);
+        assertEquals(1, stored.size());
+        assertEquals(1, stored.get(0).getAllItems().size());
+    }
+
+    /**
+     * A transaction that keeps deadlocking is given up after a few retries.
+     */
+    @Test
+    public void givesUpAfterRetries(){
+        SQLException thrown = assertThrows(SQLException.class, () -> Repositories.inTransaction(() -> {
+            attempts.incrementAndGet();
+            throw deadlock();
+        }, rollbacks::incrementAndGet));
+        assertTrue(SQLHandler.isDeadlock(thrown));
+        assertEquals(4, attempts.get());
+        assertEquals(4, rollbacks.get());
+    }
+
+    /**
+     * Other errors are not run again, and the objects are put back as they were.
+     */
+    @Test
+    public void restoresAfterError(){
+        Department department = new Department("Tools");
+        Item item = new Item(5, "Hammer", "");
+        department.addItem(item);
+
+        SQLException thrown = assertThrows(SQLException.class, () -> Repositories.inTransaction(() -> {
+            attempts.incrementAndGet();
+            insert(department, item);
+            throw new SQLException("Disk full");
+        }, rollbacks::incrementAndGet));
+
+        assertEquals("Disk full", thrown.getMessage());
+        assertEquals(1, attempts.get());
+        assertEquals(1, rollbacks.get());
+        assertEquals(0, department.getID());
+        assertTrue(department.isModified());
+        assertEquals(0, item.getID());
+        assertTrue(item.isModified());
+        assertEquals(Item.ALL_COLUMNS, item.getChangedColumns());
+        assertTrue(new EmbeddedRepository(file.toString()).findAll(true).isEmpty());
+    }
+
+    /**
+     * A runtime error rolls the transaction back as well.
+     */
+    @Test
+    public void restoresAfterRuntimeError() throws Exception {
+        Department department = new Department("Tools");
+        ArrayList<Department> departments = new ArrayList<>();
+        departments.add(department);
+
+        assertThrows(IllegalStateException.class, () -> Repositories.inTransaction(() -> {
+            Repositories.departments().insertDepartments(departments);
+            throw new IllegalStateException("Bug");
+        }, rollbacks::incrementAndGet));
+
+        assertEquals(1, rollbacks.get());
+        assertEquals(0, department.getID());
+        assertTrue(Repositories.departments().findAll(false).isEmpty());
+    }
+
+    /**
+     * The saved quantity of an adjusted item is put back with its delta.
+     */
+    @Test
+    public void restoresAdjustment() throws Exception {
+        Department department = new Department("Tools");
+        Item item = new Item(10, "Hammer", "");
+        department.addItem(item);
+        Repositories.inTransaction(() -> insert(department, item), () -> {});
+        department.markSaved();
+        item.markSaved();
+
+        //Another client sets the quantity in the meantime
+        Item other = Repositories.departments().findAll(true).get(0).getItem(0);
+        other.setQuantity(20);
+        HashMap<Item, Department> otherModified = new HashMap<>();
+        otherModified.put(other, department);
+        Repositories.inTransaction(() -> Repositories.items().updateItems(otherModified), () -> {});
+
+        item.adjust(3);
+        HashMap<Item, Department> modified = new HashMap<>();
+        modified.put(item, department);
+        assertThrows(SQLException.class, () -> Repositories.inTransaction(() -> {
+            Repositories.items().updateItems(modified);
+            throw new SQLException("Lost connection");
+        }, () -> {}));
+
+        assertEquals(13, item.getQuantity());
+        assertTrue(item.isAdjustedOnly());
+        assertEquals(3, item.getQuantityDelta());
+        assertEquals(20, new EmbeddedRepository(file.toString()).findAll(true).get(0).getItem(0).getQuantity());
+
+        //The next save adds the adjustment once
+        Repositories.inTransaction(() -> Repositories.items().updateItems(modified), () -> {});
+        assertEquals(23, item.getQuantity());
+        assertEquals(23, new EmbeddedRepository(file.toString()).findAll(true).get(0).getItem(0).getQuantity());
+    }
+
+    /**
+     * Deadlocks are recognized by the MySQL error code or the SQL state, also
+     * when wrapped or chained.
+     */
+    @Test
+    public void recognizesDeadlocks(){
+        assertTrue(SQLHandler.isDeadlock(new SQLException("Deadlock", "HY000", 1213)));
+        assertTrue(SQLHandler.isDeadlock(new SQLException("Serialization failure", "40001")));
+        assertFalse(SQLHandler.isDeadlock(new SQLException("Duplicate entry", "23000", 1062)));
+
+        SQLException chained = new SQLException("Batch failed");
+        chained.setNextException(deadlock());
+        assertTrue(SQLHandler.isDeadlock(chained));
+        assertTrue(SQLHandler.isDeadlock(new SQLException("Wrapped", deadlock())));
+    }
+
+    /**
+     * @return the error MySQL reports for a deadlock
+     */
+    private static SQLException deadlock(){
+        return new SQLException("Deadlock found when trying to get lock", "40001", 1213);
+    }
+
+    /**
+     * Inserts a new department with one item in it.
+     *
+     * @param department
+     * @param item
+     * @throws SQLException
+     */
+    private static void insert(Department department, Item item) throws SQLException {
+        ArrayList<Department> departments = new ArrayList<>();
+        departments.add(department);
+        HashMap<Item, Department> items = new HashMap<>();
+        items.put(item, department);
+        Repositories.departments().insertDepartments(departments);
+        Repositories.items().insertItems(items);
+    }
+}
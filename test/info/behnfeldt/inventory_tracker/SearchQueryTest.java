@@ -0,0 +1,117 @@
+package info.behnfeldt.inventory_tracker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Name:   SearchQueryTest.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Tests for reading the search text: words and quantity filters.
+ */
+public class SearchQueryTest {
+
+    /**
+     * Words are lower cased and split on anything that is not a letter or digit.
+     */
+    @Test
+    public void splitsWords(){
+        SearchQuery query = new SearchQuery("  Claw-Hammer  16oz ");
+        assertEquals(Arrays.asList("claw", "hammer", "16oz"), query.getWords());
+        assertFalse(query.hasQuantityRange());
+        assertFalse(query.isEmpty());
+    }
+
+    /**
+     * Blank text matches nothing.
+     */
+    @Test
+    public void blankIsEmpty(){
+        assertTrue(new SearchQuery("   ").isEmpty());
+    }
+
+    /**
+     * Every form of the quantity filter.
+     */
+    @Test
+    public void readsQuantityFilters(){
+        assertRange(new SearchQuery("qty:10"), 10, 10);
+        assertRange(new SearchQuery("qty:10-50"), 10, 50);
+        assertRange(new SearchQuery("qty:>10"), 11, Integer.MAX_VALUE);
+        assertRange(new SearchQuery("qty:<10"), Integer.MIN_VALUE, 9);
+        assertRange(new SearchQuery("qty:-5"), -5, -5);
+        assertRange(new SearchQuery("qty:-10--5"), -10, -5);
+    }
+
+    /**
+     * A quantity filter alone is a search, and is combined with the words.
+     */
+    @Test
+    public void combinesWordsAndQuantity(){
+        SearchQuery query = new SearchQuery("nails QTY:>100");
+        assertEquals(Arrays.asList("nails"), query.getWords());
+        assertTrue(query.matchesQuantity(101));
+        assertFalse(query.matchesQuantity(100));
+        assertFalse(new SearchQuery("qty:5").isEmpty());
+    }
+
+    /**
+     * Several quantity filters narrow each other down.
+     */
+    @Test
+    public void intersectsQuantityFilters(){
+        assertRange(new SearchQuery("qty:>10 qty:<20"), 11, 19);
+        assertTrue(new SearchQuery("qty:>20 qty:<10").isEmpty());
+    }
+
+    /**
+     * A filter that can not be read matches nothing instead of everything.
+     */
+    @Test
+    public void unreadableFilterMatchesNothing(){
+        SearchQuery query = new SearchQuery("hammer qty:abc");
+        assertTrue(query.isEmpty());
+        assertFalse(query.matchesQuantity(0));
+        assertTrue(new SearchQuery("qty:").isEmpty());
+        assertTrue(new SearchQuery("qty:>").isEmpty());
+    }
+
+    /**
+     * Bounds one past the range of a quantity do not wrap around.
+     */
+    @Test
+    public void boundsDoNotOverflow(){
+        assertTrue(new SearchQuery("qty:>2147483647").isEmpty());
+        assertTrue(new SearchQuery("qty:<-2147483648").isEmpty());
+        assertRange(new SearchQuery("qty:>2147483646"), Integer.MAX_VALUE, Integer.MAX_VALUE);
+        assertRange(new SearchQuery("qty:<-2147483647"), Integer.MIN_VALUE, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Numbers past the range of a quantity are clamped to it.
+     */
+    @Test
+    public void clampsLargeNumbers(){
+        assertRange(new SearchQuery("qty:0-99999999999"), 0, Integer.MAX_VALUE);
+        assertRange(new SearchQuery("qty:-99999999999-0"), Integer.MIN_VALUE, 0);
+        assertTrue(new SearchQuery("qty:99999999999").isEmpty());
+    }
+
+    /**
+     * @param query
+     * @param min
+     * @param max
+     */
+    private static void assertRange(SearchQuery query, int min, int max){
+        assertEquals(min, query.getMinQuantity());
+        assertEquals(max, query.getMaxQuantity());
+        assertTrue(query.matchesQuantity(min));
+        assertTrue(query.matchesQuantity(max));
+        assertFalse(query.isEmpty());
+    }
+}
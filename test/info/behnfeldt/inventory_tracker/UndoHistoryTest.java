@@ -0,0 +1,254 @@
+package info.behnfeldt.inventory_tracker;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Name:   UndoHistoryTest.java
+ * By:     Reed Behnfeldt
+ * Date:   10/18/2026
+ *
+ * Description:
+ * Tests for undo and redo of item changes, the memory limit of the history
+ * and the departments it marks as changed.
+ */
+public class UndoHistoryTest {
+
+    private UndoHistory history;                    //History with room for everything the tests do
+    private Department tools;                       //Saved department holding the hammer
+    private Department garden;                      //Saved department, empty
+    private Item hammer;                            //Saved item, quantity 5
+
+    @BeforeEach
+    public void setUp(){
+        history = new UndoHistory(1024 * 1024);
+        hammer = new Item(1, 5, "Hammer", "Claw");
+        tools = new Department(1, "Tools", "", false);
+        tools.addLoadedItem(hammer);
+        tools.markItemsLoaded();
+        garden = new Department(2, "Garden", "", false);
+        garden.markItemsLoaded();
+    }
+
+    /**
+     * An added item is removed by undo and added again by redo.
+     */
+    @Test
+    public void undoesAdd(){
+        Item saw = new Item(3, "Saw", "");
+        tools.addItem(saw);
+        history.done(ItemCommand.added(saw, tools, null));
+        assertEquals("Add Item", history.getUndoName());
+        assertNull(history.getRedoName());
+
+        assertNotNull(history.undo());
+        assertFalse(tools.getAllItems().contains(saw));
+        assertNull(history.getUndoName());
+        assertEquals("Add Item", history.getRedoName());
+
+        assertNotNull(history.redo());
+        assertTrue(tools.getAllItems().contains(saw));
+        assertEquals("Add Item", history.getUndoName());
+    }
+
+    /**
+     * An edit that moved the item puts back its old values and department.
+     */
+    @Test
+    public void undoesEditAndMove(){
+        hammer.setName("Mallet");
+        hammer.setQuantity(8);
+        garden.addItem(hammer);
+        tools.removeItem(hammer);
+        history.done(ItemCommand.edited(hammer, tools, garden, 5, "Hammer", "Claw", null));
+        assertEquals("Move Item", history.getUndoName());
+
+        history.undo();
+        assertEquals("Hammer", hammer.getName());
+        assertEquals(5, hammer.getQuantity());
+        assertEquals(Collections.singletonList(hammer), tools.getAllItems());
+        assertTrue(garden.getAllItems().isEmpty());
+
+        history.redo();
+        assertEquals("Mallet", hammer.getName());
+        assertEquals(8, hammer.getQuantity());
+        assertEquals(Collections.singletonList(hammer), garden.getAllItems());
+        assertTrue(tools.getAllItems().isEmpty());
+    }
+
+    /**
+     * An adjustment is undone by the opposite adjustment, so it stays a delta.
+     */
+    @Test
+    public void undoesAdjustment(){
+        hammer.adjust(3);
+        history.done(ItemCommand.adjusted(hammer, tools, 3, null));
+
+        history.undo();
+        assertEquals(5, hammer.getQuantity());
+        assertTrue(hammer.isAdjustedOnly());
+        assertEquals(0, hammer.getQuantityDelta());
+
+        history.redo();
+        assertEquals(8, hammer.getQuantity());
+        assertEquals(3, hammer.getQuantityDelta());
+    }
+
+    /**
+     * A deleted item goes back into its department and off the deleted items.
+     */
+    @Test
+    public void undoesDelete(){
+        ArrayList<Item> deletedItems = new ArrayList<>();
+        tools.removeItem(hammer);
+        deletedItems.add(hammer);
+        history.done(ItemCommand.deleted(hammer, tools, deletedItems, null));
+
+        history.undo();
+        assertTrue(tools.getAllItems().contains(hammer));
+        assertTrue(deletedItems.isEmpty());
+
+        history.redo();
+        assertFalse(tools.getAllItems().contains(hammer));
+        assertEquals(Collections.singletonList(hammer), deletedItems);
+    }
+
+    /**
+     * Undo and redo with nothing to do are ignored.
+     */
+    @Test
+    public void ignoresEmptyStacks(){
+        assertNull(history.undo());
+        assertNull(history.redo());
+    }
+
+    /**
+     * A new change can not be followed by a redo of what was undone before it.
+     */
+    @Test
+    public void newChangeDropsRedo(){
+        history.done(new SizedCommand("First", 100));
+        history.undo();
+        assertEquals(100, history.getSize());
+        history.done(new SizedCommand("Second", 10));
+        assertNull(history.getRedoName());
+        assertEquals(10, history.getSize());
+    }
+
+    /**
+     * The oldest changes are dropped once the history is over its limit.
+     */
+    @Test
+    public void dropsOldestOverLimit(){
+        history = new UndoHistory(250);
+        history.done(new SizedCommand("First", 100));
+        history.done(new SizedCommand("Second", 100));
+        assertEquals(200, history.getSize());
+        history.done(new SizedCommand("Third", 100));
+        assertEquals(200, history.getSize());
+
+        assertEquals("Third", history.undo().getName());
+        assertEquals("Second", history.undo().getName());
+        assertNull(history.undo());
+    }
+
+    /**
+     * The newest change is kept even when it alone is over the limit.
+     */
+    @Test
+    public void keepsNewestOverLimit(){
+        history = new UndoHistory(50);
+        history.done(new SizedCommand("First", 10));
+        history.done(new SizedCommand("Large", 500));
+        assertEquals(500, history.getSize());
+        assertEquals("Large", history.undo().getName());
+        assertNull(history.undo());
+    }
+
+    /**
+     * Every department a change, undo or redo touched is dirty until the save.
+     */
+    @Test
+    public void tracksDirtyDepartments(){
+        Item saw = new Item(3, "Saw", "");
+        tools.addItem(saw);
+        history.done(ItemCommand.added(saw, tools, null));
+        assertEquals(Collections.singleton(tools), history.getDirtyDepartments());
+
+        history.clear();
+        assertEquals(Collections.singleton(tools), history.getDirtyDepartments());
+        history.clearDirty();
+        assertTrue(history.getDirtyDepartments().isEmpty());
+
+        garden.addItem(hammer);
+        tools.removeItem(hammer);
+        history.done(ItemCommand.edited(hammer, tools, garden, 5, "Hammer", "Claw", null));
+        assertEquals(new HashSet<>(Arrays.asList(tools, garden)), history.getDirtyDepartments());
+        history.clearDirty();
+        history.undo();
+        assertEquals(new HashSet<>(Arrays.asList(tools, garden)), history.getDirtyDepartments());
+        history.markDirty(Collections.singletonList(tools));
+        assertEquals(2, history.getDirtyDepartments().size());
+    }
+
+    /**
+     * Clearing forgets every change.
+     */
+    @Test
+    public void clears(){
+        history.done(new SizedCommand("First", 100));
+        history.done(new SizedCommand("Second", 100));
+        history.undo();
+        history.clear();
+        assertNull(history.getUndoName());
+        assertNull(history.getRedoName());
+        assertEquals(0, history.getSize());
+    }
+
+    /**
+     * A command of a given size that changes nothing.
+     */
+    private static class SizedCommand implements UndoHistory.Command {
+        private final String name;                  //Shown as the undo and redo name
+        private final long size;                    //Estimated bytes of the command
+
+        /**
+         * @param name
+         * @param size
+         */
+        private SizedCommand(String name, long size){
+            this.name = name;
+            this.size = size;
+        }
+
+        @Override
+        public void undo(){
+        }
+
+        @Override
+        public void redo(){
+        }
+
+        @Override
+        public String getName(){
+            return name;
+        }
+
+        @Override
+        public long getSize(){
+            return size;
+        }
+
+        @Override
+        public void addDepartments(Collection<Department> departments){
+        }
+    }
+}